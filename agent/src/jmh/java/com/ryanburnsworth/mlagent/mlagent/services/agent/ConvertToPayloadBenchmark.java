@@ -0,0 +1,46 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a recorded LLM response into the payload sent to the ML service, for both the
+ * notebook creation (wrapped notebook object) and the notebook update (cell array) paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertToPayloadBenchmark {
+    private String notebookContent;
+    private String cellsContent;
+
+    @Setup
+    public void setUp() {
+        notebookContent = Fixtures.load("data_loading_notebook.json");
+        cellsContent = Fixtures.load("preprocessing_cells.json");
+    }
+
+    @Benchmark
+    public Object createNotebookPayload() {
+        return AgentServiceImpl.convertToPayload(notebookContent, false);
+    }
+
+    @Benchmark
+    public Object updateNotebookPayload() {
+        return AgentServiceImpl.convertToPayload(cellsContent, true);
+    }
+}
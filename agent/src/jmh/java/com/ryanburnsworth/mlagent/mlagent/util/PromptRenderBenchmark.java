@@ -0,0 +1,96 @@
+package com.ryanburnsworth.mlagent.mlagent.util;
+
+import com.ryanburnsworth.mlagent.mlagent.Fixtures;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders every template in {@link Prompts} with variables sized like a real run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptRenderBenchmark {
+    @Param({
+            "DATA_LOADING_PROMPT",
+            "DATA_PREPROCESSING_PROMPT",
+            "MODEL_TRAINING_PROMPT",
+            "MODEL_EVALUATION_PROMPT",
+            "ML_CRITIC_PROMPT",
+            "CODE_FIXER_PROMPT",
+            "ERROR_HANDLING_PROMPT"
+    })
+    public String template;
+
+    private PromptTemplate promptTemplate;
+    private Map<String, Object> variables;
+
+    // shape of CsvDatasetProfiler output for the Titanic file
+    private static final String SCHEMA = """
+            Titanic-Dataset.csv: 891 rows, 12 columns
+            - PassengerId: int64, ~891 distinct, range 1 to 891, mean 446, quartiles 223.5/446/668.5
+            - Survived: int64, ~2 distinct, range 0 to 1, mean 0.3838, quartiles 0/0/1
+            - Pclass: int64, ~3 distinct, range 1 to 3, mean 2.309, quartiles 2/3/3
+            - Name: object, ~891 distinct
+            - Sex: object, ~2 distinct
+            - Age: float64, 19.9% missing, ~88 distinct, range 0.42 to 80, mean 29.7, quartiles 20.12/28/38
+            - Fare: float64, ~248 distinct, range 0 to 512.3, mean 32.2, quartiles 7.91/14.45/31
+            - Cabin: object, 77.1% missing, ~147 distinct
+            - Embarked: object, 0.2% missing, ~3 distinct""";
+
+    @Setup
+    public void setUp() throws Exception {
+        promptTemplate = (PromptTemplate) Prompts.class.getField(template).get(null);
+
+        String notebook = Fixtures.load("data_loading_notebook.json");
+        String cells = Fixtures.load("preprocessing_cells.json");
+        String training = Fixtures.load("model_training_cells.json");
+        String feedback = Util.getCriticResultFromContent(Fixtures.load("critic_rejected.json")).getFeedback();
+        String memory = Util.formatAgentMemories(List.of(
+                AgentMemory.builder().step(AgentStep.DATA_LOADING).userInput("[DATA_LOADING prompt omitted]").agentOutput(notebook).build(),
+                AgentMemory.builder().step(AgentStep.DATA_PREPROCESSING).userInput("[DATA_PREPROCESSING prompt omitted]").agentOutput(cells).build()
+        ));
+
+        variables = switch (template) {
+            case "DATA_LOADING_PROMPT" -> Map.of(
+                    "title", "Titanic Dataset",
+                    "subtitle", "Passenger survival on the Titanic",
+                    "description", "The sinking of the Titanic is one of the most infamous shipwrecks in history. "
+                            + "This dataset lists 891 passengers with class, sex, age, fare and survival.",
+                    "datasets", "./datasets/yasserh/titanic-dataset/Titanic-Dataset.csv",
+                    "schema", SCHEMA);
+            case "ML_CRITIC_PROMPT" -> Map.of("agent_output", training);
+            case "CODE_FIXER_PROMPT" -> Map.of("original_code", cells, "critic_feedback", feedback);
+            case "ERROR_HANDLING_PROMPT" -> Map.of(
+                    "userPrompt", "[MODEL_TRAINING prompt omitted]",
+                    "aiResponse", training,
+                    "errorMessage", "Error updating notebook.",
+                    "errorDetails", "ValueError: y contains previously unseen labels: 'Q'");
+            default -> Map.of("memory", memory, "schema", SCHEMA);
+        };
+    }
+
+    @Benchmark
+    public String render() {
+        return promptTemplate.render(variables);
+    }
+}
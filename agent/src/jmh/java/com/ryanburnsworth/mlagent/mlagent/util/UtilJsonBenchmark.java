@@ -0,0 +1,116 @@
+package com.ryanburnsworth.mlagent.mlagent.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanburnsworth.mlagent.mlagent.Fixtures;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.MemoryCompactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.ryanburnsworth.mlagent.mlagent.util.Prompts.DATASET_SCHEMA_UNAVAILABLE;
+import static com.ryanburnsworth.mlagent.mlagent.util.Prompts.DATA_PREPROCESSING_PROMPT;
+
+/**
+ * Compares the shared-reader and streaming-generator JSON handling in {@link Util} with the previous
+ * per-call ObjectMapper and String.format/replace implementation. Run with {@code -prof gc} to see
+ * the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilJsonBenchmark {
+    private String cellsJson;
+    private String notebookJson;
+    private List<AgentMemory> memories;
+    private final MemoryCompactor compactor = new MemoryCompactor(8000, 2, 600);
+
+    @Setup
+    public void setUp() {
+        cellsJson = Fixtures.load("preprocessing_cells.json");
+        notebookJson = Fixtures.load("data_loading_notebook.json");
+
+        // four turns, each prompt embedding the memory before it as in a real run
+        memories = new ArrayList<>();
+        for (AgentStep step : AgentStep.values()) {
+            String prompt = DATA_PREPROCESSING_PROMPT.render(Map.of(
+                    "memory", Util.formatAgentMemories(memories),
+                    "schema", DATASET_SCHEMA_UNAVAILABLE));
+            memories.add(AgentMemory.builder()
+                    .step(step)
+                    .userInput(prompt.substring(0, Math.min(prompt.length(), 16_000)))
+                    .agentOutput(cellsJson)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public String formatAgentMemories() {
+        return Util.formatAgentMemories(memories);
+    }
+
+    // the updater prompt as an agent run builds it: compacted memory, formatted and rendered on the
+    // run's own virtual thread, where no per-thread state survives from an earlier run
+    @Benchmark
+    public String updaterPromptOnRunThread() throws InterruptedException {
+        String[] prompt = new String[1];
+        Thread.ofVirtual().start(() -> prompt[0] = DATA_PREPROCESSING_PROMPT.render(Map.of(
+                "memory", Util.formatAgentMemories(compactor.compact(memories).memories()),
+                "schema", DATASET_SCHEMA_UNAVAILABLE))).join();
+        return prompt[0];
+    }
+
+    @Benchmark
+    public String formatAgentMemoriesLegacy() {
+        return memories.stream()
+                .map(m -> String.format(
+                        "{ \"userInput\": \"%s\", \"agentOutput\": \"%s\" }",
+                        legacyEscapeForJson(m.getUserInput()),
+                        legacyEscapeForJson(m.getAgentOutput())
+                ))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    @Benchmark
+    public Map<String, Object> parseNotebook() {
+        return Util.getJsonFromContent(notebookJson);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> parseCells() {
+        return Util.getJsonFromListContent(cellsJson);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> parseCellsLegacy() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.readValue(cellsJson, new TypeReference<>() {
+        });
+    }
+
+    private static String legacyEscapeForJson(String text) {
+        if (text == null) return "";
+        return text.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "");
+    }
+}
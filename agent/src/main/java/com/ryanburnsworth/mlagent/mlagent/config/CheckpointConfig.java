@@ -0,0 +1,26 @@
+package com.ryanburnsworth.mlagent.mlagent.config;
+
+import com.ryanburnsworth.mlagent.mlagent.services.run.CheckpointStore;
+import com.ryanburnsworth.mlagent.mlagent.services.run.FileCheckpointStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class CheckpointConfig {
+    @Value("${agent.checkpoint.enabled:true}")
+    private boolean checkpointEnabled;
+
+    @Value("${agent.checkpoint.dir:./checkpoints}")
+    private String checkpointDir;
+
+    @Bean
+    public CheckpointStore checkpointStore() {
+        if (!checkpointEnabled) {
+            return CheckpointStore.disabled();
+        }
+        return new FileCheckpointStore(Path.of(checkpointDir));
+    }
+}
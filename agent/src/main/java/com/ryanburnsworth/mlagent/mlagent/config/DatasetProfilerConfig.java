@@ -0,0 +1,39 @@
+package com.ryanburnsworth.mlagent.mlagent.config;
+
+import com.ryanburnsworth.mlagent.mlagent.services.dataset.CsvDatasetProfiler;
+import com.ryanburnsworth.mlagent.mlagent.services.dataset.DatasetProfiler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
+
+@Configuration
+public class DatasetProfilerConfig {
+    @Value("${agent.profiler.enabled:true}")
+    private boolean profilerEnabled;
+
+    // the kaggle_service working directory, which the dataset paths it returns are relative to
+    @Value("${agent.profiler.datasets-root:../kaggle_service}")
+    private String datasetsRoot;
+
+    @Value("${agent.profiler.max-columns:60}")
+    private int maxColumns;
+
+    @Value("${agent.profiler.sample-size:4096}")
+    private int sampleSize;
+
+    @Value("${agent.profiler.split-mb:64}")
+    private long splitMb;
+
+    @Bean
+    public DatasetProfiler datasetProfiler(@Qualifier("profilerExecutor") ThreadPoolTaskExecutor profilerExecutor) {
+        if (!profilerEnabled) {
+            return DatasetProfiler.disabled();
+        }
+        return new CsvDatasetProfiler(Path.of(datasetsRoot), profilerExecutor, profilerExecutor.getMaxPoolSize(),
+                maxColumns, sampleSize, splitMb << 20);
+    }
+}
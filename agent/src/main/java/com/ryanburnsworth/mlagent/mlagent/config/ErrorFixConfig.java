@@ -0,0 +1,26 @@
+package com.ryanburnsworth.mlagent.mlagent.config;
+
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.FileErrorFixStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class ErrorFixConfig {
+    @Value("${agent.error-fixes.enabled:true}")
+    private boolean errorFixesEnabled;
+
+    @Value("${agent.error-fixes.dir:./error-fixes}")
+    private String errorFixesDir;
+
+    @Bean
+    public ErrorFixStore errorFixStore() {
+        if (!errorFixesEnabled) {
+            return ErrorFixStore.disabled();
+        }
+        return new FileErrorFixStore(Path.of(errorFixesDir));
+    }
+}
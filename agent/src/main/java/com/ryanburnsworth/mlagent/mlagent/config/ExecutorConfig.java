@@ -0,0 +1,93 @@
+package com.ryanburnsworth.mlagent.mlagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Runs orchestrations on a bounded platform thread pool by default, or on one virtual thread per run
+ * when {@code spring.threads.virtual.enabled=true}. Every LLM and ML service call of a run blocks on
+ * the run's own thread, so in virtual mode those calls park a virtual thread instead of a platform one.
+ */
+@Configuration
+public class ExecutorConfig {
+    @Value("${agent.run.max-concurrency:16}")
+    private int maxConcurrentRuns;
+
+    @Value("${agent.run.queue-capacity:100}")
+    private int runQueueCapacity;
+
+    @Value("${agent.run.virtual.max-concurrency:10000}")
+    private int maxConcurrentVirtualRuns;
+
+    // 0 uses one thread per core
+    @Value("${agent.profiler.threads:0}")
+    private int profilerThreads;
+
+    @Bean(name = "agentRunExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor agentRunExecutor() {
+        return platformRunExecutor(maxConcurrentRuns, runQueueCapacity);
+    }
+
+    @Bean(name = "agentRunExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualAgentRunExecutor() {
+        return virtualRunExecutor(maxConcurrentVirtualRuns);
+    }
+
+    // Critic candidates only wait on the LLM. They get their own executor so a run never waits on
+    // tasks queued behind other runs in a saturated run pool
+    @Bean(name = "criticExecutor")
+    public AsyncTaskExecutor criticExecutor() {
+        return criticCandidateExecutor();
+    }
+
+    // Dataset profiling is CPU bound, so it gets a platform pool no larger than the machine
+    @Bean(name = "profilerExecutor")
+    public ThreadPoolTaskExecutor profilerExecutor() {
+        return profilerExecutor(profilerThreads > 0 ? profilerThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    public static ThreadPoolTaskExecutor platformRunExecutor(int maxConcurrentRuns, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentRuns);
+        executor.setMaxPoolSize(maxConcurrentRuns);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("agent-run-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    public static ThreadPoolTaskExecutor profilerExecutor(int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("dataset-profiler-");
+        executor.initialize();
+        return executor;
+    }
+
+    public static SimpleAsyncTaskExecutor virtualRunExecutor(int maxConcurrentRuns) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("agent-run-vt-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(maxConcurrentRuns);
+        executor.setTaskTerminationTimeout(30_000);
+        return executor;
+    }
+
+    public static SimpleAsyncTaskExecutor criticCandidateExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("critic-vt-");
+        executor.setVirtualThreads(true);
+        // keep candidate spans under the agent span that started them
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        return executor;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ryanburnsworth.mlagent.mlagent.config;
+
+import com.ryanburnsworth.mlagent.mlagent.services.llm.DiskLlmResponseCache;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.InMemoryLlmResponseCache;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmResponseCache;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.TieredLlmResponseCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class LlmConfig {
+    @Value("${agent.llm.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${agent.llm.cache.max-entries:500}")
+    private int cacheMaxEntries;
+
+    @Value("${agent.llm.cache.ttl-minutes:1440}")
+    private long cacheTtlMinutes;
+
+    @Value("${agent.llm.cache.disk.enabled:false}")
+    private boolean diskCacheEnabled;
+
+    @Value("${agent.llm.cache.disk.dir:./llm-cache}")
+    private String diskCacheDir;
+
+    @Value("${agent.llm.cache.disk.max-entries:5000}")
+    private int diskCacheMaxEntries;
+
+    @Bean
+    public LlmResponseCache llmResponseCache(MeterRegistry meterRegistry) {
+        if (!cacheEnabled) {
+            return LlmResponseCache.disabled();
+        }
+
+        Duration ttl = Duration.ofMinutes(cacheTtlMinutes);
+        LlmResponseCache disk = diskCacheEnabled
+                ? new DiskLlmResponseCache(Path.of(diskCacheDir), ttl, diskCacheMaxEntries)
+                : LlmResponseCache.disabled();
+
+        return new TieredLlmResponseCache(
+                new InMemoryLlmResponseCache(cacheMaxEntries, ttl),
+                disk,
+                meterRegistry
+        );
+    }
+}
@@ -10,8 +10,9 @@ public class MLConfig {
     @Value("${mlservice.base.url}")
     private String mlServiceUrl;
 
+    // the auto-configured builder records client observations and propagates the trace context
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder().baseUrl(mlServiceUrl).build();
+    public WebClient webClient(WebClient.Builder webClientBuilder) {
+        return webClientBuilder.baseUrl(mlServiceUrl).build();
     }
 }
@@ -1,9 +1,26 @@
 package com.ryanburnsworth.mlagent.mlagent.controllers;
 
-import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface AgentController {
-    ResponseEntity<ResponseStatus> startAgents(@RequestParam String notebookName, @RequestParam String searchTerm);
+    ResponseEntity<RunStatus> startAgents(@RequestParam String notebookName, @RequestParam String searchTerm,
+                                          @RequestParam boolean bypassCache, @RequestParam String kernelPool,
+                                          @RequestParam Integer sampleRows);
+
+    ResponseEntity<FanOutStatus> startFanOut(@RequestParam String notebookName, @RequestParam String searchTerm,
+                                             @RequestParam int candidates, @RequestParam boolean bypassCache,
+                                             @RequestParam String kernelPool, @RequestParam Integer sampleRows);
+
+    ResponseEntity<FanOutStatus> getFanOut(@PathVariable String fanOutId);
+
+    ResponseEntity<RunStatus> getRun(@PathVariable String runId);
+
+    ResponseEntity<RunStatus> resumeRun(@PathVariable String runId);
+
+    ResponseEntity<SseEmitter> streamRunEvents(@PathVariable String runId);
 }
@@ -1,27 +1,100 @@
 package com.ryanburnsworth.mlagent.mlagent.controllers;
 
-import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
-import com.ryanburnsworth.mlagent.mlagent.services.agent.AgentService;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.run.RunService;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController()
 public class AgentControllerImpl implements AgentController {
-    private final AgentService agentService;
+    private final RunService runService;
 
-    public AgentControllerImpl(AgentService agentService) {
-        this.agentService = agentService;
+    public AgentControllerImpl(RunService runService) {
+        this.runService = runService;
     }
 
     @Override
     @GetMapping("/start")
-    public ResponseEntity<ResponseStatus> startAgents(
+    public ResponseEntity<RunStatus> startAgents(
             @RequestParam(name = "notebookName") String notebookName,
-            @RequestParam(name = "searchTerm") String searchTerm
+            @RequestParam(name = "searchTerm") String searchTerm,
+            @RequestParam(name = "bypassCache", defaultValue = "false") boolean bypassCache,
+            @RequestParam(name = "kernelPool", required = false) String kernelPool,
+            @RequestParam(name = "sampleRows", required = false) Integer sampleRows
     ) {
-        ResponseStatus response = this.agentService.machineLearningOrchestrator(notebookName, searchTerm);
-        return ResponseEntity.ok(response);
+        try {
+            RunStatus run = this.runService.startRun(notebookName, searchTerm, bypassCache, kernelPool, sampleRows);
+            return ResponseEntity.accepted().body(run);
+        } catch (TaskRejectedException e) {
+            // the run executor is saturated; ask the caller to retry later
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @Override
+    @GetMapping("/fanout")
+    public ResponseEntity<FanOutStatus> startFanOut(
+            @RequestParam(name = "notebookName") String notebookName,
+            @RequestParam(name = "searchTerm") String searchTerm,
+            @RequestParam(name = "candidates", defaultValue = "3") int candidates,
+            @RequestParam(name = "bypassCache", defaultValue = "false") boolean bypassCache,
+            @RequestParam(name = "kernelPool", required = false) String kernelPool,
+            @RequestParam(name = "sampleRows", required = false) Integer sampleRows
+    ) {
+        try {
+            FanOutStatus fanOut = this.runService.startFanOut(notebookName, searchTerm, candidates, bypassCache,
+                    kernelPool, sampleRows);
+            return ResponseEntity.accepted().body(fanOut);
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @Override
+    @GetMapping("/fanouts/{fanOutId}")
+    public ResponseEntity<FanOutStatus> getFanOut(@PathVariable(name = "fanOutId") String fanOutId) {
+        return this.runService.getFanOut(fanOutId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Override
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<RunStatus> getRun(@PathVariable(name = "runId") String runId) {
+        return this.runService.getRun(runId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Override
+    @PostMapping("/runs/{runId}/resume")
+    public ResponseEntity<RunStatus> resumeRun(@PathVariable(name = "runId") String runId) {
+        try {
+            return this.runService.resumeRun(runId)
+                    .map(run -> ResponseEntity.accepted().body(run))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            // the run is still in flight or already succeeded
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @Override
+    @GetMapping(path = "/runs/{runId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamRunEvents(@PathVariable(name = "runId") String runId) {
+        return this.runService.subscribe(runId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 }
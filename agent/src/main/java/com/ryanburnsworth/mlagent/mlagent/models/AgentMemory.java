@@ -2,10 +2,14 @@ package com.ryanburnsworth.mlagent.mlagent.models;
 
 import lombok.Builder;
 import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
 
 @Getter
 @Builder
+@Jacksonized
 public class AgentMemory {
+    AgentStep step;
+
     String userInput;
 
     String agentOutput;
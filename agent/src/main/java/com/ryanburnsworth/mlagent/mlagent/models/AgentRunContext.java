@@ -0,0 +1,190 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Holds the state of a single orchestration run so that concurrent runs never share memories,
+ * error counters or notebook names.
+ */
+@Getter
+@Setter
+public class AgentRunContext {
+    private final String runId;
+
+    private final String notebookName;
+
+    private final String searchTerm;
+
+    private final List<AgentMemory> agentMemories = new ArrayList<>();
+
+    // read by status requests while the run is still appending
+    private final List<PromptStats> promptStats = new CopyOnWriteArrayList<>();
+
+    private AgentStep currentStep = AgentStep.DATA_LOADING;
+
+    // null until the first step has completed; resumed runs skip every step up to this one
+    private AgentStep lastCompletedStep;
+
+    // written concurrently by per-cell critic loops
+    private final Map<AgentStep, CriticResult> criticResults = new ConcurrentHashMap<>();
+
+    // created notebook plus every update the ML service accepted
+    private Map<String, Object> notebook;
+
+    private int errorCounter = 0;
+
+    // critic rounds stop once this passes; null means no deadline
+    private Instant criticDeadline;
+
+    // skip LLM cache lookups so temperature > 0 runs get fresh samples
+    private boolean bypassLlmCache = false;
+
+    // dataset picked up front by a fan-out; null means the run searches for one itself
+    private DatasetMetadata datasetMetadata;
+
+    // profile of the dataset files rendered into the loading and preprocessing prompts; blank if unavailable
+    private String datasetSchema = "";
+
+    // warm kernel pool the ML service should validate this run's notebook in; null means its default
+    private String kernelPool;
+
+    // rows of every dataset file the ML service validates the steps against, 0 for the full data; the
+    // finished notebook is always executed once more on the full data
+    private int sampleRows;
+
+    // receives step transitions, critic verdicts and retries as they happen
+    private Consumer<RunEvent> eventListener = event -> {
+    };
+
+    // persists the run after every completed step
+    private Consumer<RunCheckpoint> checkpointListener = checkpoint -> {
+    };
+
+    private RunCheckpoint lastCheckpoint;
+
+    public AgentRunContext(String notebookName, String searchTerm) {
+        this(UUID.randomUUID().toString(), notebookName, searchTerm);
+    }
+
+    public AgentRunContext(String runId, String notebookName, String searchTerm) {
+        this.runId = runId;
+        this.notebookName = notebookName;
+        this.searchTerm = searchTerm;
+    }
+
+    public static AgentRunContext fromCheckpoint(RunCheckpoint checkpoint) {
+        AgentRunContext context = new AgentRunContext(checkpoint.getRunId(), checkpoint.getNotebookName(),
+                checkpoint.getSearchTerm());
+        context.setBypassLlmCache(checkpoint.isBypassLlmCache());
+        context.setKernelPool(checkpoint.getKernelPool());
+        context.setSampleRows(checkpoint.getSampleRows());
+        context.setDatasetMetadata(checkpoint.getDatasetMetadata());
+        context.setDatasetSchema(Objects.requireNonNullElse(checkpoint.getDatasetSchema(), ""));
+        context.setLastCompletedStep(checkpoint.getCompletedStep());
+        context.setErrorCounter(checkpoint.getErrorCounter());
+        if (checkpoint.getAgentMemories() != null) {
+            context.getAgentMemories().addAll(checkpoint.getAgentMemories());
+        }
+        if (checkpoint.getCriticResults() != null) {
+            context.getCriticResults().putAll(checkpoint.getCriticResults());
+        }
+        context.setNotebook(checkpoint.getNotebook());
+        context.lastCheckpoint = checkpoint;
+        return context;
+    }
+
+    // Copy for a branch that works on its own copy of the notebook; the branch appends to its own
+    // memories and never checkpoints, so the run only sees what it merges back
+    public AgentRunContext forkBranch(String branchNotebookName) {
+        AgentRunContext branch = new AgentRunContext(runId, branchNotebookName, searchTerm);
+        branch.agentMemories.addAll(agentMemories);
+        branch.criticResults.putAll(criticResults);
+        branch.currentStep = currentStep;
+        branch.lastCompletedStep = lastCompletedStep;
+        branch.notebook = notebook;
+        branch.errorCounter = errorCounter;
+        branch.criticDeadline = criticDeadline;
+        branch.bypassLlmCache = bypassLlmCache;
+        branch.datasetMetadata = datasetMetadata;
+        branch.datasetSchema = datasetSchema;
+        branch.kernelPool = kernelPool;
+        branch.sampleRows = sampleRows;
+        branch.eventListener = eventListener;
+        return branch;
+    }
+
+    public boolean isStepCompleted(AgentStep step) {
+        return lastCompletedStep != null && step.ordinal() <= lastCompletedStep.ordinal();
+    }
+
+    public void completeStep(AgentStep step) {
+        lastCompletedStep = step;
+        lastCheckpoint = toCheckpoint();
+        checkpointListener.accept(lastCheckpoint);
+    }
+
+    public RunCheckpoint toCheckpoint() {
+        return RunCheckpoint.builder()
+                .runId(runId)
+                .notebookName(notebookName)
+                .searchTerm(searchTerm)
+                .bypassLlmCache(bypassLlmCache)
+                .kernelPool(kernelPool)
+                .sampleRows(sampleRows)
+                .datasetMetadata(datasetMetadata)
+                .datasetSchema(datasetSchema)
+                .completedStep(lastCompletedStep)
+                .errorCounter(errorCounter)
+                .agentMemories(List.copyOf(agentMemories))
+                .criticResults(new LinkedHashMap<>(criticResults))
+                .notebook(notebook)
+                .build();
+    }
+
+    // Applies a create payload or an appended cell list once the ML service has accepted it
+    @SuppressWarnings("unchecked")
+    public void confirmNotebookAction(Object payload) {
+        if (payload instanceof Map<?, ?> created && created.get("notebook_content") instanceof Map<?, ?> content) {
+            notebook = new HashMap<>((Map<String, Object>) content);
+            notebook.put("cells", new ArrayList<>((List<Object>) notebook.getOrDefault("cells", List.of())));
+        } else if (payload instanceof List<?> cells && notebook != null) {
+            Map<String, Object> updated = new HashMap<>(notebook);
+            List<Object> allCells = new ArrayList<>((List<Object>) updated.getOrDefault("cells", List.of()));
+            allCells.addAll(cells);
+            updated.put("cells", allCells);
+            notebook = updated;
+        }
+    }
+
+    // the notebook exists on the ML service once the data loading step has passed
+    public boolean isCreated() {
+        return currentStep != AgentStep.DATA_LOADING;
+    }
+
+    public int incrementErrorCounter() {
+        return ++errorCounter;
+    }
+
+    public void publishEvent(RunEventType type, String message) {
+        eventListener.accept(RunEvent.builder()
+                .runId(runId)
+                .type(type)
+                .step(currentStep)
+                .message(message)
+                .timestamp(Instant.now())
+                .build());
+    }
+}
@@ -0,0 +1,8 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+public enum AgentStep {
+    DATA_LOADING,
+    DATA_PREPROCESSING,
+    MODEL_TRAINING,
+    MODEL_EVALUATION
+}
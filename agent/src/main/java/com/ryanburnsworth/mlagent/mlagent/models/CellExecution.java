@@ -0,0 +1,37 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CellExecution {
+
+    @JsonProperty("index")
+    private int index;
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("execution_count")
+    private Integer executionCount;
+
+    @JsonProperty("outputs")
+    private List<String> outputs;
+
+    @JsonProperty("ename")
+    private String errorName;
+
+    @JsonProperty("evalue")
+    private String errorValue;
+
+    @JsonProperty("traceback")
+    private String traceback;
+
+    public boolean isOk() {
+        return "ok".equals(status);
+    }
+}
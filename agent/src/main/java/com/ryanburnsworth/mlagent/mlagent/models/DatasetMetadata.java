@@ -1,5 +1,6 @@
 package com.ryanburnsworth.mlagent.mlagent.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
@@ -25,7 +26,14 @@ public class DatasetMetadata {
     @JsonProperty("datasets")
     private List<String> datasets;
 
+    // joined for the prompts; checkpoints serialize the list through the field
+    @JsonIgnore
     public String getDatasets() {
         return String.join(",", datasets);
     }
+
+    @JsonIgnore
+    public List<String> getDatasetFiles() {
+        return datasets == null ? List.of() : datasets;
+    }
 }
@@ -0,0 +1,31 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * An error handler output the ML service accepted, kept so the next run failing the same way can
+ * apply it without asking the LLM.
+ */
+@Getter
+@Builder(toBuilder = true)
+@Jacksonized
+public class ErrorFix {
+    // ErrorSignature.key of the step and error this fixes
+    String key;
+
+    AgentStep step;
+
+    String exceptionType;
+
+    String message;
+
+    String frame;
+
+    // the error handler's raw output, notebook JSON or a list of cells
+    String content;
+
+    // times the fix was applied from the store and validated again
+    int hits;
+}
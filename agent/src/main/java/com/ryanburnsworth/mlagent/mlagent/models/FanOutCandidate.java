@@ -0,0 +1,23 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@Builder
+public class FanOutCandidate {
+    String runId;
+
+    String notebookName;
+
+    String datasetName;
+
+    RunState state;
+
+    // value of the ranking metric; null until ranked or when the notebook printed none
+    Double score;
+
+    Map<String, Double> metrics;
+}
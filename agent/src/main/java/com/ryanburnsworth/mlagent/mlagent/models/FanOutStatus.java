@@ -0,0 +1,32 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Builder
+public class FanOutStatus {
+    String fanOutId;
+
+    String notebookName;
+
+    String searchTerm;
+
+    RunState state;
+
+    String message;
+
+    String rankMetric;
+
+    // best candidate first once every run has finished
+    List<FanOutCandidate> candidates;
+
+    String winnerRunId;
+
+    Instant createdAt;
+
+    Instant updatedAt;
+}
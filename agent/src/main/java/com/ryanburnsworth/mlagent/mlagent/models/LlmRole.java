@@ -0,0 +1,18 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Getter;
+
+@Getter
+public enum LlmRole {
+    NOTEBOOK_CREATOR("notebookCreatorAgent"),
+    NOTEBOOK_UPDATER("notebookUpdaterAgent"),
+    ML_CRITIC("mlCriticAgent"),
+    CODE_FIXER("codeFixerAgent"),
+    ERROR_HANDLER("errorHandlerAgent");
+
+    private final String agentName;
+
+    LlmRole(String agentName) {
+        this.agentName = agentName;
+    }
+}
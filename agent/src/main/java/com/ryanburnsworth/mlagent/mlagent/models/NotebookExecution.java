@@ -0,0 +1,44 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Outcome of running appended cells against a notebook's live kernel: the overall status plus the
+ * outputs and error of every cell that ran.
+ */
+@Getter
+@Setter
+public class NotebookExecution {
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("message")
+    private String message;
+
+    @JsonProperty("details")
+    private String details;
+
+    @JsonProperty("cells")
+    private List<CellExecution> cells = List.of();
+
+    public ResponseStatus toResponseStatus() {
+        return ResponseStatus.builder()
+                .status(status)
+                .message(message)
+                .details(details)
+                .build();
+    }
+
+    public static NotebookExecution from(ResponseStatus status) {
+        NotebookExecution execution = new NotebookExecution();
+        execution.setStatus(status.getStatus());
+        execution.setMessage(status.getMessage());
+        execution.setDetails(status.getDetails());
+        return execution;
+    }
+}
@@ -0,0 +1,27 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Evaluation metrics a notebook printed as its {@code METRICS:} line; empty when it printed none.
+ */
+@Getter
+@Setter
+public class NotebookMetrics {
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("metrics")
+    private Map<String, Double> metrics = Map.of();
+
+    public static NotebookMetrics empty() {
+        NotebookMetrics metrics = new NotebookMetrics();
+        metrics.setStatus("error");
+        return metrics;
+    }
+}
@@ -0,0 +1,22 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class PromptStats {
+    AgentStep step;
+
+    int promptTokens;
+
+    int memoryTokens;
+
+    int verbatimTurns;
+
+    int compactedTurns;
+
+    int summarizedTurns;
+
+    int droppedTurns;
+}
@@ -0,0 +1,46 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything needed to continue a run after its last completed step, even in a new JVM.
+ */
+@Getter
+@Builder
+@Jacksonized
+public class RunCheckpoint {
+    String runId;
+
+    String notebookName;
+
+    String searchTerm;
+
+    boolean bypassLlmCache;
+
+    String kernelPool;
+
+    int sampleRows;
+
+    // the dataset the run was started or fanned out with, so a resume never searches for another one
+    DatasetMetadata datasetMetadata;
+
+    String datasetSchema;
+
+    // null until the first step has completed
+    AgentStep completedStep;
+
+    int errorCounter;
+
+    List<AgentMemory> agentMemories;
+
+    // last critic verdict of every completed step
+    Map<AgentStep, CriticResult> criticResults;
+
+    // the notebook as confirmed by the ML service: created content plus every accepted update
+    Map<String, Object> notebook;
+}
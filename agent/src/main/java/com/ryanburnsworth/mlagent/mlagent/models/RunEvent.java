@@ -0,0 +1,20 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+public class RunEvent {
+    String runId;
+
+    RunEventType type;
+
+    AgentStep step;
+
+    String message;
+
+    Instant timestamp;
+}
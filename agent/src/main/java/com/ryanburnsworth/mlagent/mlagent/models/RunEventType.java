@@ -0,0 +1,15 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+public enum RunEventType {
+    RUN_STARTED,
+    STEP_STARTED,
+    STEP_COMPLETED,
+    CRITIC_APPROVED,
+    CRITIC_REJECTED,
+    CRITIC_UNRESOLVED,
+    ERROR_HANDLER_RETRY,
+    BRANCH_FAILED,
+    BRANCH_MERGED,
+    FULL_DATA_STARTED,
+    RUN_COMPLETED
+}
@@ -0,0 +1,12 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+public enum RunState {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
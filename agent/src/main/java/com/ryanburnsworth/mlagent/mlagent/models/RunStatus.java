@@ -0,0 +1,29 @@
+package com.ryanburnsworth.mlagent.mlagent.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Builder
+public class RunStatus {
+    String runId;
+
+    String notebookName;
+
+    String searchTerm;
+
+    RunState state;
+
+    AgentStep currentStep;
+
+    ResponseStatus result;
+
+    List<PromptStats> promptStats;
+
+    Instant createdAt;
+
+    Instant updatedAt;
+}
@@ -1,7 +1,12 @@
 package com.ryanburnsworth.mlagent.mlagent.services.agent;
 
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
 import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AgentService {
-    ResponseStatus machineLearningOrchestrator(String notebookName, String searchTerm);
+    ResponseStatus machineLearningOrchestrator(AgentRunContext context);
+
+    CompletableFuture<ResponseStatus> submitOrchestration(AgentRunContext context);
 }
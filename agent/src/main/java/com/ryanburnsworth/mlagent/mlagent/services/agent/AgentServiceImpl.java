@@ -1,142 +1,559 @@
 package com.ryanburnsworth.mlagent.mlagent.services.agent;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
 import com.ryanburnsworth.mlagent.mlagent.models.CriticResult;
 import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.ErrorFix;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.PromptStats;
 import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEventType;
+import com.ryanburnsworth.mlagent.mlagent.services.dataset.DatasetProfiler;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorSignature;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.CompactedMemory;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.MemoryCompactor;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
 import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLServiceException;
+import com.ryanburnsworth.mlagent.mlagent.util.StreamingCellParser;
 import com.ryanburnsworth.mlagent.mlagent.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.ryanburnsworth.mlagent.mlagent.util.Prompts.*;
 
 @Service
 public class AgentServiceImpl implements AgentService {
     private static final Logger log = LoggerFactory.getLogger(AgentServiceImpl.class);
-    private final ChatClient chatClient;
+    private static final String BRANCH_SCORE_METRIC = "score";
+    private final LlmService llmService;
     private final MLService mlService;
+    private final AsyncTaskExecutor agentRunExecutor;
+    private final AsyncTaskExecutor criticExecutor;
+    private final MemoryCompactor memoryCompactor;
+    private final ErrorFixStore errorFixes;
+    private final DatasetProfiler datasetProfiler;
+    private final AgentMetrics metrics;
 
-    private List<AgentMemory> agentMemories;
-    private int errorCounter = 0;
-    private boolean isCreated = false;
-    private String notebookName = "";
+    @Value("${agent.llm.streaming.enabled:false}")
+    private boolean streamingEnabled;
 
-    AgentServiceImpl(ChatClient.Builder chatClientBuilder, MLService mlService) {
-        this.chatClient = chatClientBuilder.build();
+    // model families trained side by side on forked notebooks after preprocessing; blank trains in the notebook itself
+    @Value("${agent.training.branches:}")
+    private String trainingBranches = "";
+
+    // ask the LLM for the next updater step while the ML service is still validating the current one
+    @Value("${agent.speculation.enabled:false}")
+    private boolean speculationEnabled;
+
+    @Value("${agent.critic.max-rounds:3}")
+    private int criticMaxRounds = 3;
+
+    @Value("${agent.critic.round-timeout-ms:180000}")
+    private long criticRoundTimeoutMs = 180_000;
+
+    @Value("${agent.critic.run-budget-ms:900000}")
+    private long criticRunBudgetMs = 900_000;
+
+    @Value("${agent.critic.parallel-candidates:1}")
+    private int criticParallelCandidates = 1;
+
+    // "payload" reviews a step's output as a whole, "cell" reviews and fixes each code cell on its own
+    @Value("${agent.critic.mode:payload}")
+    private String criticMode = "payload";
+
+    AgentServiceImpl(LlmService llmService, MLService mlService,
+                     @Qualifier("agentRunExecutor") AsyncTaskExecutor agentRunExecutor,
+                     @Qualifier("criticExecutor") AsyncTaskExecutor criticExecutor,
+                     MemoryCompactor memoryCompactor, ErrorFixStore errorFixes, DatasetProfiler datasetProfiler,
+                     AgentMetrics metrics) {
+        this.llmService = llmService;
         this.mlService = mlService;
+        this.agentRunExecutor = agentRunExecutor;
+        this.criticExecutor = criticExecutor;
+        this.memoryCompactor = memoryCompactor;
+        this.errorFixes = errorFixes;
+        this.datasetProfiler = datasetProfiler;
+        this.metrics = metrics;
     }
 
     @Override
-    public ResponseStatus machineLearningOrchestrator(String notebookName, String searchTerm) {
-        resetAgentServiceState(notebookName);
-
-        // Download dataset metadata
-        DatasetMetadata datasetMetadata = mlService.fetchDatasetMetadata(searchTerm);
-
-        // Execute workflow steps in order
-        List<Supplier<ResponseStatus>> steps = List.of(
-                () -> this.notebookCreatorAgent(datasetMetadata),
-                () -> {
-                    isCreated = true;
-                    return this.notebookUpdaterAgent(DATA_PREPROCESSING_PROMPT);
-                },
-                () -> this.notebookUpdaterAgent(MODEL_TRAINING_PROMPT),
-                () -> this.notebookUpdaterAgent(MODEL_EVALUATION_PROMPT)
-        );
+    public CompletableFuture<ResponseStatus> submitOrchestration(AgentRunContext context) {
+        return agentRunExecutor.submitCompletable(() -> machineLearningOrchestrator(context));
+    }
 
-        return runStepsSequentially(steps);
+    @Override
+    public ResponseStatus machineLearningOrchestrator(AgentRunContext context) {
+        return metrics.timeRun(context, () -> orchestrate(context));
     }
 
-    private ResponseStatus runStepsSequentially(List<Supplier<ResponseStatus>> steps) {
-        for (Supplier<ResponseStatus> step : steps) {
-            ResponseStatus status = handleResponseStatus(step.get());
-            if (status == null || "failed".equals(status.getStatus())) {
-                return status;
+    private ResponseStatus orchestrate(AgentRunContext context) {
+        context.setCriticDeadline(Instant.now().plusMillis(criticRunBudgetMs));
+
+        // Download dataset metadata, unless a resumed run has already created the notebook
+        DatasetMetadata datasetMetadata = context.getDatasetMetadata();
+        if (context.isStepCompleted(AgentStep.DATA_LOADING)) {
+            context.publishEvent(RunEventType.RUN_STARTED, "Resuming after " + context.getLastCompletedStep());
+        } else if (datasetMetadata != null) {
+            // a fan-out candidate, or a resumed run that had already downloaded its dataset
+            context.publishEvent(RunEventType.RUN_STARTED, "Using dataset " + datasetMetadata.getDatasetName());
+        } else {
+            context.publishEvent(RunEventType.RUN_STARTED, "Fetching dataset metadata for " + context.getSearchTerm());
+            try {
+                datasetMetadata = mlService.fetchDatasetMetadata(context.getSearchTerm());
+            } catch (MLServiceException e) {
+                log.error("Unable to fetch dataset metadata: {}", e.getMessage());
+                return e.getStatus();
+            }
+            context.setDatasetMetadata(datasetMetadata);
+        }
+        DatasetMetadata metadata = datasetMetadata;
+        // profile the files once, the schema is checkpointed with the run for the steps after loading
+        if (!context.isStepCompleted(AgentStep.DATA_LOADING)) {
+            context.setDatasetSchema(datasetProfiler.describe(metadata));
+        }
+
+        // Only a step with a single updater step after it can speculate; training branches each have their own prompt
+        boolean branched = !trainingFamilies().isEmpty();
+        StepSpeculation speculation = new StepSpeculation();
+        if (speculationEnabled) {
+            speculation.follow(AgentStep.DATA_LOADING, AgentStep.DATA_PREPROCESSING, DATA_PREPROCESSING_PROMPT);
+            if (!branched) {
+                speculation.follow(AgentStep.DATA_PREPROCESSING, AgentStep.MODEL_TRAINING, MODEL_TRAINING_PROMPT)
+                        .follow(AgentStep.MODEL_TRAINING, AgentStep.MODEL_EVALUATION, MODEL_EVALUATION_PROMPT);
             }
         }
-        return ResponseStatus.builder().status("success").build();
+
+        // Steps run as soon as the steps they depend on have completed
+        Supplier<AgentRunContext> run = () -> context;
+        StepGraph graph = new StepGraph()
+                .add(AgentStep.DATA_LOADING.name(), AgentStep.DATA_LOADING, run,
+                        step -> handleResponseStatus(step, metrics.timeAgent(step, LlmRole.NOTEBOOK_CREATOR,
+                                () -> this.notebookCreatorAgent(step, metadata, speculation))))
+                .add(AgentStep.DATA_PREPROCESSING.name(), AgentStep.DATA_PREPROCESSING, run,
+                        updaterStep(DATA_PREPROCESSING_PROMPT, "", speculation), AgentStep.DATA_LOADING.name());
+        String trained = addTrainingSteps(graph, context, AgentStep.DATA_PREPROCESSING.name(), speculation);
+        graph.add(AgentStep.MODEL_EVALUATION.name(), AgentStep.MODEL_EVALUATION, run,
+                updaterStep(MODEL_EVALUATION_PROMPT, "", speculation), trained);
+
+        ResponseStatus status;
+        try {
+            status = runStepGraph(context, graph);
+        } finally {
+            // a run that stops early leaves the last speculative request unanswered
+            speculation.discard();
+        }
+        return "success".equals(status.getStatus()) ? executeOnFullData(context, status) : status;
     }
 
-    private ResponseStatus notebookCreatorAgent(DatasetMetadata datasetMetadata) {
+    /**
+     * The steps of a run with a sample size were only validated on a sample of the dataset, so the finished
+     * notebook is executed once on the full data. Its outputs, and the metrics fan-outs rank it by, then
+     * come from the full data. A notebook that fails there fails the run; resuming it retries this execution.
+     */
+    private ResponseStatus executeOnFullData(AgentRunContext context, ResponseStatus status) {
+        if (context.getSampleRows() <= 0) {
+            return status;
+        }
+        context.publishEvent(RunEventType.FULL_DATA_STARTED, "Validated on " + context.getSampleRows()
+                + " sampled rows, executing the notebook on the full dataset");
+        ResponseStatus validated = mlService.validateNotebook(context.getNotebookName(), context.getKernelPool());
+        if (validated == null || !"success".equals(validated.getStatus())) {
+            log.warn("Notebook {} of run {} failed on the full dataset", context.getNotebookName(), context.getRunId());
+            return validated != null ? validated : ResponseStatus.builder()
+                    .status("Failure")
+                    .message("Error executing notebook on the full dataset")
+                    .details("")
+                    .build();
+        }
+        return validated;
+    }
+
+    private Function<AgentRunContext, ResponseStatus> updaterStep(PromptTemplate promptTemplate, String hint,
+                                                                  StepSpeculation speculation) {
+        return step -> handleResponseStatus(step, metrics.timeAgent(step, LlmRole.NOTEBOOK_UPDATER,
+                () -> this.notebookUpdaterAgent(step, promptTemplate, hint, speculation)));
+    }
+
+    /**
+     * Without branches the model is trained in the run's notebook. With {@code agent.training.branches}
+     * every model family is generated, criticized and executed on its own fork of the preprocessed
+     * notebook at the same time, and the best scoring branch is merged back. Returns the id of the step
+     * that evaluation waits for.
+     */
+    private String addTrainingSteps(StepGraph graph, AgentRunContext context, String after, StepSpeculation speculation) {
+        String training = AgentStep.MODEL_TRAINING.name();
+        List<String> families = trainingFamilies();
+        if (families.isEmpty()) {
+            graph.add(training, AgentStep.MODEL_TRAINING, () -> context,
+                    updaterStep(MODEL_TRAINING_PROMPT, "", speculation), after);
+            return training;
+        }
+
+        List<TrainingBranch> branches = families.stream().map(family -> new TrainingBranch(family, context)).toList();
+        for (TrainingBranch branch : branches) {
+            graph.addBranch(training + "[" + branch.getFamily() + "]", AgentStep.MODEL_TRAINING, branch::fork,
+                    step -> branch.finish(trainBranch(context, step, branch)), after);
+        }
+        graph.add(training, AgentStep.MODEL_TRAINING, () -> context, step -> mergeBestBranch(step, branches),
+                branches.stream().map(branch -> training + "[" + branch.getFamily() + "]").toArray(String[]::new));
+        return training;
+    }
+
+    private List<String> trainingFamilies() {
+        return Stream.of(trainingBranches.split(","))
+                .map(family -> family.trim().toLowerCase(Locale.ROOT))
+                .filter(family -> !family.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private ResponseStatus trainBranch(AgentRunContext context, AgentRunContext branchContext, TrainingBranch branch) {
+        ResponseStatus forked = mlService.forkNotebook(context.getNotebookName(), branch.getNotebookName(),
+                context.getKernelPool());
+        if (forked == null || !"success".equals(forked.getStatus())) {
+            return forked;
+        }
+        String hint = MODEL_TRAINING_BRANCH_HINT.formatted(branch.getFamily().replace('-', ' '));
+        return updaterStep(MODEL_TRAINING_PROMPT, hint, new StepSpeculation()).apply(branchContext);
+    }
+
+    /**
+     * Ranks the successful branches by the score their notebooks printed, with unscored branches last, and
+     * merges the best one into the run's notebook together with its memories and critic verdict. The other
+     * branches are discarded.
+     */
+    private ResponseStatus mergeBestBranch(AgentRunContext context, List<TrainingBranch> branches) {
+        List<TrainingBranch> succeeded = branches.stream().filter(TrainingBranch::isSucceeded).toList();
+        succeeded.forEach(branch -> {
+            Map<String, Double> branchMetrics = mlService.fetchNotebookMetrics(branch.getNotebookName()).getMetrics();
+            branch.setScore(branchMetrics != null ? branchMetrics.get(BRANCH_SCORE_METRIC) : null);
+        });
+        // ties keep the branch that was configured first
+        TrainingBranch winner = succeeded.stream()
+                .max(Comparator.comparing(TrainingBranch::getScore, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .orElse(null);
+        branches.stream().filter(TrainingBranch::isForked)
+                .forEach(branch -> context.getPromptStats().addAll(branch.getContext().getPromptStats()));
+
+        if (winner == null) {
+            discardBranches(branches, null);
+            String details = branches.stream()
+                    .map(branch -> branch.getFamily() + ": " + Optional.ofNullable(branch.getStatus())
+                            .map(ResponseStatus::getDetails).orElse("no result"))
+                    .collect(Collectors.joining("\n"));
+            return ResponseStatus.builder()
+                    .status("Failure")
+                    .message("No training branch succeeded")
+                    .details(details)
+                    .build();
+        }
+
+        ResponseStatus merged = mlService.mergeNotebook(context.getNotebookName(), winner.getNotebookName(),
+                context.getKernelPool());
+        if (merged == null || !"success".equals(merged.getStatus())) {
+            discardBranches(branches, null);
+            return merged;
+        }
+        context.setNotebook(winner.getContext().getNotebook());
+        context.getAgentMemories().addAll(winner.newMemories());
+        CriticResult verdict = winner.getContext().getCriticResults().get(AgentStep.MODEL_TRAINING);
+        if (verdict != null) {
+            context.getCriticResults().put(AgentStep.MODEL_TRAINING, verdict);
+        }
+        discardBranches(branches, winner);
+
+        log.info("Merged training branch {} (score {}) into notebook {}", winner.getFamily(), winner.getScore(),
+                context.getNotebookName());
+        context.publishEvent(RunEventType.BRANCH_MERGED, winner.getFamily() + " (score " + winner.getScore() + ")");
+        return merged;
+    }
+
+    private void discardBranches(List<TrainingBranch> branches, TrainingBranch winner) {
+        branches.stream()
+                .filter(branch -> branch.isForked() && branch != winner)
+                .forEach(branch -> {
+                    ResponseStatus status = mlService.discardNotebook(branch.getNotebookName());
+                    if (status == null || !"success".equals(status.getStatus())) {
+                        log.warn("Could not discard training branch {}", branch.getNotebookName());
+                    }
+                });
+    }
+
+    /**
+     * Runs every step once the steps it depends on have settled. A step that becomes ready alone runs on the
+     * run's own thread; steps that become ready together run concurrently on the critic executor. A failed
+     * branch is left to the step that merges it, any other failure stops the run once the steps already
+     * running have finished. Steps a resumed run has already completed are skipped.
+     */
+    private ResponseStatus runStepGraph(AgentRunContext context, StepGraph graph) {
+        Set<String> settled = new HashSet<>();
+        graph.nodes().stream()
+                .filter(node -> context.isStepCompleted(node.step()))
+                .forEach(node -> settled.add(node.id()));
+
+        Map<String, CompletableFuture<ResponseStatus>> running = new LinkedHashMap<>();
+        ResponseStatus failure = null;
+        while (failure == null && settled.size() < graph.size()) {
+            List<StepGraph.Node> ready = graph.ready(settled, running.keySet());
+            if (ready.size() == 1 && running.isEmpty()) {
+                StepGraph.Node node = ready.getFirst();
+                running.put(node.id(), CompletableFuture.completedFuture(runStep(node)));
+            } else {
+                ready.forEach(node -> running.put(node.id(), criticExecutor.submitCompletable(() -> runStep(node))
+                        .exceptionally(e -> {
+                            log.error("Step {} failed", node.id(), e);
+                            return stepFailure(node, e.getMessage());
+                        })));
+            }
+
+            CompletableFuture.anyOf(running.values().toArray(CompletableFuture[]::new)).join();
+            for (StepGraph.Node node : graph.nodes()) {
+                CompletableFuture<ResponseStatus> step = running.get(node.id());
+                if (step == null || !step.isDone()) {
+                    continue;
+                }
+                running.remove(node.id());
+                settled.add(node.id());
+                ResponseStatus status = step.join();
+                if (!node.branch() && failure == null && !"success".equals(status.getStatus())) {
+                    failure = status;
+                }
+            }
+        }
+
+        // steps still running share the run's context, so the run only ends once they have finished
+        running.values().forEach(CompletableFuture::join);
+        return failure != null ? failure : ResponseStatus.builder().status("success").build();
+    }
+
+    private ResponseStatus runStep(StepGraph.Node node) {
+        AgentRunContext context = node.context().get();
+        context.setCurrentStep(node.step());
+        context.publishEvent(RunEventType.STEP_STARTED, "Starting " + node.id());
+
+        ResponseStatus status = metrics.traceStep(context, () -> node.action().apply(context));
+        // any non-success status means the error handler gave up, so later steps would build on a broken notebook
+        if (status == null || !"success".equals(status.getStatus())) {
+            log.warn("Step {} failed in run {}", node.id(), context.getRunId());
+            if (node.branch()) {
+                context.publishEvent(RunEventType.BRANCH_FAILED, node.id() + ": "
+                        + (status != null ? status.getMessage() : "no response"));
+            }
+            return status != null ? status : stepFailure(node, "");
+        }
+        if (!node.branch()) {
+            context.completeStep(node.step());
+        }
+        context.publishEvent(RunEventType.STEP_COMPLETED, status.getStatus());
+        return status;
+    }
+
+    private static ResponseStatus stepFailure(StepGraph.Node node, String details) {
+        return ResponseStatus.builder()
+                .status("Failure")
+                .message("Step " + node.id() + " failed")
+                .details(Objects.toString(details, ""))
+                .build();
+    }
+
+    private ResponseStatus notebookCreatorAgent(AgentRunContext context, DatasetMetadata datasetMetadata,
+                                                StepSpeculation speculation) {
         log.info("NotebookCreatorAgent: Creating Notebook");
         Prompt prompt = DATA_LOADING_PROMPT.create(
                 Map.of(
                         "title", datasetMetadata.getTitle(),
                         "subtitle", datasetMetadata.getSubtitle(),
                         "description", datasetMetadata.getDescription(),
-                        "datasets", datasetMetadata.getDatasets()
+                        "datasets", datasetMetadata.getDatasets(),
+                        "schema", schemaOf(context)
                 )
         );
 
         try {
             log.info("NotebookCreatorAgent; Getting notebook content from LLM");
-            String content = getContentFromLLM(prompt.getContents());
+            String content = getContentFromLLM(context, LlmRole.NOTEBOOK_CREATOR, prompt.getContents());
 
-            updateAgentMemory(prompt.getContents(), content);
+            updateAgentMemory(context, prompt.getContents(), content);
+            speculateNext(context, speculation);
             Map<String, Object> payload = (Map<String, Object>) convertToPayload(content, false);
 
             // evaluate the agents output before committing
-            Map<String, Object> evaluatedPayload = (Map<String, Object>) evaluateAgentOutput(payload);
+            Map<String, Object> evaluatedPayload = (Map<String, Object>) evaluateAgentOutput(context, payload);
 
-            return performNotebookAction(this.notebookName, evaluatedPayload);
+            return performNotebookAction(context, evaluatedPayload);
         } catch (Exception e) {
             log.error("Error reading data loading cells from LLM {}", e.getMessage());
             return getResponseStatusError(e);
         }
     }
 
-    private ResponseStatus notebookUpdaterAgent(PromptTemplate promptTemplate) {
+    private ResponseStatus notebookUpdaterAgent(AgentRunContext context, PromptTemplate promptTemplate, String hint,
+                                                StepSpeculation speculation) {
         // log.info("NotebookUpdaterAgent: Generating preprocessing notebook cells");
 
-        String memoryContext = Util.formatAgentMemories(agentMemories);
-        String prompt = promptTemplate.render(Map.of(
-                "memory", memoryContext
-        ));
+        // keep the memory inside a fixed token budget so late steps cost the same as early ones
+        CompactedMemory memory = memoryCompactor.compact(context.getAgentMemories());
+        String prompt = renderUpdaterPrompt(promptTemplate, memory, schemaOf(context), hint);
+        recordPromptStats(context, prompt, memory);
 
         try {
-            String content = getContentFromLLM(prompt);
-
-            updateAgentMemory(prompt, content);
-            List<Map<String, Object>> payload = (List<Map<String, Object>>) convertToPayload(content, isCreated);
+            // the output is recorded before it is parsed, so on a malformed response the error handler
+            // still regenerates this step from its own prompt and output
+            List<Map<String, Object>> payload;
+            CellReviews streamedReviews = null;
+            String speculated = takeSpeculation(context, speculation, prompt);
+            if (speculated != null) {
+                updateAgentMemory(context, prompt, speculated);
+                payload = (List<Map<String, Object>>) convertToPayload(speculated, context.isCreated());
+            } else if (streamingEnabled) {
+                // parse cells while the LLM is still generating. In cell mode each cell's critic starts as soon
+                // as the cell is complete, so the reviews overlap the rest of the generation.
+                StringBuilder rawContent = new StringBuilder();
+                Flux<Map<String, Object>> cells = streamCellsFromLLM(context, LlmRole.NOTEBOOK_UPDATER, prompt, rawContent);
+                if (isCellCritic()) {
+                    CellReviews reviews = new CellReviews(context);
+                    cells = cells.doOnNext(reviews::submit);
+                    streamedReviews = reviews;
+                }
+                try {
+                    payload = cells.collectList().block();
+                } finally {
+                    updateAgentMemory(context, prompt, rawContent.toString());
+                }
+            } else {
+                String content = getContentFromLLM(context, LlmRole.NOTEBOOK_UPDATER, prompt);
+                updateAgentMemory(context, prompt, content);
+                payload = (List<Map<String, Object>>) convertToPayload(content, context.isCreated());
+            }
+            speculateNext(context, speculation);
 
             // evaluate the agents output before committing
-            List<Map<String, Object>> evaluatedPayload = (List<Map<String, Object>>) evaluateAgentOutput(payload);
+            List<Map<String, Object>> evaluatedPayload = streamedReviews != null
+                    ? streamedReviews.join()
+                    : (List<Map<String, Object>>) evaluateAgentOutput(context, payload);
 
             // Pass to workflow
-            return performNotebookAction(this.notebookName, evaluatedPayload);
+            return performNotebookAction(context, evaluatedPayload);
         } catch (Exception e) {
             log.error("Error reading preprocessing cells from LLM", e);
             return getResponseStatusError(e);
         }
     }
 
-    private ResponseStatus errorHandlerAgent(ResponseStatus response) {
+    // templates without a {schema} placeholder ignore it
+    private static String renderUpdaterPrompt(PromptTemplate promptTemplate, CompactedMemory memory, String schema,
+                                              String hint) {
+        return promptTemplate.render(Map.of(
+                "memory", Util.formatAgentMemories(memory.memories()),
+                "schema", schema
+        )) + hint;
+    }
+
+    private static String schemaOf(AgentRunContext context) {
+        String schema = context.getDatasetSchema();
+        return schema == null || schema.isBlank() ? DATASET_SCHEMA_UNAVAILABLE : schema;
+    }
+
+    /**
+     * Sends the next step's prompt ahead, rendered from the memory as it stands once this step's output is
+     * recorded. That is the memory the next step sees if the critic and the ML service accept this step
+     * without the error handler, so the request overlaps the critic rounds and the notebook validation.
+     */
+    private void speculateNext(AgentRunContext context, StepSpeculation speculation) {
+        StepSpeculation.Successor next = speculation.successorOf(context.getCurrentStep());
+        if (next == null) {
+            return;
+        }
+        AgentRunContext lookahead = context.forkBranch(context.getNotebookName());
+        lookahead.setCurrentStep(next.step());
+        String prompt = renderUpdaterPrompt(next.template(), memoryCompactor.compact(lookahead.getAgentMemories()),
+                schemaOf(lookahead), "");
+
+        log.info("Speculatively generating {} while {} is validated", next.step(), context.getCurrentStep());
+        speculation.start(prompt, criticExecutor.submitCompletable(
+                () -> getContentFromLLM(lookahead, LlmRole.NOTEBOOK_UPDATER, prompt)));
+    }
+
+    // Waits for the request sent ahead for this exact prompt; without one the step asks the LLM itself
+    private String takeSpeculation(AgentRunContext context, StepSpeculation speculation, String prompt) {
+        boolean speculated = speculation.isPending();
+        CompletableFuture<String> ahead = speculation.take(prompt);
+        if (ahead == null) {
+            if (speculated) {
+                log.info("Discarding speculative {} output, the memory changed since it was requested",
+                        context.getCurrentStep());
+                metrics.recordSpeculation(context, "discarded");
+            }
+            return null;
+        }
+        try {
+            String content = ahead.join();
+            metrics.recordSpeculation(context, "used");
+            return content;
+        } catch (CompletionException | CancellationException e) {
+            log.warn("Speculative request for {} failed: {}", context.getCurrentStep(), e.getMessage());
+            metrics.recordSpeculation(context, "failed");
+            return null;
+        }
+    }
+
+    private ResponseStatus errorHandlerAgent(AgentRunContext context, ResponseStatus response) {
         log.info("ErrorHandlerAgent: Attempting to fix errors");
 
-        String lastUserPrompt = agentMemories.get(agentMemories.toArray().length - 1).getUserInput();
-        String lastAgentOutput = agentMemories.get(agentMemories.toArray().length - 1).getAgentOutput();
+        List<AgentMemory> agentMemories = context.getAgentMemories();
+        String lastUserPrompt = agentMemories.get(agentMemories.size() - 1).getUserInput();
+        String lastAgentOutput = agentMemories.get(agentMemories.size() - 1).getAgentOutput();
 
         // allow 3 attempts at error handling before quitting
-        errorCounter += 1;
-        if (errorCounter > 3) {
+        int attempt = context.incrementErrorCounter();
+        if (attempt > 3) {
             return ResponseStatus.builder()
                     .status("Failure")
                     .message("Agent Output: " + lastAgentOutput)
                     .details(response.getDetails())
                     .build();
         }
+        metrics.recordErrorHandlerRetry(context);
+        context.publishEvent(RunEventType.ERROR_HANDLER_RETRY, "Attempt " + attempt + ": " + response.getMessage());
 
         Prompt prompt = ERROR_HANDLING_PROMPT.create(
                 Map.of(
@@ -147,58 +564,127 @@ public class AgentServiceImpl implements AgentService {
                 )
         );
 
+        ErrorSignature signature = ErrorSignature.of(response.getMessage(), response.getDetails());
+        ResponseStatus knownFix = applyKnownFix(context, signature, prompt.getContents());
+        if (knownFix != null) {
+            return knownFix;
+        }
+
         try {
-            String content = getContentFromLLM(prompt.getContents());
-            updateAgentMemory(prompt.getContents(), content);
+            String content = getContentFromLLM(context, LlmRole.ERROR_HANDLER, prompt.getContents());
+            updateAgentMemory(context, prompt.getContents(), content);
 
-            Object payload = convertToPayload(content, isCreated);
+            Object payload = convertToPayload(content, context.isCreated());
 
-            return performNotebookAction(notebookName, payload);
+            ResponseStatus status = performNotebookAction(context, payload);
+            if (status != null && "success".equals(status.getStatus())) {
+                rememberFix(context, signature, content);
+            }
+            return status;
         } catch (Exception e) {
             log.error("Error reading content from LLM {}", e.getMessage());
         }
         return null;
     }
 
-    private CriticResult mlCriticAgent(String agentOutput) {
+    /**
+     * Re-runs the notebook with the fix that was validated for the same error in an earlier run, which
+     * costs one notebook run instead of an LLM call and a run. A fix that no longer validates is
+     * forgotten and the LLM is asked instead. Null means there was no fix or it did not work.
+     */
+    private ResponseStatus applyKnownFix(AgentRunContext context, ErrorSignature signature, String prompt) {
+        String key = signature.key(context.getCurrentStep());
+        Optional<ErrorFix> fix = errorFixes.find(key);
+        if (fix.isEmpty()) {
+            metrics.recordErrorFixLookup(context, "miss");
+            return null;
+        }
+
+        log.info("Applying known fix for {} in {}", signature, context.getCurrentStep());
+        try {
+            Object payload = convertToPayload(fix.get().getContent(), context.isCreated());
+            ResponseStatus status = performNotebookAction(context, payload);
+            if (status != null && "success".equals(status.getStatus())) {
+                updateAgentMemory(context, prompt, fix.get().getContent());
+                errorFixes.save(fix.get().toBuilder().hits(fix.get().getHits() + 1).build());
+                metrics.recordErrorFixLookup(context, "hit");
+                return status;
+            }
+        } catch (Exception e) {
+            log.warn("Unable to apply known fix for {}: {}", signature, e.getMessage());
+        }
+
+        log.info("Known fix for {} did not validate, asking the LLM", signature);
+        errorFixes.delete(key);
+        metrics.recordErrorFixLookup(context, "stale");
+        return null;
+    }
+
+    private void rememberFix(AgentRunContext context, ErrorSignature signature, String content) {
+        errorFixes.save(ErrorFix.builder()
+                .key(signature.key(context.getCurrentStep()))
+                .step(context.getCurrentStep())
+                .exceptionType(signature.exceptionType())
+                .message(signature.message())
+                .frame(signature.frame())
+                .content(content)
+                .build());
+    }
+
+    private CriticResult mlCriticAgent(AgentRunContext context, Object agentOutput, String precedingCode) {
         log.info("MLCriticAgent: Critiquing Agent Last Output");
 
-        Prompt prompt = ML_CRITIC_PROMPT.create(
-                Map.of("agent_output", agentOutput)
-        );
+        Prompt prompt = precedingCode == null
+                ? ML_CRITIC_PROMPT.create(Map.of("agent_output", Util.toJson(agentOutput)))
+                : ML_CELL_CRITIC_PROMPT.create(Map.of(
+                        "preceding_code", precedingCode,
+                        "cell", Util.toJson(agentOutput)
+                ));
 
-        String content = getContentFromLLM(prompt.getContents());
+        String content = getContentFromLLM(context, LlmRole.ML_CRITIC, prompt.getContents());
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.readValue(content, CriticResult.class);
+            return Util.getCriticResultFromContent(content);
         } catch (Exception e) {
             log.error("Error converting critic result to JSON {}", e.getMessage());
             return null;
         }
     }
 
-    private Object codeFixerAgent(String originalCode, String criticFeedback) {
-        log.info("Fixing code with feedback from critic");
+    private List<Map<String, Object>> codeFixerAgent(AgentRunContext context, Object originalCode,
+                                                     String criticFeedback, int candidate) {
+        log.info("Fixing code with feedback from critic (candidate {})", candidate + 1);
+        String feedback = Objects.toString(criticFeedback, "");
+        if (candidate > 0) {
+            feedback += CODE_FIXER_VARIANT_HINT.formatted(candidate + 1);
+        }
         Prompt prompt = CODE_FIXER_PROMPT.create(
                 Map.of(
-                        "original_code", originalCode,
-                        "critic_feedback", criticFeedback
+                        "original_code", Util.toJson(originalCode),
+                        "critic_feedback", feedback
                 )
         );
 
-        String content = getContentFromLLM(prompt.getContents());
+        String content = getContentFromLLM(context, LlmRole.CODE_FIXER, prompt.getContents());
         return Util.getJsonFromListContent(content);
     }
 
-    private String getContentFromLLM(String prompt) {
-        return chatClient
-                .prompt(prompt)
-                .call()
-                .content();
+    private String getContentFromLLM(AgentRunContext context, LlmRole role, String prompt) {
+        return llmService.call(context, role, prompt);
     }
 
-    private Object convertToPayload(String content, boolean isUpdatingNotebook) {
+    private Flux<Map<String, Object>> streamCellsFromLLM(AgentRunContext context, LlmRole role, String prompt,
+                                                         StringBuilder rawContent) {
+        return Flux.defer(() -> {
+            StreamingCellParser parser = new StreamingCellParser();
+            return llmService.stream(context, role, prompt)
+                    .doOnNext(rawContent::append)
+                    .concatMapIterable(parser::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(parser.finish())));
+        });
+    }
+
+    static Object convertToPayload(String content, boolean isUpdatingNotebook) {
         if (content == null || content.isBlank()) {
             log.error("Empty response from LLM during preprocessing cell generation");
             return ResponseStatus.builder()
@@ -222,50 +708,303 @@ public class AgentServiceImpl implements AgentService {
         }
     }
 
-    private ResponseStatus performNotebookAction(String name, Object payload) {
+    private ResponseStatus performNotebookAction(AgentRunContext context, Object payload) {
         log.info("Performing notebook action");
 
-        // Creating initial notebook
-        if (!this.isCreated && payload instanceof Map) {
+        ResponseStatus status;
+        if (!context.isCreated() && payload instanceof Map) {
+            // Creating initial notebook
             log.info("Creating notebook with data loader cells");
-            return this.mlService.createNotebook(name, (Map<String, Object>) payload);
-        }
-
-        // Updating notebook
-        if (this.isCreated && payload instanceof List) {
+            status = this.mlService.createNotebook(context.getNotebookName(), (Map<String, Object>) payload,
+                    context.getKernelPool(), context.getSampleRows());
+        } else if (context.isCreated() && payload instanceof List) {
+            // Updating notebook
             log.info("Updating notebook with preprocessing cells");
-            return this.mlService.updateNotebook(name, (List<Map<String, Object>>) payload);
+            status = this.mlService.updateNotebook(context.getNotebookName(), (List<Map<String, Object>>) payload,
+                    context.getKernelPool(), context.getSampleRows());
+        } else {
+            return getResponseStatusError(new Exception("Error performing notebook action"));
         }
 
-        return getResponseStatusError(new Exception("Error performing notebook action"));
+        if (status != null && "success".equals(status.getStatus())) {
+            context.confirmNotebookAction(payload);
+        }
+        return status;
     }
 
-    private Object evaluateAgentOutput(Object agentOutput) {
+    private Object evaluateAgentOutput(AgentRunContext context, Object agentOutput) {
         log.info("Evaluating Agent Output");
-        CriticResult criticResult = this.mlCriticAgent(agentOutput.toString());
-        if (criticResult != null && "rejected".equals(criticResult.getStatus())) {
-            log.warn("Code was rejected by critic with feedback: {}", criticResult.getFeedback());
-            Object payload = codeFixerAgent(agentOutput.toString(), criticResult.getFeedback());
+        if (isCellCritic() && cellsOf(agentOutput) instanceof List<?> cells && cells.size() > 1) {
+            return evaluateCells(context, agentOutput, (List<Map<String, Object>>) cells);
+        }
+        return critiqueUntilApproved(context, agentOutput, null,
+                verdict -> context.getCriticResults().put(context.getCurrentStep(), verdict));
+    }
+
+    private boolean isCellCritic() {
+        return "cell".equalsIgnoreCase(criticMode);
+    }
+
+    /**
+     * Runs the critic loop for every code cell concurrently. Only rejected cells go to the fixer, and
+     * markdown and approved cells are kept verbatim.
+     */
+    private Object evaluateCells(AgentRunContext context, Object agentOutput, List<Map<String, Object>> cells) {
+        CellReviews reviews = new CellReviews(context);
+        cells.forEach(reviews::submit);
+        return mergeFix(agentOutput, reviews.join());
+    }
 
-            // try the critic again with latest changes
-            return evaluateAgentOutput(payload.toString());
+    /**
+     * Cell reviews in the order their cells were submitted. Each code cell's critic loop starts on
+     * submission, with the source of the cells before it as context, so references to earlier variables
+     * are not flagged. Joining them records one verdict for the step, merged over its cells. Cells must
+     * be submitted from one thread at a time.
+     */
+    private final class CellReviews {
+        private final AgentRunContext context;
+        private final List<CompletableFuture<List<Map<String, Object>>>> reviews = new ArrayList<>();
+        private final List<AtomicReference<CriticResult>> verdicts = new ArrayList<>();
+        private final StringBuilder precedingCode = new StringBuilder();
+
+        private CellReviews(AgentRunContext context) {
+            this.context = context;
+        }
+
+        void submit(Map<String, Object> cell) {
+            if (!"code".equals(cell.get("cell_type"))) {
+                reviews.add(CompletableFuture.completedFuture(List.of(cell)));
+                return;
+            }
+            String cellContext = precedingCode.toString();
+            AtomicReference<CriticResult> verdict = new AtomicReference<>();
+            verdicts.add(verdict);
+            reviews.add(criticExecutor.submitCompletable(() -> (List<Map<String, Object>>) critiqueUntilApproved(
+                            context, List.of(cell), cellContext, verdict::set))
+                    .exceptionally(e -> {
+                        log.error("Cell review failed, keeping the cell as generated", e);
+                        return List.of(cell);
+                    }));
+            precedingCode.append(sourceOf(cell)).append('\n');
+        }
+
+        // every cell loop is bounded by the same rounds and deadline, so this join is bounded too
+        List<Map<String, Object>> join() {
+            List<Map<String, Object>> reviewed = new ArrayList<>();
+            reviews.forEach(review -> reviewed.addAll(review.join()));
+            CriticResult stepVerdict = mergeCellVerdicts(verdicts.stream().map(AtomicReference::get).toList());
+            if (stepVerdict != null) {
+                context.getCriticResults().put(context.getCurrentStep(), stepVerdict);
+            }
+            return reviewed;
+        }
+    }
+
+    // The step is approved only if every reviewed cell was; the feedback is that of the cells deciding it
+    private static CriticResult mergeCellVerdicts(List<CriticResult> cellVerdicts) {
+        List<CriticResult> reviewed = cellVerdicts.stream().filter(Objects::nonNull).toList();
+        if (reviewed.isEmpty()) {
+            return null;
+        }
+        boolean rejected = reviewed.stream().anyMatch(AgentServiceImpl::isRejected);
+        CriticResult merged = new CriticResult();
+        merged.setStatus(rejected ? "rejected" : "approved");
+        merged.setFeedback(reviewed.stream()
+                .filter(verdict -> !rejected || isRejected(verdict))
+                .map(CriticResult::getFeedback)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining("\n")));
+        return merged;
+    }
+
+    /**
+     * Alternates critic reviews and fixes until the critic approves. It gives up after
+     * {@code agent.critic.max-rounds} reviews, or when a round runs past its timeout or the run's critic
+     * deadline. On giving up it returns the latest candidate and lets the ML service be the judge. Every
+     * verdict goes to {@code verdicts}, so the last one it receives is the loop's outcome.
+     */
+    private Object critiqueUntilApproved(AgentRunContext context, Object agentOutput, String precedingCode,
+                                         Consumer<CriticResult> verdicts) {
+        CriticRound current = awaitRound(context, List.of(criticExecutor.submitCompletable(
+                () -> new CriticRound(agentOutput, critique(context, agentOutput, precedingCode)))));
+        if (current == null) {
+            return giveUpCritique(context, agentOutput, "Critic did not answer before the deadline");
+        }
+
+        int round = 1;
+        while (current.isRejected()) {
+            String feedback = current.verdict().getFeedback();
+            log.warn("Code was rejected by critic with feedback: {}", feedback);
+            context.publishEvent(RunEventType.CRITIC_REJECTED, feedback);
+
+            verdicts.accept(current.verdict());
+            if (round >= criticMaxRounds) {
+                return giveUpCritique(context, current.payload(), "Critic still rejecting after " + round + " rounds");
+            }
+
+            CriticRound next = fixInParallel(context, current.payload(), feedback, precedingCode);
+            if (next == null) {
+                return giveUpCritique(context, current.payload(), "No fix candidate was reviewed before the deadline");
+            }
+            current = next;
+            round++;
         }
 
         log.info("Code was approved by critic");
-        return agentOutput;
+        CriticResult verdict = current.verdict();
+        if (verdict != null) {
+            verdicts.accept(verdict);
+        }
+        context.publishEvent(RunEventType.CRITIC_APPROVED, verdict != null ? verdict.getFeedback() : "");
+        return current.payload();
+    }
+
+    // Each candidate is fixed and then reviewed on its own virtual thread; the first approved one wins
+    private CriticRound fixInParallel(AgentRunContext context, Object payload, String feedback, String precedingCode) {
+        List<CompletableFuture<CriticRound>> candidates = IntStream.range(0, Math.max(1, criticParallelCandidates))
+                .mapToObj(candidate -> criticExecutor.submitCompletable(() -> {
+                    List<Map<String, Object>> cells = metrics.timeAgent(context, LlmRole.CODE_FIXER,
+                            () -> codeFixerAgent(context, cellsOf(payload), feedback, candidate));
+                    Object fixed = mergeFix(payload, cells);
+                    return new CriticRound(fixed, critique(context, fixed, precedingCode));
+                }))
+                .toList();
+        return awaitRound(context, candidates);
+    }
+
+    private CriticResult critique(AgentRunContext context, Object payload, String precedingCode) {
+        CriticResult verdict = metrics.timeAgent(context, LlmRole.ML_CRITIC,
+                () -> mlCriticAgent(context, payload, precedingCode));
+        metrics.recordCriticVerdict(context, isRejected(verdict) ? "rejected" : "approved");
+        return verdict;
+    }
+
+    /**
+     * Waits for the first approved candidate, bounded by the round timeout and the run's critic deadline.
+     * If none is approved, the first candidate that finished its review is returned. Null means no
+     * candidate finished in time.
+     */
+    private CriticRound awaitRound(AgentRunContext context, List<CompletableFuture<CriticRound>> candidates) {
+        CompletableFuture<CriticRound> firstApproved = new CompletableFuture<>();
+        candidates.forEach(candidate -> candidate.thenAccept(round -> {
+            if (!round.isRejected()) {
+                firstApproved.complete(round);
+            }
+        }));
+        // the last candidate's approval may not have been seen yet when allOf fires, so look again
+        CompletableFuture.allOf(candidates.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, error) -> firstApproved.complete(finished(candidates)
+                        .filter(round -> !round.isRejected())
+                        .findFirst()
+                        .orElse(null)));
+
+        try {
+            CriticRound approved = firstApproved.get(roundTimeout(context).toMillis(), TimeUnit.MILLISECONDS);
+            if (approved != null) {
+                return approved;
+            }
+        } catch (TimeoutException e) {
+            log.warn("Critic round timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Critic round failed", e);
+        }
+
+        // slower candidates keep running in the background; their results are discarded
+        candidates.forEach(candidate -> candidate.cancel(true));
+        return finished(candidates).findFirst().orElse(null);
+    }
+
+    private static Stream<CriticRound> finished(List<CompletableFuture<CriticRound>> candidates) {
+        return candidates.stream()
+                .filter(candidate -> candidate.isDone() && !candidate.isCompletedExceptionally())
+                .map(CompletableFuture::join);
+    }
+
+    private Duration roundTimeout(AgentRunContext context) {
+        Duration timeout = Duration.ofMillis(criticRoundTimeoutMs);
+        if (context.getCriticDeadline() == null) {
+            return timeout;
+        }
+        Duration remaining = Duration.between(Instant.now(), context.getCriticDeadline());
+        return remaining.isNegative() ? Duration.ZERO : (remaining.compareTo(timeout) < 0 ? remaining : timeout);
+    }
+
+    private Object giveUpCritique(AgentRunContext context, Object payload, String reason) {
+        log.warn("{}; continuing with the latest candidate", reason);
+        context.publishEvent(RunEventType.CRITIC_UNRESOLVED, reason);
+        return payload;
     }
 
-    private void updateAgentMemory(String userInput, String agentOutput) {
+    private static boolean isRejected(CriticResult verdict) {
+        return verdict != null && "rejected".equals(verdict.getStatus());
+    }
+
+    // The fixer works on cells, so a new notebook is fixed through its cell list
+    private static Object cellsOf(Object payload) {
+        if (payload instanceof Map<?, ?> wrapped && wrapped.get("notebook_content") instanceof Map<?, ?> notebook
+                && notebook.get("cells") != null) {
+            return notebook.get("cells");
+        }
+        return payload;
+    }
+
+    private static String sourceOf(Map<String, Object> cell) {
+        Object source = cell.get("source");
+        if (source instanceof List<?> lines) {
+            StringBuilder code = new StringBuilder();
+            lines.forEach(code::append);
+            return code.toString();
+        }
+        return Objects.toString(source, "");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object mergeFix(Object payload, List<Map<String, Object>> fixedCells) {
+        if (payload instanceof Map<?, ?> wrapped && wrapped.get("notebook_content") instanceof Map<?, ?> notebook) {
+            Map<String, Object> fixedNotebook = new HashMap<>((Map<String, Object>) notebook);
+            fixedNotebook.put("cells", fixedCells);
+            return Util.getWrappedJsonObject("notebook_content", fixedNotebook);
+        }
+        return fixedCells;
+    }
+
+    private record CriticRound(Object payload, CriticResult verdict) {
+        boolean isRejected() {
+            return AgentServiceImpl.isRejected(verdict);
+        }
+    }
+
+    private void updateAgentMemory(AgentRunContext context, String userInput, String agentOutput) {
         log.info("UpdateAgentMemory: Updating Agent Memory");
         AgentMemory agentMemory = AgentMemory.builder()
+                .step(context.getCurrentStep())
                 .userInput(userInput)
                 .agentOutput(agentOutput)
                 .build();
 
-        this.agentMemories.add(agentMemory);
+        context.getAgentMemories().add(agentMemory);
+    }
+
+    private void recordPromptStats(AgentRunContext context, String prompt, CompactedMemory memory) {
+        PromptStats stats = PromptStats.builder()
+                .step(context.getCurrentStep())
+                .promptTokens(MemoryCompactor.estimateTokens(prompt))
+                .memoryTokens(memory.estimatedTokens())
+                .verbatimTurns(memory.verbatimTurns())
+                .compactedTurns(memory.compactedTurns())
+                .summarizedTurns(memory.summarizedTurns())
+                .droppedTurns(memory.droppedTurns())
+                .build();
+        context.getPromptStats().add(stats);
+
+        log.info("Prompt for {}: ~{} tokens (memory ~{} tokens; {} verbatim, {} code-only, {} summarized, {} dropped turns)",
+                stats.getStep(), stats.getPromptTokens(), stats.getMemoryTokens(), stats.getVerbatimTurns(),
+                stats.getCompactedTurns(), stats.getSummarizedTurns(), stats.getDroppedTurns());
     }
 
-    private ResponseStatus handleResponseStatus(ResponseStatus status) {
+    private ResponseStatus handleResponseStatus(AgentRunContext context, ResponseStatus status) {
         if ("success".equals(status.getStatus())) {
             log.info("Status Response is successful");
             return status;
@@ -277,7 +1016,7 @@ public class AgentServiceImpl implements AgentService {
         log.warn("ML service returned an error: {} {}", message, details);
 
         // Call the error handler agent to fix the issues and try again
-        return errorHandlerAgent(status);
+        return metrics.timeAgent(context, LlmRole.ERROR_HANDLER, () -> errorHandlerAgent(context, status));
     }
 
     private ResponseStatus getResponseStatusError(Exception e) {
@@ -287,18 +1026,4 @@ public class AgentServiceImpl implements AgentService {
                 .details(e.getMessage())
                 .build();
     }
-
-    private void resetAgentServiceState(String notebookName) {
-        // instantiate new memories for each ML orchestrator
-        this.agentMemories = new ArrayList<>();
-
-        // reset errorCounter
-        this.errorCounter = 0;
-
-        // reset isCreated flag
-        this.isCreated = false;
-
-        // update the notebookName
-        this.notebookName = notebookName;
-    }
 }
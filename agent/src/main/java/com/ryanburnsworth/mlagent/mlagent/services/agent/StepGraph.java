@@ -0,0 +1,77 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The steps of one run and the steps each of them waits for. A step can only depend on steps added
+ * before it, so the graph never has cycles. Steps whose dependencies have all settled can run at the
+ * same time.
+ */
+final class StepGraph {
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * Adds a step whose failure fails the run.
+     */
+    StepGraph add(String id, AgentStep step, Supplier<AgentRunContext> context,
+                  Function<AgentRunContext, ResponseStatus> action, String... dependsOn) {
+        return add(new Node(id, step, context, action, false, List.of(dependsOn)));
+    }
+
+    /**
+     * Adds a branch: a step that works on its own forked context. A failed branch is settled like a
+     * completed one, and the step that merges the branches decides what to do without it.
+     */
+    StepGraph addBranch(String id, AgentStep step, Supplier<AgentRunContext> context,
+                        Function<AgentRunContext, ResponseStatus> action, String... dependsOn) {
+        return add(new Node(id, step, context, action, true, List.of(dependsOn)));
+    }
+
+    private StepGraph add(Node node) {
+        if (nodes.containsKey(node.id())) {
+            throw new IllegalArgumentException("Duplicate step " + node.id());
+        }
+        node.dependsOn().stream()
+                .filter(dependency -> !nodes.containsKey(dependency))
+                .findFirst()
+                .ifPresent(dependency -> {
+                    throw new IllegalArgumentException("Step " + node.id() + " depends on unknown step " + dependency);
+                });
+        nodes.put(node.id(), node);
+        return this;
+    }
+
+    Collection<Node> nodes() {
+        return nodes.values();
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    // steps not started yet whose dependencies have all settled, in the order they were added
+    List<Node> ready(Set<String> settled, Set<String> started) {
+        return nodes.values().stream()
+                .filter(node -> !settled.contains(node.id()) && !started.contains(node.id()))
+                .filter(node -> settled.containsAll(node.dependsOn()))
+                .toList();
+    }
+
+    /**
+     * One step. The context is only resolved when the step starts, so a branch forks the run's context
+     * after the steps before it have completed.
+     */
+    record Node(String id, AgentStep step, Supplier<AgentRunContext> context,
+                Function<AgentRunContext, ResponseStatus> action, boolean branch, List<String> dependsOn) {
+    }
+}
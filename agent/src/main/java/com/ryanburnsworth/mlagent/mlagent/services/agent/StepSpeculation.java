@@ -0,0 +1,71 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The speculative LLM request of one run. While the ML service validates a step, the prompt of the
+ * step after it is rendered from the memory the run will have if the step passes, and sent ahead.
+ * The next step only uses the answer if its own prompt renders to exactly the same text; an error
+ * handler turn changes the memory, and with it the prompt, so a repaired step never uses it.
+ */
+final class StepSpeculation {
+    private final Map<AgentStep, Successor> successors = new EnumMap<>(AgentStep.class);
+    private String pendingPrompt;
+    private CompletableFuture<String> pending;
+
+    /**
+     * Lets the given step speculate on the updater step that follows it.
+     */
+    StepSpeculation follow(AgentStep step, AgentStep next, PromptTemplate template) {
+        successors.put(step, new Successor(next, template));
+        return this;
+    }
+
+    Successor successorOf(AgentStep step) {
+        return successors.get(step);
+    }
+
+    synchronized void start(String prompt, CompletableFuture<String> content) {
+        discard();
+        pendingPrompt = prompt;
+        pending = content;
+    }
+
+    /**
+     * Hands out the speculative request if it was made for this exact prompt, otherwise cancels it.
+     * Null means the step has to ask the LLM itself.
+     */
+    synchronized CompletableFuture<String> take(String prompt) {
+        CompletableFuture<String> content = pending;
+        if (content == null) {
+            return null;
+        }
+        if (!prompt.equals(pendingPrompt)) {
+            discard();
+            return null;
+        }
+        pending = null;
+        pendingPrompt = null;
+        return content;
+    }
+
+    synchronized boolean isPending() {
+        return pending != null;
+    }
+
+    synchronized void discard() {
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        pending = null;
+        pendingPrompt = null;
+    }
+
+    record Successor(AgentStep step, PromptTemplate template) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * One model family trained on its own copy of the run's notebook. The branch is forked when it starts,
+ * after preprocessing, and is only read again once it has finished.
+ */
+final class TrainingBranch {
+    private final String family;
+    private final AgentRunContext runContext;
+    private AgentRunContext context;
+    private int forkedMemories;
+    private ResponseStatus status;
+    private Double score;
+
+    TrainingBranch(String family, AgentRunContext runContext) {
+        this.family = family;
+        this.runContext = runContext;
+    }
+
+    AgentRunContext fork() {
+        forkedMemories = runContext.getAgentMemories().size();
+        context = runContext.forkBranch(getNotebookName());
+        return context;
+    }
+
+    ResponseStatus finish(ResponseStatus status) {
+        this.status = status;
+        return status;
+    }
+
+    boolean isForked() {
+        return context != null;
+    }
+
+    boolean isSucceeded() {
+        return status != null && "success".equals(status.getStatus());
+    }
+
+    // what the branch's agents remembered after the fork, to be merged into the run's memory
+    List<AgentMemory> newMemories() {
+        List<AgentMemory> memories = context.getAgentMemories();
+        return List.copyOf(memories.subList(forkedMemories, memories.size()));
+    }
+
+    String getFamily() {
+        return family;
+    }
+
+    String getNotebookName() {
+        return runContext.getNotebookName() + "-" + family;
+    }
+
+    AgentRunContext getContext() {
+        return context;
+    }
+
+    ResponseStatus getStatus() {
+        return status;
+    }
+
+    Double getScore() {
+        return score;
+    }
+
+    void setScore(Double score) {
+        this.score = score;
+    }
+}
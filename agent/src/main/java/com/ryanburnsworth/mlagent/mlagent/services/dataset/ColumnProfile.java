@@ -0,0 +1,48 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Locale;
+
+/**
+ * What the profiler found out about one column. Distinct counts are HyperLogLog estimates and the
+ * quartiles come from a uniform sample of the column's numbers.
+ */
+public record ColumnProfile(String name, String dtype, double nullRatio, long distinct, Numeric numeric,
+                            String nonNumericExample) {
+    private static final MathContext SIGNIFICANT_DIGITS = new MathContext(4);
+
+    public record Numeric(double min, double max, double mean, double p25, double median, double p75) {
+    }
+
+    /**
+     * One line of the prompt's schema, e.g.
+     * {@code Age: float64, 19.9% missing, ~88 distinct, range 0.42 to 80, mean 29.7, quartiles 20.1/28/38}.
+     */
+    public String summary() {
+        StringBuilder line = new StringBuilder(name).append(": ").append(dtype);
+        if (nullRatio > 0) {
+            line.append(", ").append(String.format(Locale.ROOT, "%.1f", nullRatio * 100)).append("% missing");
+        }
+        line.append(", ~").append(distinct).append(" distinct");
+        if (numeric != null) {
+            line.append(", range ").append(format(numeric.min())).append(" to ").append(format(numeric.max()))
+                    .append(", mean ").append(format(numeric.mean()))
+                    .append(", quartiles ").append(format(numeric.p25())).append('/').append(format(numeric.median()))
+                    .append('/').append(format(numeric.p75()));
+        }
+        if (nonNumericExample != null) {
+            line.append(", non-numeric values like '").append(nonNumericExample).append('\'');
+        }
+        return line.toString();
+    }
+
+    static String format(double value) {
+        if (!Double.isFinite(value)) {
+            return Double.toString(value);
+        }
+        BigDecimal rounded = BigDecimal.valueOf(value).round(SIGNIFICANT_DIGITS).stripTrailingZeros();
+        double magnitude = Math.abs(value);
+        return magnitude == 0 || (magnitude >= 1e-4 && magnitude < 1e15) ? rounded.toPlainString() : rounded.toString();
+    }
+}
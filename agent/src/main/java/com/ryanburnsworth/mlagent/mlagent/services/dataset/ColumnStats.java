@@ -0,0 +1,270 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Single-pass statistics of one column in one segment of a file. Values arrive as raw bytes so the
+ * common case allocates nothing; segments of the same file are merged once they are all scanned.
+ */
+final class ColumnStats {
+    private static final int HLL_PRECISION = 12;
+    private static final int EXAMPLE_LENGTH = 20;
+    // the strings pandas.read_csv reads as NaN by default
+    private static final byte[][] NA_VALUES = bytes("#N/A", "#N/A N/A", "#NA", "-1.#IND", "-1.#QNAN", "-NaN", "-nan",
+            "1.#IND", "1.#QNAN", "<NA>", "N/A", "NA", "NULL", "NaN", "None", "n/a", "nan", "null");
+    private static final byte[][] BOOLEANS = bytes("True", "False", "true", "false", "TRUE", "FALSE");
+
+    private final HyperLogLog distinct = new HyperLogLog(HLL_PRECISION);
+    private final double[] sample;
+    private final SplittableRandom random;
+    private long values;
+    private long nulls;
+    private long integers;
+    private long numbers;
+    private long booleans;
+    private long dates;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private int sampled;
+    // first value that is not a number, shown for columns that are almost numeric
+    private String nonNumericExample;
+
+    ColumnStats(int sampleSize, long seed) {
+        this.sample = new double[sampleSize];
+        this.random = new SplittableRandom(seed);
+    }
+
+    void addNull() {
+        values++;
+        nulls++;
+    }
+
+    void add(byte[] buffer, int length) {
+        if (length == 0 || matchesAny(buffer, length, NA_VALUES)) {
+            addNull();
+            return;
+        }
+        values++;
+        distinct.add(hash(buffer, length));
+
+        if (isInteger(buffer, length)) {
+            integers++;
+            addNumber(parseLong(buffer, length));
+        } else if (!isDate(buffer, length) && looksNumeric(buffer, length)) {
+            try {
+                addNumber(Double.parseDouble(new String(buffer, 0, length, StandardCharsets.US_ASCII)));
+            } catch (NumberFormatException e) {
+                nonNumeric(buffer, length);
+            }
+        } else {
+            nonNumeric(buffer, length);
+        }
+    }
+
+    void merge(ColumnStats other) {
+        distinct.merge(other.distinct);
+        mergeSample(other);
+        values += other.values;
+        nulls += other.nulls;
+        integers += other.integers;
+        numbers += other.numbers;
+        booleans += other.booleans;
+        dates += other.dates;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        if (nonNumericExample == null) {
+            nonNumericExample = other.nonNumericExample;
+        }
+    }
+
+    ColumnProfile toProfile(String name) {
+        long present = values - nulls;
+        double nullRatio = values == 0 ? 0 : (double) nulls / values;
+        ColumnProfile.Numeric numeric = null;
+        if (numbers > 0) {
+            double[] sorted = Arrays.copyOf(sample, Math.min(sampled, sample.length));
+            Arrays.sort(sorted);
+            numeric = new ColumnProfile.Numeric(min, max, sum / numbers,
+                    quantile(sorted, 0.25), quantile(sorted, 0.5), quantile(sorted, 0.75));
+        }
+        return new ColumnProfile(name, dtype(present), nullRatio, Math.min(distinct.estimate(), present), numeric,
+                numbers > 0 && numbers < present ? nonNumericExample : null);
+    }
+
+    // the dtype pandas.read_csv gives the column with its default options
+    private String dtype(long present) {
+        if (present == 0) {
+            return "float64";
+        }
+        if (integers == present) {
+            return nulls > 0 ? "float64" : "int64";
+        }
+        if (numbers == present) {
+            return "float64";
+        }
+        if (booleans == present) {
+            return nulls > 0 ? "object" : "bool";
+        }
+        if (dates == present) {
+            return "object (dates)";
+        }
+        if (numbers >= present * 0.9) {
+            return "object (mostly numeric)";
+        }
+        return "object";
+    }
+
+    private void addNumber(double value) {
+        numbers++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        // reservoir sampling keeps a uniform sample of the numbers seen so far
+        if (sampled < sample.length) {
+            sample[sampled] = value;
+        } else {
+            long slot = random.nextLong(sampled + 1L);
+            if (slot < sample.length) {
+                sample[(int) slot] = value;
+            }
+        }
+        sampled++;
+    }
+
+    private void nonNumeric(byte[] buffer, int length) {
+        if (matchesAny(buffer, length, BOOLEANS)) {
+            booleans++;
+        } else if (isDate(buffer, length)) {
+            dates++;
+        }
+        if (nonNumericExample == null) {
+            nonNumericExample = new String(buffer, 0, Math.min(length, EXAMPLE_LENGTH), StandardCharsets.UTF_8);
+        }
+    }
+
+    // draws from both reservoirs in proportion to the numbers each of them stands for
+    private void mergeSample(ColumnStats other) {
+        int ours = Math.min(sampled, sample.length);
+        int theirs = Math.min(other.sampled, other.sample.length);
+        if (theirs == 0) {
+            return;
+        }
+        if (ours + theirs <= sample.length) {
+            System.arraycopy(other.sample, 0, sample, ours, theirs);
+            sampled += other.sampled;
+            return;
+        }
+        double[] left = Arrays.copyOf(sample, ours);
+        double[] right = Arrays.copyOf(other.sample, theirs);
+        long leftWeight = sampled;
+        long rightWeight = other.sampled;
+        int leftSize = ours;
+        int rightSize = theirs;
+        for (int i = 0; i < sample.length; i++) {
+            boolean fromLeft = rightSize == 0
+                    || (leftSize > 0 && random.nextLong(leftWeight + rightWeight) < leftWeight);
+            if (fromLeft) {
+                int pick = random.nextInt(leftSize);
+                sample[i] = left[pick];
+                left[pick] = left[--leftSize];
+            } else {
+                int pick = random.nextInt(rightSize);
+                sample[i] = right[pick];
+                right[pick] = right[--rightSize];
+            }
+        }
+        sampled += other.sampled;
+    }
+
+    private static double quantile(double[] sorted, double q) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double position = q * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+    }
+
+    private static boolean isInteger(byte[] buffer, int length) {
+        int start = buffer[0] == '-' || buffer[0] == '+' ? 1 : 0;
+        // longer values would overflow a long, leave them to Double.parseDouble
+        if (length == start || length - start > 18) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] buffer, int length) {
+        int start = buffer[0] == '-' || buffer[0] == '+' ? 1 : 0;
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return buffer[0] == '-' ? -value : value;
+    }
+
+    // cheap pre-check so text columns never pay for a NumberFormatException
+    private static boolean looksNumeric(byte[] buffer, int length) {
+        boolean digit = false;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                digit = true;
+            } else if (b != '.' && b != '-' && b != '+' && b != 'e' && b != 'E' && b != ' ') {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    // ISO dates, optionally followed by a time: 2024-01-31, 2024-01-31 12:00:00, 2024-01-31T12:00
+    private static boolean isDate(byte[] buffer, int length) {
+        if (length < 10 || buffer[4] != '-' || buffer[7] != '-') {
+            return false;
+        }
+        for (int i : new int[]{0, 1, 2, 3, 5, 6, 8, 9}) {
+            if (buffer[i] < '0' || buffer[i] > '9') {
+                return false;
+            }
+        }
+        return length == 10 || buffer[10] == ' ' || buffer[10] == 'T';
+    }
+
+    private static boolean matchesAny(byte[] buffer, int length, byte[][] candidates) {
+        for (byte[] candidate : candidates) {
+            if (candidate.length == length && Arrays.equals(buffer, 0, length, candidate, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // FNV-1a spread by the murmur3 finalizer, so the sketch sees well mixed high bits
+    private static long hash(byte[] buffer, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash ^= buffer[i];
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static byte[][] bytes(String... values) {
+        return Arrays.stream(values).map(value -> value.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+    }
+}
@@ -0,0 +1,272 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles the CSV files of a dataset in one pass without reading them onto the heap. Each file is
+ * memory-mapped and, past {@code splitBytes}, cut at line breaks into segments that are scanned in
+ * parallel with the segments of the other files, then merged. A quoted field with a line break that
+ * happens to straddle a cut is miscounted as one extra record; the profile is a hint for the LLM, not
+ * an exact count. Profiles are cached by file, size and modification time.
+ */
+public class CsvDatasetProfiler implements DatasetProfiler {
+    private static final Logger log = LoggerFactory.getLogger(CsvDatasetProfiler.class);
+    private static final int MAX_HEADER_BYTES = 1 << 20;
+    private static final int READ_BYTES = 1 << 16;
+    private static final int MAX_CACHED_FILES = 32;
+    private static final byte[] DELIMITERS = {',', ';', '\t', '|'};
+
+    private final Path datasetsRoot;
+    private final AsyncTaskExecutor executor;
+    private final int parallelism;
+    private final int maxColumns;
+    private final int sampleSize;
+    private final long splitBytes;
+    private final Map<String, FileProfile> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FileProfile> eldest) {
+                    return size() > MAX_CACHED_FILES;
+                }
+            });
+
+    public CsvDatasetProfiler(Path datasetsRoot, AsyncTaskExecutor executor, int parallelism, int maxColumns,
+                              int sampleSize, long splitBytes) {
+        this.datasetsRoot = datasetsRoot;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxColumns = maxColumns;
+        this.sampleSize = sampleSize;
+        this.splitBytes = Math.max(1, splitBytes);
+    }
+
+    @Override
+    public String describe(DatasetMetadata metadata) {
+        List<Path> files = metadata.getDatasetFiles().stream()
+                .map(this::resolve)
+                .filter(Objects::nonNull)
+                .toList();
+        if (files.isEmpty()) {
+            return "";
+        }
+        long start = System.nanoTime();
+        List<FileProfile> profiles = profile(files);
+        log.info("Profiled {} of {} dataset files in {} ms", profiles.size(), files.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return profiles.stream().map(FileProfile::summary).collect(Collectors.joining("\n\n"));
+    }
+
+    /**
+     * Profiles the files concurrently. Files that cannot be read are left out.
+     */
+    public List<FileProfile> profile(List<Path> files) {
+        List<PendingFile> pending = files.stream().map(this::start).filter(Objects::nonNull).toList();
+        return pending.stream().map(PendingFile::join).filter(Objects::nonNull).toList();
+    }
+
+    // Kaggle service paths look like ".\datasets\<owner>\<name>\train.csv", relative to where it runs
+    private Path resolve(String dataset) {
+        String normalized = dataset.strip().replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        if (!normalized.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return null;
+        }
+        for (Path candidate : List.of(datasetsRoot.resolve(normalized), Path.of(normalized))) {
+            if (Files.isRegularFile(candidate) && Files.isReadable(candidate)) {
+                return candidate;
+            }
+        }
+        log.info("Dataset file {} not found under {}, skipping its profile", dataset, datasetsRoot);
+        return null;
+    }
+
+    private PendingFile start(Path file) {
+        try {
+            String cacheKey = file.toAbsolutePath().normalize() + "|" + Files.size(file) + "|"
+                    + Files.getLastModifiedTime(file).toMillis();
+            FileProfile cached = cache.get(cacheKey);
+            if (cached != null) {
+                return new PendingFile(file, cacheKey, null, List.of(), cached);
+            }
+
+            Header header;
+            List<long[]> segments;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                header = readHeader(channel);
+                segments = segments(channel, header.dataStart());
+            }
+            int profiled = Math.min(header.columns().size(), maxColumns);
+            List<CompletableFuture<CsvSegmentScanner>> scans = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                long[] segment = segments.get(i);
+                long seed = i;
+                scans.add(executor.submitCompletable(() -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        return new CsvSegmentScanner(profiled, header.delimiter(), sampleSize, seed)
+                                .scan(channel, segment[0], segment[1]);
+                    }
+                }));
+            }
+            return new PendingFile(file, cacheKey, header, scans, null);
+        } catch (IOException e) {
+            log.warn("Unable to profile dataset file {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // one segment per splitBytes of data, at most one per thread, each starting right after a line break
+    private List<long[]> segments(FileChannel channel, long dataStart) throws IOException {
+        long size = channel.size();
+        long dataBytes = size - dataStart;
+        int count = (int) Math.max(1, Math.min(parallelism, (dataBytes + splitBytes - 1) / splitBytes));
+        List<long[]> segments = new ArrayList<>();
+        long start = dataStart;
+        for (int i = 1; i <= count && start < size; i++) {
+            long end = i == count ? size : nextLineStart(channel, Math.max(start, dataStart + dataBytes * i / count));
+            if (end > start) {
+                segments.add(new long[]{start, end});
+            }
+            start = end;
+        }
+        return segments;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BYTES);
+        long offset = position;
+        while (channel.read(buffer, offset) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    return offset + buffer.position();
+                }
+            }
+            offset += buffer.limit();
+            buffer.clear();
+        }
+        return channel.size();
+    }
+
+    // the first record, split on whichever candidate delimiter it contains most often outside quotes
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_BYTES));
+        channel.read(buffer, 0);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        int start = bytes.length >= 3 && (bytes[0] & 0xff) == 0xEF && (bytes[1] & 0xff) == 0xBB
+                && (bytes[2] & 0xff) == 0xBF ? 3 : 0;
+        int end = start;
+        boolean quoted = false;
+        int[] delimiterCounts = new int[DELIMITERS.length];
+        while (end < bytes.length && (quoted || bytes[end] != '\n')) {
+            if (bytes[end] == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                for (int i = 0; i < DELIMITERS.length; i++) {
+                    delimiterCounts[i] += bytes[end] == DELIMITERS[i] ? 1 : 0;
+                }
+            }
+            end++;
+        }
+        int best = 0;
+        for (int i = 1; i < DELIMITERS.length; i++) {
+            if (delimiterCounts[i] > delimiterCounts[best]) {
+                best = i;
+            }
+        }
+        byte delimiter = DELIMITERS[best];
+
+        List<String> columns = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        String line = new String(bytes, start, end - start, StandardCharsets.UTF_8).replace("\r", "");
+        quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    name.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == delimiter && !quoted) {
+                columns.add(name.toString().strip());
+                name.setLength(0);
+            } else {
+                name.append(c);
+            }
+        }
+        columns.add(name.toString().strip());
+        long dataStart = Math.min((long) end + 1, channel.size());
+        return new Header(columns, delimiter, dataStart);
+    }
+
+    record Header(List<String> columns, byte delimiter, long dataStart) {
+    }
+
+    private final class PendingFile {
+        private final Path file;
+        private final String cacheKey;
+        private final Header header;
+        private final List<CompletableFuture<CsvSegmentScanner>> scans;
+        private final FileProfile cached;
+
+        PendingFile(Path file, String cacheKey, Header header, List<CompletableFuture<CsvSegmentScanner>> scans,
+                    FileProfile cached) {
+            this.file = file;
+            this.cacheKey = cacheKey;
+            this.header = header;
+            this.scans = scans;
+            this.cached = cached;
+        }
+
+        FileProfile join() {
+            if (cached != null) {
+                return cached;
+            }
+            try {
+                CsvSegmentScanner merged = null;
+                for (CompletableFuture<CsvSegmentScanner> scan : scans) {
+                    merged = merged == null ? scan.join() : merged.merge(scan.join());
+                }
+                List<ColumnProfile> columns = new ArrayList<>();
+                int profiled = Math.min(header.columns().size(), maxColumns);
+                for (int i = 0; i < profiled && merged != null; i++) {
+                    columns.add(merged.column(i).toProfile(header.columns().get(i)));
+                }
+                FileProfile profile = new FileProfile(file.getFileName().toString(),
+                        merged == null ? 0 : merged.rows(), header.columns().size(), columns);
+                cache.put(cacheKey, profile);
+                return profile;
+            } catch (CompletionException e) {
+                log.warn("Unable to profile dataset file {}: {}", file, e.getCause().getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Scans a byte range of a CSV file that starts at a record boundary. The range is memory-mapped one
+ * window at a time and every byte is fed through a small quote-aware state machine. Field bytes go into
+ * one reusable buffer, so memory stays bounded by the column statistics, whatever the file size.
+ */
+final class CsvSegmentScanner {
+    private static final long WINDOW_BYTES = 256L << 20;
+    private static final int MAX_FIELD_BYTES = 1 << 16;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private final ColumnStats[] columns;
+    private final byte delimiter;
+    private byte[] field = new byte[256];
+    private int length;
+    private int column;
+    private int state = FIELD_START;
+    private long rows;
+
+    CsvSegmentScanner(int profiledColumns, byte delimiter, int sampleSize, long seed) {
+        this.columns = new ColumnStats[profiledColumns];
+        for (int i = 0; i < profiledColumns; i++) {
+            columns[i] = new ColumnStats(sampleSize, seed * 31 + i);
+        }
+        this.delimiter = delimiter;
+    }
+
+    CsvSegmentScanner scan(FileChannel channel, long start, long end) throws IOException {
+        for (long position = start; position < end; position += WINDOW_BYTES) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_BYTES, end - position));
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                accept(window.get(i));
+            }
+        }
+        // the last record of a file may not end with a line break
+        if (column > 0 || length > 0 || state != FIELD_START) {
+            endRecord();
+        }
+        return this;
+    }
+
+    CsvSegmentScanner merge(CsvSegmentScanner other) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].merge(other.columns[i]);
+        }
+        rows += other.rows;
+        return this;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    ColumnStats column(int index) {
+        return columns[index];
+    }
+
+    private void accept(byte b) {
+        switch (state) {
+            case QUOTED -> {
+                if (b == '"') {
+                    state = QUOTE_IN_QUOTED;
+                } else {
+                    append(b);
+                }
+            }
+            case QUOTE_IN_QUOTED -> {
+                if (b == '"') {
+                    // "" inside a quoted field is an escaped quote
+                    append(b);
+                    state = QUOTED;
+                } else {
+                    state = UNQUOTED;
+                    accept(b);
+                }
+            }
+            default -> {
+                if (b == '"' && state == FIELD_START) {
+                    state = QUOTED;
+                } else if (b == delimiter) {
+                    endField();
+                } else if (b == '\n') {
+                    endRecord();
+                } else if (b != '\r') {
+                    append(b);
+                    state = UNQUOTED;
+                }
+            }
+        }
+    }
+
+    private void append(byte b) {
+        if (length == field.length) {
+            if (length == MAX_FIELD_BYTES) {
+                // long free text only needs its prefix for the sketches
+                return;
+            }
+            field = Arrays.copyOf(field, Math.min(length * 2, MAX_FIELD_BYTES));
+        }
+        field[length++] = b;
+    }
+
+    private void endField() {
+        if (column < columns.length) {
+            columns[column].add(field, length);
+        }
+        column++;
+        length = 0;
+        state = FIELD_START;
+    }
+
+    private void endRecord() {
+        if (column == 0 && length == 0 && state == FIELD_START) {
+            // blank lines are skipped, as pandas does
+            return;
+        }
+        endField();
+        // short records read as missing values in the columns they do not reach
+        for (int i = column; i < columns.length; i++) {
+            columns[i].addNull();
+        }
+        column = 0;
+        rows++;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+
+public interface DatasetProfiler {
+    /**
+     * A compact schema of the dataset's files for the prompts, or an empty string if none of them
+     * could be profiled.
+     */
+    String describe(DatasetMetadata metadata);
+
+    static DatasetProfiler disabled() {
+        return metadata -> "";
+    }
+}
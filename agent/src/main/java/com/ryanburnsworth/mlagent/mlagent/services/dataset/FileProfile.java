@@ -0,0 +1,21 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import java.util.List;
+
+/**
+ * The profile of one CSV file. Columns past the profiler's limit are only counted.
+ */
+public record FileProfile(String file, long rows, int columnCount, List<ColumnProfile> columns) {
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder(file).append(": ").append(rows).append(" rows, ")
+                .append(columnCount).append(" columns");
+        for (ColumnProfile column : columns) {
+            summary.append("\n- ").append(column.summary());
+        }
+        if (columnCount > columns.size()) {
+            summary.append("\n- ... and ").append(columnCount - columns.size()).append(" more columns not profiled");
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ryanburnsworth.mlagent.mlagent.services.fix;
+
+import com.ryanburnsworth.mlagent.mlagent.models.ErrorFix;
+
+import java.util.Optional;
+
+public interface ErrorFixStore {
+    Optional<ErrorFix> find(String key);
+
+    void save(ErrorFix fix);
+
+    void delete(String key);
+
+    static ErrorFixStore disabled() {
+        return new ErrorFixStore() {
+            @Override
+            public Optional<ErrorFix> find(String key) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void save(ErrorFix fix) {
+            }
+
+            @Override
+            public void delete(String key) {
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.ryanburnsworth.mlagent.mlagent.services.fix;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What identifies a notebook failure across runs: the exception type, its message with the parts that
+ * change from run to run (numbers, memory addresses, execution counts) normalized away, and the
+ * innermost stack frame without its line number. Papermill tracebacks and the persistent kernel's
+ * formatted errors both end with the {@code Type: message} line this is parsed from.
+ */
+public record ErrorSignature(String exceptionType, String message, String frame) {
+    private static final int MAX_MESSAGE_LENGTH = 200;
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[0-9;]*[A-Za-z]");
+    private static final Pattern EXCEPTION_LINE = Pattern.compile(
+            "^([A-Za-z_][\\w.]*(?:Error|Exception|Exit|Interrupt|Warning))(?::\\s*(.*))?$");
+    // IPython prints "File /path/module.py:42, in func(args)", plain Python "File "module.py", line 42, in func"
+    private static final Pattern FILE_FRAME = Pattern.compile(
+            "^\\s*File \"?([^\",]+?)\"?(?::\\d+)?, (?:line \\d+, )?in ([\\w.<>]+)");
+    private static final Pattern CELL_FRAME = Pattern.compile("^\\s*(?:Cell In\\s*\\[\\d*]|Input In \\[\\d*])");
+    private static final Pattern HEX = Pattern.compile("0x[0-9a-fA-F]+");
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:\\.\\d+)?");
+
+    public static ErrorSignature of(String message, String details) {
+        String text = ANSI_ESCAPE.matcher((details == null ? "" : details) + "\n" + (message == null ? "" : message))
+                .replaceAll("");
+        String exceptionType = "Unknown";
+        String exceptionMessage = null;
+        String frame = "";
+        for (String line : text.split("\\R")) {
+            Matcher exception = EXCEPTION_LINE.matcher(line.strip());
+            if (exception.matches() && exception.group(2) != null) {
+                exceptionType = exception.group(1);
+                exceptionMessage = exception.group(2);
+                continue;
+            }
+            Matcher file = FILE_FRAME.matcher(line);
+            if (file.find()) {
+                frame = modulePath(file.group(1)) + " in " + file.group(2);
+            } else if (CELL_FRAME.matcher(line).find()) {
+                frame = "<cell>";
+            }
+        }
+        if (exceptionMessage == null) {
+            // no exception line, e.g. the ML service failed before running anything
+            exceptionMessage = text.lines().map(String::strip).filter(line -> !line.isEmpty()).findFirst().orElse("");
+        }
+        return new ErrorSignature(exceptionType, normalize(exceptionMessage), frame);
+    }
+
+    /**
+     * The index key of a fix for this error in the given step. Fixes are step specific, a preprocessing
+     * fix is no use to a failing training step.
+     */
+    public String key(AgentStep step) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[]{step.name(), exceptionType, message, frame}) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return exceptionType + ": " + message + (frame.isEmpty() ? "" : " at " + frame);
+    }
+
+    private static String normalize(String message) {
+        String normalized = NUMBER.matcher(HEX.matcher(message).replaceAll("<addr>")).replaceAll("<n>")
+                .replaceAll("\\s+", " ")
+                .strip();
+        return normalized.length() > MAX_MESSAGE_LENGTH ? normalized.substring(0, MAX_MESSAGE_LENGTH) : normalized;
+    }
+
+    // library frames are identified by their path below site-packages, which differs between installs
+    private static String modulePath(String path) {
+        String normalized = path.replace('\\', '/');
+        int packages = normalized.lastIndexOf("-packages/");
+        if (packages >= 0) {
+            return normalized.substring(packages + "-packages/".length());
+        }
+        return normalized.substring(normalized.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ryanburnsworth.mlagent.mlagent.services.fix;
+
+import com.ryanburnsworth.mlagent.mlagent.models.ErrorFix;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every fix as {@code <key>.json} and indexes all of them in memory when it starts, so a lookup
+ * on the error handler's path never touches the disk. Files are replaced atomically like checkpoints.
+ */
+public class FileErrorFixStore implements ErrorFixStore {
+    private static final Logger log = LoggerFactory.getLogger(FileErrorFixStore.class);
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+    private final Path directory;
+    private final Map<String, ErrorFix> index = new ConcurrentHashMap<>();
+
+    public FileErrorFixStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".json")).forEach(this::load);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Loaded {} known error fixes from {}", index.size(), directory);
+    }
+
+    @Override
+    public Optional<ErrorFix> find(String key) {
+        return Optional.ofNullable(index.get(key));
+    }
+
+    @Override
+    public void save(ErrorFix fix) {
+        if (!isValid(fix.getKey())) {
+            return;
+        }
+        index.put(fix.getKey(), fix);
+        try {
+            Path tmp = Files.createTempFile(directory, fix.getKey(), ".tmp");
+            Files.writeString(tmp, Util.toJson(fix), StandardCharsets.UTF_8);
+            Files.move(tmp, file(fix.getKey()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write error fix {}: {}", fix.getKey(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        if (!isValid(key)) {
+            return;
+        }
+        index.remove(key);
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            log.warn("Unable to delete error fix {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void load(Path file) {
+        try {
+            ErrorFix fix = Util.fromJson(Files.readString(file, StandardCharsets.UTF_8), ErrorFix.class);
+            if (isValid(fix.getKey())) {
+                index.put(fix.getKey(), fix);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skipping unreadable error fix {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".json");
+    }
+
+    private static boolean isValid(String key) {
+        return key != null && KEY.matcher(key).matches();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one file per cached completion so responses survive restarts. Entries older than the TTL,
+ * judged by the file's modification time, are treated as misses and deleted. Once a write takes the
+ * directory past {@code maxEntries}, expired files are deleted and then the oldest written ones until
+ * it is back at the limit.
+ */
+public class DiskLlmResponseCache implements LlmResponseCache {
+    private static final Logger log = LoggerFactory.getLogger(DiskLlmResponseCache.class);
+    private static final String TMP_SUFFIX = ".tmp";
+    private final Path directory;
+    private final Duration ttl;
+    private final int maxEntries;
+
+    // files written since the last prune plus those it kept; rewrites of a key overcount, which only prunes early
+    private final AtomicInteger entryCount = new AtomicInteger();
+
+    public DiskLlmResponseCache(Path directory, Duration ttl, int maxEntries) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.maxEntries = Math.max(maxEntries, 1);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        prune();
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        Path file = directory.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            Instant modified = Files.getLastModifiedTime(file).toInstant();
+            if (modified.plus(ttl).isBefore(Instant.now())) {
+                Files.deleteIfExists(file);
+                return Optional.empty();
+            }
+            return Optional.of(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Unable to read cached LLM response {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(String key, String response) {
+        try {
+            // write to a temp file first so readers never see a partial response
+            Path tmp = Files.createTempFile(directory, key, TMP_SUFFIX);
+            Files.writeString(tmp, response, StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write cached LLM response {}: {}", key, e.getMessage());
+            return;
+        }
+        if (entryCount.incrementAndGet() > maxEntries) {
+            pruneIfFull();
+        }
+    }
+
+    // another writer may have pruned while this one waited
+    private synchronized void pruneIfFull() {
+        if (entryCount.get() > maxEntries) {
+            prune();
+        }
+    }
+
+    private void prune() {
+        Instant cutoff = Instant.now().minus(ttl);
+        List<CachedFile> kept = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, file -> !file.toString().endsWith(TMP_SUFFIX))) {
+            for (Path file : files) {
+                Instant modified = Files.getLastModifiedTime(file).toInstant();
+                if (modified.isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                } else {
+                    kept.add(new CachedFile(file, modified));
+                }
+            }
+            kept.sort(Comparator.comparing(CachedFile::modified).thenComparing(CachedFile::path));
+            int excess = kept.size() - maxEntries;
+            for (int i = 0; i < excess; i++) {
+                Files.deleteIfExists(kept.get(i).path());
+            }
+            entryCount.set(Math.min(kept.size(), maxEntries));
+        } catch (IOException e) {
+            log.warn("Unable to prune cached LLM responses: {}", e.getMessage());
+        }
+    }
+
+    private record CachedFile(Path path, Instant modified) {
+    }
+}
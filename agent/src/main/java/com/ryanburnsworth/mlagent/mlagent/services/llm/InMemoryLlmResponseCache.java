@@ -0,0 +1,46 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Size-bounded LRU cache with a time-to-live per entry.
+ */
+public class InMemoryLlmResponseCache implements LlmResponseCache {
+    private final Duration ttl;
+    private final Map<String, Entry> entries;
+
+    public InMemoryLlmResponseCache(int maxEntries, Duration ttl) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt().isBefore(Instant.now())) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(entry.response());
+    }
+
+    @Override
+    public synchronized void put(String key, String response) {
+        entries.put(key, new Entry(response, Instant.now().plus(ttl)));
+    }
+
+    private record Entry(String response, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import java.util.Optional;
+
+/**
+ * Stores LLM completions by a content hash of the rendered prompt and the chat options that produced them.
+ */
+public interface LlmResponseCache {
+    Optional<String> get(String key);
+
+    void put(String key, String response);
+
+    static LlmResponseCache disabled() {
+        return new LlmResponseCache() {
+            @Override
+            public Optional<String> get(String key) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(String key, String response) {
+            }
+        };
+    }
+}
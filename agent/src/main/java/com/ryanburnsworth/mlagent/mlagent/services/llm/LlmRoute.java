@@ -0,0 +1,25 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+/**
+ * The model and options one LLM request of a role is sent with. Blank values leave the Spring AI
+ * defaults in place.
+ */
+public record LlmRoute(LlmRole role, String model, String temperature, boolean fallback) {
+
+    public ChatOptions options() {
+        return ChatOptions.builder()
+                .model(model.isBlank() ? null : model)
+                .temperature(temperature.isBlank() ? null : Double.valueOf(temperature))
+                .build();
+    }
+
+    /**
+     * The scheduler lane, and rate limits, the request is admitted through.
+     */
+    public String lane() {
+        return model.isBlank() ? "default" : model;
+    }
+}
@@ -0,0 +1,148 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the model each LLM request is sent to by the role making it. A role can set its own model and
+ * temperature under {@code agent.llm.roles.<role>}, e.g. {@code agent.llm.roles.ml-critic.model}, and
+ * a fallback model under {@code agent.llm.roles.<role>.fallback.model}; anything left out comes from the
+ * Spring AI defaults. The router keeps a window of the latest requests of every role on its primary
+ * model, timed from when they reach the provider so rate-limit waits do not count. Once their p95
+ * latency or error rate crosses its limit, the role is sent to its fallback for a cool-down, then tried
+ * on the primary again with a fresh window.
+ */
+@Component
+public class LlmRouter {
+    private static final Logger log = LoggerFactory.getLogger(LlmRouter.class);
+
+    private final AgentMetrics metrics;
+    private final Map<LlmRole, RoleRoutes> routes = new EnumMap<>(LlmRole.class);
+
+    private final double maxErrorRate;
+    private final int minSamples;
+    private final long cooldownMs;
+
+    public LlmRouter(AgentMetrics metrics, Environment environment,
+                     @Value("${spring.ai.openai.chat.options.model:}") String defaultModel,
+                     @Value("${spring.ai.openai.chat.options.temperature:}") String defaultTemperature,
+                     @Value("${agent.llm.routing.max-p95-ms:120000}") long maxP95Ms,
+                     @Value("${agent.llm.routing.max-error-rate:0.25}") double maxErrorRate,
+                     @Value("${agent.llm.routing.window:20}") int window,
+                     @Value("${agent.llm.routing.min-samples:5}") int minSamples,
+                     @Value("${agent.llm.routing.cooldown-ms:300000}") long cooldownMs) {
+        this.metrics = metrics;
+        this.maxErrorRate = maxErrorRate;
+        this.minSamples = minSamples;
+        this.cooldownMs = cooldownMs;
+
+        for (LlmRole role : LlmRole.values()) {
+            String prefix = "agent.llm.roles." + role.name().toLowerCase(Locale.ROOT).replace('_', '-') + ".";
+            String model = environment.getProperty(prefix + "model", defaultModel);
+            String temperature = environment.getProperty(prefix + "temperature", defaultTemperature);
+            String fallbackModel = environment.getProperty(prefix + "fallback.model", "");
+            LlmRoute primary = new LlmRoute(role, model, temperature, false);
+            LlmRoute fallback = fallbackModel.isBlank() ? null : new LlmRoute(role, fallbackModel,
+                    environment.getProperty(prefix + "fallback.temperature", temperature), true);
+            long roleMaxP95Ms = environment.getProperty(prefix + "max-p95-ms", Long.class, maxP95Ms);
+            routes.put(role, new RoleRoutes(primary, fallback, roleMaxP95Ms, new RouteHealth(window)));
+        }
+    }
+
+    public LlmRoute route(LlmRole role) {
+        RoleRoutes roleRoutes = routes.get(role);
+        if (roleRoutes.fallback() != null && roleRoutes.health().isTripped(System.currentTimeMillis())) {
+            return roleRoutes.fallback();
+        }
+        return roleRoutes.primary();
+    }
+
+    /**
+     * Feeds the outcome of a request back into its role's window. Only requests on the primary model
+     * are counted, and only roles with a fallback are ever moved off it.
+     */
+    public void record(LlmRoute route, long durationNanos, boolean success) {
+        RoleRoutes roleRoutes = routes.get(route.role());
+        if (route.fallback() || roleRoutes.fallback() == null) {
+            return;
+        }
+        String breach = roleRoutes.health().record(TimeUnit.NANOSECONDS.toMillis(durationNanos), !success,
+                minSamples, roleRoutes.maxP95Ms(), maxErrorRate, System.currentTimeMillis() + cooldownMs);
+        if (breach != null) {
+            log.warn("{} on {} has {}, routing it to {} for {} ms", route.role(), route.lane(), breach,
+                    roleRoutes.fallback().lane(), cooldownMs);
+            metrics.recordLlmFallback(route.role(), route.lane(), roleRoutes.fallback().lane());
+        }
+    }
+
+    private record RoleRoutes(LlmRoute primary, LlmRoute fallback, long maxP95Ms, RouteHealth health) {
+    }
+
+    /**
+     * Ring buffer of the latest request latencies and failures of one role on its primary model.
+     */
+    private static final class RouteHealth {
+        private final long[] latenciesMs;
+        private final boolean[] failures;
+        private int next;
+        private int size;
+        private long trippedUntil;
+
+        RouteHealth(int window) {
+            this.latenciesMs = new long[Math.max(1, window)];
+            this.failures = new boolean[latenciesMs.length];
+        }
+
+        synchronized boolean isTripped(long now) {
+            return now < trippedUntil;
+        }
+
+        /**
+         * Adds a request and trips the route if the window now breaches a limit. Returns what was
+         * breached, or null if the route stays on the primary model.
+         */
+        synchronized String record(long latencyMs, boolean failed, int minSamples, long maxP95Ms,
+                                   double maxErrorRate, long tripUntil) {
+            latenciesMs[next] = latencyMs;
+            failures[next] = failed;
+            next = (next + 1) % latenciesMs.length;
+            size = Math.min(size + 1, latenciesMs.length);
+            if (size < minSamples) {
+                return null;
+            }
+
+            long[] sorted = Arrays.copyOf(latenciesMs, size);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(size * 0.95) - 1];
+            int failureCount = 0;
+            for (int i = 0; i < size; i++) {
+                failureCount += failures[i] ? 1 : 0;
+            }
+            double errorRate = (double) failureCount / size;
+
+            String breach = null;
+            if (errorRate > maxErrorRate) {
+                breach = "an error rate of %.0f%%".formatted(errorRate * 100);
+            } else if (p95 > maxP95Ms) {
+                breach = "a p95 latency of %d ms".formatted(p95);
+            }
+            if (breach != null) {
+                trippedUntil = tripUntil;
+                next = 0;
+                size = 0;
+            }
+            return breach;
+        }
+    }
+}
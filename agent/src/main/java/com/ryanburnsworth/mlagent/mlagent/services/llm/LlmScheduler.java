@@ -0,0 +1,274 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admits LLM requests per model through a requests-per-minute and a tokens-per-minute token bucket.
+ * Waiting requests are served by role priority, so error-handler and critic calls of runs already in
+ * flight go ahead of calls that start new work. A 429 pauses the whole model lane for a jittered,
+ * exponentially growing backoff before the request is queued again.
+ */
+@Component
+public class LlmScheduler {
+    private static final Logger log = LoggerFactory.getLogger(LlmScheduler.class);
+
+    private final AgentMetrics metrics;
+    private final Map<String, ModelLane> lanes = new ConcurrentHashMap<>();
+
+    private final int requestsPerMinute;
+    private final int tokensPerMinute;
+    private final int completionTokenEstimate;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    public LlmScheduler(AgentMetrics metrics,
+                        @Value("${agent.llm.rate.requests-per-minute:500}") int requestsPerMinute,
+                        @Value("${agent.llm.rate.tokens-per-minute:200000}") int tokensPerMinute,
+                        @Value("${agent.llm.rate.completion-token-estimate:1500}") int completionTokenEstimate,
+                        @Value("${agent.llm.retry.max-attempts:5}") int maxAttempts,
+                        @Value("${agent.llm.retry.backoff-ms:1000}") long backoffMs,
+                        @Value("${agent.llm.retry.max-backoff-ms:60000}") long maxBackoffMs) {
+        this.metrics = metrics;
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.completionTokenEstimate = completionTokenEstimate;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Runs a blocking request once the model's buckets admit it, retrying rate-limited attempts.
+     */
+    public ChatResponse call(String model, LlmRole role, int promptTokens, Supplier<ChatResponse> request) {
+        ModelLane lane = lane(model);
+        int estimate = promptTokens + completionTokenEstimate;
+        for (int attempt = 1; ; attempt++) {
+            admit(lane, model, role, estimate);
+            try {
+                ChatResponse response = request.get();
+                lane.reconcile(estimate, totalTokens(response));
+                return response;
+            } catch (RuntimeException e) {
+                if (!isRateLimited(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                backOff(lane, model, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Waits for admission before a streaming request. Streams are not retried because part of the
+     * response may already have been consumed; {@link #complete} settles the token estimate afterwards.
+     */
+    public int admit(String model, LlmRole role, int promptTokens) {
+        int estimate = promptTokens + completionTokenEstimate;
+        admit(lane(model), model, role, estimate);
+        return estimate;
+    }
+
+    public void complete(String model, int estimate, ChatResponse lastResponse, Throwable error) {
+        ModelLane lane = lane(model);
+        if (error != null && isRateLimited(error)) {
+            backOff(lane, model, 1, error);
+            return;
+        }
+        lane.reconcile(estimate, totalTokens(lastResponse));
+    }
+
+    private void admit(ModelLane lane, String model, LlmRole role, int estimate) {
+        long start = System.nanoTime();
+        lane.acquire(priority(role), estimate);
+        metrics.recordLlmQueueWait(model, role, System.nanoTime() - start);
+    }
+
+    private void backOff(ModelLane lane, String model, int attempt, Throwable e) {
+        // full jitter keeps runs that hit the limit together from retrying together
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        Duration backoff = Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        log.warn("LLM rate limited on {} (attempt {}), pausing {} ms: {}", model, attempt, backoff.toMillis(), e.getMessage());
+        metrics.recordLlmRateLimited(model);
+        lane.pause(backoff);
+    }
+
+    private ModelLane lane(String model) {
+        return lanes.computeIfAbsent(model, key -> {
+            ModelLane lane = new ModelLane(requestsPerMinute, tokensPerMinute);
+            metrics.registerLlmQueueDepth(key, lane::queueDepth);
+            return lane;
+        });
+    }
+
+    // lower runs first: finishing runs already in flight beats starting new work
+    static int priority(LlmRole role) {
+        return switch (role) {
+            case ERROR_HANDLER -> 0;
+            case ML_CRITIC, CODE_FIXER -> 1;
+            case NOTEBOOK_UPDATER -> 2;
+            case NOTEBOOK_CREATOR -> 3;
+        };
+    }
+
+    static boolean isRateLimited(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException.TooManyRequests
+                    || cause instanceof WebClientResponseException.TooManyRequests) {
+                return true;
+            }
+            // Spring AI reports HTTP errors as "<status> - <body>"
+            if (cause instanceof NonTransientAiException && String.valueOf(cause.getMessage()).startsWith("429")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Integer totalTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0 ? usage.getTotalTokens() : null;
+    }
+
+    /**
+     * Buckets and wait queue of one model. Only the request at the head of the queue may take from the
+     * buckets, so a large low-priority request cannot be starved by a stream of small ones behind it.
+     */
+    static class ModelLane {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+                Comparator.comparingInt(Ticket::priority).thenComparingLong(Ticket::sequence));
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private long sequence;
+        private long pausedUntil;
+
+        ModelLane(int requestsPerMinute, int tokensPerMinute) {
+            this.requests = new TokenBucket(requestsPerMinute);
+            this.tokens = new TokenBucket(tokensPerMinute);
+            this.pausedUntil = System.nanoTime();
+        }
+
+        void acquire(int priority, int estimatedTokens) {
+            lock.lock();
+            Ticket ticket = new Ticket(priority, sequence++);
+            waiting.add(ticket);
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (waiting.peek() != ticket) {
+                        changed.await();
+                        continue;
+                    }
+                    long delay = Math.max(0, pausedUntil - now);
+                    if (delay == 0) {
+                        delay = Math.max(requests.delayFor(1, now), tokens.delayFor(estimatedTokens, now));
+                        if (delay == 0) {
+                            requests.take(1);
+                            tokens.take(estimatedTokens);
+                            return;
+                        }
+                    }
+                    changed.awaitNanos(delay);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for LLM capacity", e);
+            } finally {
+                waiting.remove(ticket);
+                changed.signalAll();
+                lock.unlock();
+            }
+        }
+
+        // the provider counts what was actually used, so settle the difference with the estimate
+        void reconcile(int estimatedTokens, Integer actualTokens) {
+            if (actualTokens == null) {
+                return;
+            }
+            lock.lock();
+            try {
+                tokens.take(actualTokens - estimatedTokens);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void pause(Duration backoff) {
+            lock.lock();
+            try {
+                pausedUntil = Math.max(pausedUntil, System.nanoTime() + backoff.toNanos());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int queueDepth() {
+            lock.lock();
+            try {
+                return waiting.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record Ticket(int priority, long sequence) {
+    }
+
+    /**
+     * Holds up to one minute of capacity and refills continuously. Reconciliation may drive it negative,
+     * which delays later requests until the overdraft has been paid back.
+     */
+    static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefill;
+
+        TokenBucket(int perMinute) {
+            this.capacity = Math.max(1, perMinute);
+            this.refillPerNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        long delayFor(int amount, long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            // a request larger than the bucket only has to wait for a full bucket
+            double needed = Math.min(amount, capacity);
+            return available >= needed ? 0 : (long) Math.ceil((needed - available) / refillPerNano);
+        }
+
+        void take(int amount) {
+            available = Math.max(-capacity, Math.min(capacity, available - Math.min(amount, capacity)));
+        }
+    }
+}
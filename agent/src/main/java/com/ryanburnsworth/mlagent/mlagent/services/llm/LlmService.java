@@ -0,0 +1,11 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import reactor.core.publisher.Flux;
+
+public interface LlmService {
+    String call(AgentRunContext context, LlmRole role, String prompt);
+
+    Flux<String> stream(AgentRunContext context, LlmRole role, String prompt);
+}
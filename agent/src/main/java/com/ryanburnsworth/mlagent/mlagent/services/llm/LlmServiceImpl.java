@@ -0,0 +1,168 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.MemoryCompactor;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class LlmServiceImpl implements LlmService {
+    private static final Logger log = LoggerFactory.getLogger(LlmServiceImpl.class);
+    private final ChatClient chatClient;
+    private final LlmResponseCache cache;
+    private final AgentMetrics metrics;
+    private final LlmScheduler scheduler;
+    private final LlmRouter router;
+
+    public LlmServiceImpl(ChatClient.Builder chatClientBuilder, LlmResponseCache cache, AgentMetrics metrics,
+                          LlmScheduler scheduler, LlmRouter router) {
+        this.chatClient = chatClientBuilder.build();
+        this.cache = cache;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.router = router;
+    }
+
+    @Override
+    public String call(AgentRunContext context, LlmRole role, String prompt) {
+        LlmRoute route = router.route(role);
+        String key = cacheKey(route, prompt);
+        Optional<String> cached = lookup(context, key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // restarted on every attempt, so the permit wait and 429 backoff are left out of the request's time
+        AtomicLong start = new AtomicLong();
+        ChatResponse response;
+        try {
+            response = scheduler.call(route.lane(), role, MemoryCompactor.estimateTokens(prompt), () -> {
+                start.set(System.nanoTime());
+                return chatClient
+                        .prompt(prompt)
+                        .options(route.options())
+                        .call()
+                        .chatResponse();
+            });
+        } catch (RuntimeException e) {
+            // a request that never got a permit was not sent, so there is nothing to time
+            if (start.get() != 0) {
+                recordCall(context, route, "call", System.nanoTime() - start.get(), false);
+            }
+            throw e;
+        }
+        recordCall(context, route, "call", System.nanoTime() - start.get(), true);
+        recordUsage(context, role, response);
+
+        String content = textOf(response);
+        store(key, content);
+        return content;
+    }
+
+    @Override
+    public Flux<String> stream(AgentRunContext context, LlmRole role, String prompt) {
+        LlmRoute route = router.route(role);
+        String key = cacheKey(route, prompt);
+        Optional<String> cached = lookup(context, key);
+        if (cached.isPresent()) {
+            return Flux.just(cached.get());
+        }
+
+        return Flux.defer(() -> {
+            int reservedTokens = scheduler.admit(route.lane(), role, MemoryCompactor.estimateTokens(prompt));
+            long start = System.nanoTime();
+            StringBuilder content = new StringBuilder();
+            // providers report usage on the final chunk only
+            AtomicReference<ChatResponse> lastResponse = new AtomicReference<>();
+            return chatClient
+                    .prompt(prompt)
+                    .options(route.options())
+                    .stream()
+                    .chatResponse()
+                    .doOnNext(lastResponse::set)
+                    .mapNotNull(LlmServiceImpl::textOf)
+                    .doOnNext(content::append)
+                    .doOnError(e -> {
+                        recordCall(context, route, "stream", System.nanoTime() - start, false);
+                        scheduler.complete(route.lane(), reservedTokens, lastResponse.get(), e);
+                    })
+                    .doOnComplete(() -> {
+                        recordCall(context, route, "stream", System.nanoTime() - start, true);
+                        scheduler.complete(route.lane(), reservedTokens, lastResponse.get(), null);
+                        recordUsage(context, role, lastResponse.get());
+                        store(key, content.toString());
+                    });
+        });
+    }
+
+    // A bypassing run skips the lookup but still refreshes the entry with its fresh sample
+    private Optional<String> lookup(AgentRunContext context, String key) {
+        if (context.isBypassLlmCache()) {
+            return Optional.empty();
+        }
+        Optional<String> cached = cache.get(key);
+        cached.ifPresent(hit -> log.info("LLM response cache hit for {}", key));
+        return cached;
+    }
+
+    private void store(String key, String content) {
+        if (content != null && !content.isBlank()) {
+            cache.put(key, content);
+        }
+    }
+
+    private void recordCall(AgentRunContext context, LlmRoute route, String mode, long durationNanos, boolean success) {
+        metrics.recordLlmCall(context, route.role(), route.lane(), mode, durationNanos,
+                success ? AgentMetrics.SUCCESS : AgentMetrics.FAILURE);
+        router.record(route, durationNanos, success);
+    }
+
+    private void recordUsage(AgentRunContext context, LlmRole role, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage != null) {
+            metrics.recordLlmTokens(context, role, usage.getPromptTokens(), usage.getCompletionTokens());
+        }
+    }
+
+    private static String textOf(ChatResponse response) {
+        return Optional.ofNullable(response)
+                .map(ChatResponse::getResult)
+                .map(Generation::getOutput)
+                .map(AssistantMessage::getText)
+                .orElse(null);
+    }
+
+    private static String cacheKey(LlmRoute route, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(route.model().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(route.temperature().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Optional;
+
+/**
+ * Checks the in-memory tier first and falls back to the optional disk tier, promoting disk hits into memory.
+ */
+public class TieredLlmResponseCache implements LlmResponseCache {
+    private final LlmResponseCache memory;
+    private final LlmResponseCache disk;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public TieredLlmResponseCache(LlmResponseCache memory, LlmResponseCache disk, MeterRegistry meterRegistry) {
+        this.memory = memory;
+        this.disk = disk;
+        this.memoryHits = meterRegistry.counter("llm.cache.requests", "result", "hit", "tier", "memory");
+        this.diskHits = meterRegistry.counter("llm.cache.requests", "result", "hit", "tier", "disk");
+        this.misses = meterRegistry.counter("llm.cache.requests", "result", "miss", "tier", "none");
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        Optional<String> response = memory.get(key);
+        if (response.isPresent()) {
+            memoryHits.increment();
+            return response;
+        }
+
+        response = disk.get(key);
+        if (response.isPresent()) {
+            diskHits.increment();
+            memory.put(key, response.get());
+            return response;
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(String key, String response) {
+        memory.put(key, response);
+        disk.put(key, response);
+    }
+}
@@ -0,0 +1,9 @@
+package com.ryanburnsworth.mlagent.mlagent.services.memory;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+
+import java.util.List;
+
+public record CompactedMemory(List<AgentMemory> memories, int estimatedTokens, int verbatimTurns,
+                              int compactedTurns, int summarizedTurns, int droppedTurns) {
+}
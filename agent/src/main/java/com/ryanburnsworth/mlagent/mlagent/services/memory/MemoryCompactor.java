@@ -0,0 +1,117 @@
+package com.ryanburnsworth.mlagent.mlagent.services.memory;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fits the agent memory into a fixed token budget before it is rendered into a prompt.
+ * <p>
+ * The most recent turns are kept verbatim. Over budget, older turns lose their prompt and keep only the
+ * generated code, then the prompts of recent turns are shortened, then older code is cut down to a short
+ * summary and finally older turns are dropped, oldest first. If the recent turns alone are still too large
+ * their outputs are truncated, so every prompt gets the same hard cap no matter how many steps and retries
+ * came before it.
+ */
+@Component
+public class MemoryCompactor {
+    // rough average for English text and Python code with OpenAI tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final String TRUNCATED = "\n...[truncated]";
+
+    private final int tokenBudget;
+    private final int recentTurns;
+    private final int summaryChars;
+
+    public MemoryCompactor(@Value("${agent.memory.token-budget:8000}") int tokenBudget,
+                           @Value("${agent.memory.recent-turns:2}") int recentTurns,
+                           @Value("${agent.memory.summary-chars:600}") int summaryChars) {
+        this.tokenBudget = tokenBudget;
+        this.recentTurns = recentTurns;
+        this.summaryChars = summaryChars;
+    }
+
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public CompactedMemory compact(List<AgentMemory> memories) {
+        List<AgentMemory> turns = new ArrayList<>(memories);
+        int firstRecent = Math.max(0, turns.size() - recentTurns);
+        int compacted = 0;
+        int summarized = 0;
+        int dropped = 0;
+
+        // keep only the generated code of older turns
+        for (int i = 0; i < firstRecent && totalTokens(turns) > tokenBudget; i++) {
+            turns.set(i, codeOnly(turns.get(i)));
+            compacted++;
+        }
+
+        // the prompts of recent turns embed earlier memory, so they are cut before any code is lost
+        for (int i = firstRecent; i < turns.size() && totalTokens(turns) > tokenBudget; i++) {
+            turns.set(i, withPrompt(turns.get(i), head(turns.get(i).getUserInput(), summaryChars)));
+        }
+
+        // then cut older turns down to a summary
+        for (int i = 0; i < firstRecent && totalTokens(turns) > tokenBudget; i++) {
+            turns.set(i, summary(turns.get(i), summaryChars));
+            summarized++;
+        }
+
+        // then drop older turns altogether, oldest first
+        while (firstRecent > 0 && totalTokens(turns) > tokenBudget) {
+            turns.remove(0);
+            firstRecent--;
+            dropped++;
+        }
+
+        // finally give the remaining outputs an equal share of what is left of the budget
+        if (totalTokens(turns) > tokenBudget && !turns.isEmpty()) {
+            int promptTokens = turns.stream().mapToInt(turn -> estimateTokens(turn.getUserInput())).sum();
+            int perTurnChars = Math.max(0, tokenBudget - promptTokens) * CHARS_PER_TOKEN / turns.size();
+            turns.replaceAll(turn -> summary(turn, perTurnChars));
+        }
+
+        int verbatim = turns.size() - firstRecent;
+        compacted = Math.max(0, compacted - summarized);
+        summarized = Math.max(0, summarized - dropped);
+        return new CompactedMemory(turns, totalTokens(turns), verbatim, compacted, summarized, dropped);
+    }
+
+    private int totalTokens(List<AgentMemory> turns) {
+        return turns.stream()
+                .mapToInt(turn -> estimateTokens(turn.getUserInput()) + estimateTokens(turn.getAgentOutput()))
+                .sum();
+    }
+
+    private AgentMemory codeOnly(AgentMemory turn) {
+        return withPrompt(turn, "[" + turn.getStep() + " prompt omitted]");
+    }
+
+    private AgentMemory summary(AgentMemory turn, int maxChars) {
+        return AgentMemory.builder()
+                .step(turn.getStep())
+                .userInput(turn.getUserInput())
+                .agentOutput(head(turn.getAgentOutput(), maxChars))
+                .build();
+    }
+
+    private AgentMemory withPrompt(AgentMemory turn, String userInput) {
+        return AgentMemory.builder()
+                .step(turn.getStep())
+                .userInput(userInput)
+                .agentOutput(turn.getAgentOutput())
+                .build();
+    }
+
+    private String head(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, Math.max(0, maxChars - TRUNCATED.length())) + TRUNCATED;
+    }
+}
@@ -0,0 +1,243 @@
+package com.ryanburnsworth.mlagent.mlagent.services.metrics;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Names and tags every meter and span the agent publishes so dashboards only have to look in one place.
+ * Agent and LLM meters are tagged with the run's current step. Spans nest as run, step, agent, and the
+ * LLM and ML service client spans pick up the current agent span as their parent.
+ */
+@Component
+public class AgentMetrics {
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    private final MeterRegistry registry;
+    private final Tracer tracer;
+
+    public AgentMetrics(MeterRegistry registry, Tracer tracer) {
+        this.registry = registry;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Times a whole orchestration run and opens the root span of its trace.
+     */
+    public ResponseStatus timeRun(AgentRunContext context, Supplier<ResponseStatus> run) {
+        long start = System.nanoTime();
+        Span span = tracer.nextSpan()
+                .name("agent run")
+                .tag("run.id", context.getRunId())
+                .tag("notebook", context.getNotebookName())
+                .tag("search.term", context.getSearchTerm())
+                .start();
+        String outcome = FAILURE;
+        // closed by hand rather than by try-with-resources, which would never reference the scope
+        Tracer.SpanInScope scope = tracer.withSpan(span);
+        try {
+            ResponseStatus status = run.get();
+            outcome = outcome(status);
+            return status;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            scope.close();
+            span.tag("outcome", outcome).end();
+            Timer.builder("agent.run.duration")
+                    .description("End-to-end duration of an orchestration run")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Wraps one pipeline step, including error handler retries, in a span.
+     */
+    public ResponseStatus traceStep(AgentRunContext context, Supplier<ResponseStatus> step) {
+        return inSpan("step " + step(context), context, null, step);
+    }
+
+    /**
+     * Times one agent invocation, including its LLM calls and any ML service call it makes.
+     */
+    public <T> T timeAgent(AgentRunContext context, LlmRole role, Supplier<T> agent) {
+        Timer.Sample sample = Timer.start(registry);
+        T result = null;
+        try {
+            result = inSpan(role.getAgentName(), context, role, agent);
+            return result;
+        } finally {
+            sample.stop(Timer.builder("agent.invocation.duration")
+                    .description("Time spent in one agent invocation")
+                    .tag("role", role.getAgentName())
+                    .tag("step", step(context))
+                    .tag("outcome", outcome(result))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    public void recordLlmCall(AgentRunContext context, LlmRole role, String model, String mode, long durationNanos,
+                              String outcome) {
+        Timer.builder("llm.request.duration")
+                .description("Latency of LLM requests that missed the response cache")
+                .tag("role", role.getAgentName())
+                .tag("model", model)
+                .tag("step", step(context))
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLlmTokens(AgentRunContext context, LlmRole role, Integer promptTokens, Integer completionTokens) {
+        recordTokens(context, role, "prompt", promptTokens);
+        recordTokens(context, role, "completion", completionTokens);
+    }
+
+    public void recordLlmFallback(LlmRole role, String model, String fallbackModel) {
+        registry.counter("llm.routing.fallback", "role", role.getAgentName(), "model", model,
+                "fallback", fallbackModel).increment();
+    }
+
+    public void recordLlmQueueWait(String model, LlmRole role, long durationNanos) {
+        Timer.builder("llm.scheduler.wait")
+                .description("Time LLM requests spent waiting for rate limit capacity")
+                .tag("model", model)
+                .tag("role", role.getAgentName())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLlmRateLimited(String model) {
+        registry.counter("llm.scheduler.rate_limited", "model", model).increment();
+    }
+
+    public void registerLlmQueueDepth(String model, Supplier<Number> depth) {
+        Gauge.builder("llm.scheduler.queue.depth", depth)
+                .description("LLM requests waiting for rate limit capacity")
+                .tag("model", model)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void recordCriticVerdict(AgentRunContext context, String verdict) {
+        registry.counter("agent.critic.verdicts", "step", step(context), "verdict", verdict).increment();
+    }
+
+    public void recordErrorHandlerRetry(AgentRunContext context) {
+        registry.counter("agent.error_handler.retries", "step", step(context)).increment();
+    }
+
+    public void recordErrorFixLookup(AgentRunContext context, String outcome) {
+        registry.counter("agent.error_fix.lookup", "step", step(context), "outcome", outcome).increment();
+    }
+
+    public void recordSpeculation(AgentRunContext context, String outcome) {
+        registry.counter("agent.speculation", "step", step(context), "outcome", outcome).increment();
+    }
+
+    /**
+     * Times a call to the ML service from subscription until it completes, fails or is cancelled, retries included.
+     */
+    public <T> Mono<T> timeMlService(String endpoint, Mono<T> call) {
+        return timeMlService(endpoint, call, result -> SUCCESS);
+    }
+
+    /**
+     * Times a notebook call whose body carries its own status, so a completed call that answered with a
+     * failure status is counted as a failure.
+     */
+    public <T> Mono<T> timeMlService(String endpoint, Mono<T> call, Function<T, String> statusOf) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            AtomicReference<String> status = new AtomicReference<>(SUCCESS);
+            return call.doOnNext(result -> status.set(statusOf.apply(result)))
+                    .doFinally(signal -> sample.stop(Timer.builder("mlservice.request.duration")
+                            .description("Latency of ML service requests")
+                            .tag("endpoint", endpoint)
+                            .tag("outcome", outcome(signal, status.get()))
+                            .publishPercentileHistogram()
+                            .register(registry)));
+        });
+    }
+
+    private <T> T inSpan(String name, AgentRunContext context, LlmRole role, Supplier<T> body) {
+        Span span = tracer.nextSpan()
+                .name(name)
+                .tag("run.id", context.getRunId())
+                .tag("step", step(context))
+                .start();
+        if (role != null) {
+            span.tag("role", role.getAgentName());
+        }
+        String outcome = FAILURE;
+        Tracer.SpanInScope scope = tracer.withSpan(span);
+        try {
+            T result = body.get();
+            outcome = outcome(result);
+            return result;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            scope.close();
+            span.tag("outcome", outcome).end();
+        }
+    }
+
+    private void recordTokens(AgentRunContext context, LlmRole role, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        DistributionSummary.builder("llm.tokens")
+                .description("Tokens reported by the LLM provider per request")
+                .baseUnit("tokens")
+                .tag("role", role.getAgentName())
+                .tag("step", step(context))
+                .tag("type", type)
+                .register(registry)
+                .record(tokens);
+    }
+
+    private static String step(AgentRunContext context) {
+        return context.getCurrentStep().name();
+    }
+
+    // agents report failures as a null result or a non-success ResponseStatus rather than by throwing
+    private static String outcome(Object result) {
+        if (result instanceof ResponseStatus status) {
+            return SUCCESS.equals(status.getStatus()) ? SUCCESS : FAILURE;
+        }
+        return result != null ? SUCCESS : FAILURE;
+    }
+
+    private static String outcome(SignalType signal, String status) {
+        return switch (signal) {
+            case ON_COMPLETE -> SUCCESS.equals(status) ? SUCCESS : FAILURE;
+            case CANCEL -> "cancelled";
+            default -> FAILURE;
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches dataset metadata by normalized search term. Each entry is a cached {@link Mono}, so concurrent
+ * callers for the same term subscribe to one in-flight download instead of starting their own. Failed
+ * downloads are not cached.
+ */
+class DatasetMetadataCache {
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    DatasetMetadataCache(Duration ttl, int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    // the loader gets the term as the caller wrote it; only the cache key is normalized
+    Mono<DatasetMetadata> get(String searchTerm, Function<String, Mono<DatasetMetadata>> loader) {
+        String key = normalize(searchTerm);
+
+        Entry entry = entries.compute(key, (k, existing) -> existing != null && !existing.isExpiredAfter(ttl)
+                ? existing
+                : new Entry(share(loader.apply(searchTerm)), Instant.now()));
+        evictIfFull();
+        return entry.metadata();
+    }
+
+    static String normalize(String searchTerm) {
+        return searchTerm.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // errors and empty results expire immediately so the next caller retries the download
+    private Mono<DatasetMetadata> share(Mono<DatasetMetadata> download) {
+        return download.cache(metadata -> ttl, error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    private void evictIfFull() {
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparing(e -> e.getValue().createdAt()))
+                    .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private record Entry(Mono<DatasetMetadata> metadata, Instant createdAt) {
+        boolean isExpiredAfter(Duration ttl) {
+            return createdAt.plus(ttl).isBefore(Instant.now());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.ryanburnsworth.mlagent.mlagent.services.ml;
 
 import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookExecution;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
 import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
 
 import java.util.List;
@@ -9,7 +11,24 @@ import java.util.Map;
 public interface MLService {
     DatasetMetadata fetchDatasetMetadata(String searchTerm);
 
-    ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent);
+    List<DatasetMetadata> fetchDatasetCandidates(String searchTerm, int count);
 
-    ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent);
+    ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                  int sampleRows);
+
+    ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent, String kernelPool,
+                                  int sampleRows);
+
+    ResponseStatus validateNotebook(String notebookName, String kernelPool);
+
+    NotebookMetrics fetchNotebookMetrics(String notebookName);
+
+    NotebookExecution executeCells(String notebookName, List<Map<String, Object>> cells, String kernelPool,
+                                   int sampleRows);
+
+    ResponseStatus forkNotebook(String notebookName, String branchName, String kernelPool);
+
+    ResponseStatus mergeNotebook(String notebookName, String branchName, String kernelPool);
+
+    ResponseStatus discardNotebook(String notebookName);
 }
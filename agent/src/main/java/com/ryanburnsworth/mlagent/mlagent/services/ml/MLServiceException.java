@@ -0,0 +1,22 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+
+import java.io.Serial;
+
+public class MLServiceException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // ResponseStatus is not serializable; the message carries the status message across serialization
+    private final transient ResponseStatus status;
+
+    public MLServiceException(ResponseStatus status, Throwable cause) {
+        super(status.getMessage(), cause);
+        this.status = status;
+    }
+
+    public ResponseStatus getStatus() {
+        return status;
+    }
+}
@@ -1,72 +1,75 @@
 package com.ryanburnsworth.mlagent.mlagent.services.ml;
 
 import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookExecution;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
 import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Blocking facade over {@link ReactiveMLService} for the sequential agent pipeline.
+ */
 @Service
 public class MLServiceImpl implements MLService {
-    private static final Logger log = LoggerFactory.getLogger(MLServiceImpl.class);
-    private final WebClient webClient;
+    private final ReactiveMLService reactiveMLService;
 
-    public MLServiceImpl(WebClient webClient) {
-        this.webClient = webClient;
+    public MLServiceImpl(ReactiveMLService reactiveMLService) {
+        this.reactiveMLService = reactiveMLService;
     }
 
     @Override
     public DatasetMetadata fetchDatasetMetadata(String searchTerm) {
-        log.info("fetchDatasetMetadata: Fetching Dataset Metadata using search term {}: ", searchTerm);
-        try {
-            return webClient.get()
-                    .uri("/dataset/download/" + searchTerm)
-                    .retrieve()
-                    .bodyToMono(DatasetMetadata.class)
-                    .block();
-        } catch (Exception e) {
-            // TODO: Add error handling
-            log.error("fetchDatasetMetadata: Error fetching dataset metadata: {}", e.getMessage());
-            return null;
-        }
+        return reactiveMLService.fetchDatasetMetadata(searchTerm).block();
     }
 
     @Override
-    public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent) {
-        try {
-            log.info("createNotebook: Creating notebook on ML Service");
-            return webClient.post()
-                    .uri("/notebook/create/" + notebookName)
-                    .body(BodyInserters.fromValue(notebookContent))
-                    .exchangeToMono(clientResponse ->
-                            clientResponse.bodyToMono(ResponseStatus.class))
-                    .block();
-        } catch (Exception e) {
-            // TODO: Add error handling
-            log.error("createNotebook: Error creating notebook on ML Service: {}", e.getMessage());
-            return null;
-        }
+    public List<DatasetMetadata> fetchDatasetCandidates(String searchTerm, int count) {
+        return reactiveMLService.fetchDatasetCandidates(searchTerm, count).block();
     }
 
     @Override
-    public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent) {
-        try {
-            log.info("updateNotebook: Updating notebook on ML Service");
-            return webClient.post()
-                    .uri("/notebook/update/" + notebookName)
-                    .body(BodyInserters.fromValue(notebookContent))
-                    .exchangeToMono(clientResponse ->
-                            clientResponse.bodyToMono(ResponseStatus.class))
-                    .block();
-        } catch (Exception e) {
-            // TODO: Add error handling
-            log.error("updateNotebook: Error updating notebook on ML Service: {}", e.getMessage());
-            return null;
-        }
+    public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                         int sampleRows) {
+        return reactiveMLService.createNotebook(notebookName, notebookContent, kernelPool, sampleRows).block();
+    }
+
+    @Override
+    public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent, String kernelPool,
+                                         int sampleRows) {
+        return reactiveMLService.updateNotebook(notebookName, notebookContent, kernelPool, sampleRows).block();
+    }
+
+    @Override
+    public ResponseStatus validateNotebook(String notebookName, String kernelPool) {
+        return reactiveMLService.validateNotebook(notebookName, kernelPool).block();
+    }
+
+    @Override
+    public NotebookMetrics fetchNotebookMetrics(String notebookName) {
+        return reactiveMLService.fetchNotebookMetrics(notebookName).block();
+    }
+
+    @Override
+    public NotebookExecution executeCells(String notebookName, List<Map<String, Object>> cells, String kernelPool,
+                                          int sampleRows) {
+        return reactiveMLService.executeCells(notebookName, cells, kernelPool, sampleRows).block();
+    }
+
+    @Override
+    public ResponseStatus forkNotebook(String notebookName, String branchName, String kernelPool) {
+        return reactiveMLService.forkNotebook(notebookName, branchName, kernelPool).block();
+    }
+
+    @Override
+    public ResponseStatus mergeNotebook(String notebookName, String branchName, String kernelPool) {
+        return reactiveMLService.mergeNotebook(notebookName, branchName, kernelPool).block();
+    }
+
+    @Override
+    public ResponseStatus discardNotebook(String notebookName) {
+        return reactiveMLService.discardNotebook(notebookName).block();
     }
 }
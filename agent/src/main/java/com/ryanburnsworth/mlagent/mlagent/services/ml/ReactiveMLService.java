@@ -0,0 +1,35 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookExecution;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ReactiveMLService {
+    Mono<DatasetMetadata> fetchDatasetMetadata(String searchTerm);
+
+    Mono<List<DatasetMetadata>> fetchDatasetCandidates(String searchTerm, int count);
+
+    Mono<ResponseStatus> createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                        int sampleRows);
+
+    Mono<ResponseStatus> updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                        String kernelPool, int sampleRows);
+
+    Mono<ResponseStatus> validateNotebook(String notebookName, String kernelPool);
+
+    Mono<NotebookMetrics> fetchNotebookMetrics(String notebookName);
+
+    Mono<NotebookExecution> executeCells(String notebookName, List<Map<String, Object>> cells, String kernelPool,
+                                         int sampleRows);
+
+    Mono<ResponseStatus> forkNotebook(String notebookName, String branchName, String kernelPool);
+
+    Mono<ResponseStatus> mergeNotebook(String notebookName, String branchName, String kernelPool);
+
+    Mono<ResponseStatus> discardNotebook(String notebookName);
+}
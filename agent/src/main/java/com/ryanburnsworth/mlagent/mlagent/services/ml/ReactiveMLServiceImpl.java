@@ -0,0 +1,277 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookExecution;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+@Service
+public class ReactiveMLServiceImpl implements ReactiveMLService {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveMLServiceImpl.class);
+    private static final String KERNEL_POOL_HEADER = "X-Kernel-Pool";
+    private static final String SAMPLE_ROWS_HEADER = "X-Sample-Rows";
+    private final WebClient webClient;
+    private final AgentMetrics metrics;
+
+    @Value("${mlservice.timeout.dataset-ms:600000}")
+    private long datasetTimeoutMs;
+
+    @Value("${mlservice.timeout.notebook-ms:900000}")
+    private long notebookTimeoutMs;
+
+    @Value("${mlservice.retry.max-attempts:3}")
+    private int maxRetries;
+
+    @Value("${mlservice.retry.backoff-ms:500}")
+    private long retryBackoffMs;
+
+    // pool for runs that do not pick one; blank leaves the choice to the ML service
+    @Value("${mlservice.kernel-pool:}")
+    private String defaultKernelPool;
+
+    @Value("${mlservice.dataset-cache.enabled:true}")
+    private boolean datasetCacheEnabled;
+
+    private final DatasetMetadataCache datasetMetadataCache;
+
+    public ReactiveMLServiceImpl(WebClient webClient, AgentMetrics metrics,
+                                 @Value("${mlservice.dataset-cache.ttl-minutes:60}") long datasetCacheTtlMinutes,
+                                 @Value("${mlservice.dataset-cache.max-entries:256}") int datasetCacheMaxEntries) {
+        this.webClient = webClient;
+        this.metrics = metrics;
+        this.datasetMetadataCache = new DatasetMetadataCache(Duration.ofMinutes(datasetCacheTtlMinutes), datasetCacheMaxEntries);
+    }
+
+    @Override
+    public Mono<DatasetMetadata> fetchDatasetMetadata(String searchTerm) {
+        if (!datasetCacheEnabled) {
+            return downloadDatasetMetadata(searchTerm);
+        }
+        // concurrent runs for the same term share a single download
+        return datasetMetadataCache.get(searchTerm, this::downloadDatasetMetadata);
+    }
+
+    private Mono<DatasetMetadata> downloadDatasetMetadata(String searchTerm) {
+        log.info("fetchDatasetMetadata: Fetching Dataset Metadata using search term {}: ", searchTerm);
+        Mono<DatasetMetadata> download = webClient.get()
+                .uri("/dataset/download/{searchTerm}", searchTerm)
+                .retrieve()
+                .bodyToMono(DatasetMetadata.class)
+                .timeout(Duration.ofMillis(datasetTimeoutMs))
+                .retryWhen(retrySpec("fetchDatasetMetadata"));
+        return metrics.timeMlService("dataset/download", download)
+                .onErrorMap(e -> !(e instanceof MLServiceException),
+                        e -> new MLServiceException(toResponseStatus("Error fetching dataset metadata", e), e));
+    }
+
+    @Override
+    public Mono<List<DatasetMetadata>> fetchDatasetCandidates(String searchTerm, int count) {
+        log.info("fetchDatasetCandidates: Fetching {} candidate datasets using search term {}", count, searchTerm);
+        // every candidate is downloaded by the ML service, so allow one dataset timeout per candidate
+        Mono<List<DatasetMetadata>> download = webClient.get()
+                .uri(uri -> uri.path("/dataset/candidates/{searchTerm}").queryParam("count", count).build(searchTerm))
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<DatasetMetadata>>() {
+                })
+                .timeout(Duration.ofMillis(datasetTimeoutMs * Math.max(count, 1)))
+                .retryWhen(retrySpec("fetchDatasetCandidates"));
+        return metrics.timeMlService("dataset/candidates", download)
+                .onErrorMap(e -> !(e instanceof MLServiceException),
+                        e -> new MLServiceException(toResponseStatus("Error fetching candidate datasets", e), e));
+    }
+
+    @Override
+    public Mono<NotebookMetrics> fetchNotebookMetrics(String notebookName) {
+        // a notebook without a METRICS line answers 404, which simply ranks it last
+        Mono<NotebookMetrics> fetch = webClient.get()
+                .uri("/notebook/metrics/{notebookName}", notebookName)
+                .retrieve()
+                .bodyToMono(NotebookMetrics.class)
+                .timeout(Duration.ofMillis(notebookTimeoutMs))
+                .retryWhen(retrySpec("fetchNotebookMetrics"));
+        return metrics.timeMlService("notebook/metrics", fetch)
+                .onErrorResume(e -> {
+                    log.warn("fetchNotebookMetrics: No metrics for notebook {}: {}", notebookName, e.getMessage());
+                    return Mono.just(NotebookMetrics.empty());
+                });
+    }
+
+    @Override
+    public Mono<ResponseStatus> createNotebook(String notebookName, Map<String, Object> notebookContent,
+                                               String kernelPool, int sampleRows) {
+        log.info("createNotebook: Creating notebook on ML Service");
+        return postNotebook("notebook/create", notebookName, kernelPool, sampleRows, notebookContent)
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error creating notebook on ML Service", e)));
+    }
+
+    @Override
+    public Mono<ResponseStatus> updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                               String kernelPool, int sampleRows) {
+        log.info("updateNotebook: Updating notebook on ML Service");
+        return postNotebook("notebook/update", notebookName, kernelPool, sampleRows, notebookContent)
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error updating notebook on ML Service", e)));
+    }
+
+    @Override
+    public Mono<ResponseStatus> validateNotebook(String notebookName, String kernelPool) {
+        log.info("validateNotebook: Executing notebook {} on the full dataset", notebookName);
+        return postNotebook("notebook/validate", notebookName, kernelPool, 0, Map.of())
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error validating notebook on ML Service", e)));
+    }
+
+    @Override
+    public Mono<NotebookExecution> executeCells(String notebookName, List<Map<String, Object>> cells,
+                                                String kernelPool, int sampleRows) {
+        log.info("executeCells: Executing {} cells on ML Service", cells.size());
+        return postNotebook("notebook/execute", notebookName, kernelPool, sampleRows, cells,
+                        NotebookExecution.class, NotebookExecution::getStatus)
+                .onErrorResume(e -> Mono.just(NotebookExecution.from(
+                        toResponseStatus("Error executing notebook cells on ML Service", e))));
+    }
+
+    @Override
+    public Mono<ResponseStatus> forkNotebook(String notebookName, String branchName, String kernelPool) {
+        log.info("forkNotebook: Forking notebook {} into {}", notebookName, branchName);
+        return postNotebook("notebook/fork", notebookName, kernelPool, 0, Map.of("branch", branchName))
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error forking notebook on ML Service", e)));
+    }
+
+    @Override
+    public Mono<ResponseStatus> mergeNotebook(String notebookName, String branchName, String kernelPool) {
+        log.info("mergeNotebook: Merging branch {} into notebook {}", branchName, notebookName);
+        return postNotebook("notebook/merge", notebookName, kernelPool, 0, Map.of("branch", branchName))
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error merging notebook branch on ML Service", e)));
+    }
+
+    @Override
+    public Mono<ResponseStatus> discardNotebook(String notebookName) {
+        log.info("discardNotebook: Discarding notebook {}", notebookName);
+        return postNotebook("notebook/discard", notebookName, null, 0, Map.of())
+                .onErrorResume(e -> Mono.just(toResponseStatus("Error discarding notebook on ML Service", e)));
+    }
+
+    private Mono<ResponseStatus> postNotebook(String endpoint, String notebookName, String kernelPool, int sampleRows,
+                                              Object body) {
+        return postNotebook(endpoint, notebookName, kernelPool, sampleRows, body, ResponseStatus.class,
+                ResponseStatus::getStatus);
+    }
+
+    // sampleRows > 0 has the ML service execute the cells against a stratified sample of the dataset files
+    private <T> Mono<T> postNotebook(String endpoint, String notebookName, String kernelPool, int sampleRows,
+                                     Object body, Class<T> type, Function<T, String> statusOf) {
+        String pool = kernelPool != null && !kernelPool.isBlank() ? kernelPool : defaultKernelPool;
+        Mono<T> post = webClient.post()
+                .uri("/" + endpoint + "/{notebookName}", notebookName)
+                .headers(headers -> {
+                    if (pool != null && !pool.isBlank()) {
+                        headers.set(KERNEL_POOL_HEADER, pool);
+                    }
+                    if (sampleRows > 0) {
+                        headers.set(SAMPLE_ROWS_HEADER, Integer.toString(sampleRows));
+                    }
+                })
+                .body(BodyInserters.fromValue(body))
+                .exchangeToMono(clientResponse -> readNotebookResponse(clientResponse, type, statusOf))
+                .timeout(Duration.ofMillis(notebookTimeoutMs))
+                .retryWhen(retrySpec(endpoint, ReactiveMLServiceImpl::wasNotSent));
+        return metrics.timeMlService(endpoint, post, statusOf);
+    }
+
+    // The ML service answers notebook execution errors with a 500 and a status body. Those are results
+    // for the error handler agent, not transport failures, so only bodiless responses become errors.
+    private <T> Mono<T> readNotebookResponse(ClientResponse clientResponse, Class<T> type, Function<T, String> statusOf) {
+        return clientResponse.bodyToMono(type)
+                .onErrorResume(e -> Mono.empty())
+                .filter(response -> statusOf.apply(response) != null)
+                .switchIfEmpty(Mono.defer(() -> clientResponse.<T>createException().flatMap(Mono::error)));
+    }
+
+    private Retry retrySpec(String operation) {
+        return retrySpec(operation, ReactiveMLServiceImpl::isRetryable);
+    }
+
+    private Retry retrySpec(String operation, Predicate<Throwable> retryable) {
+        return Retry.backoff(maxRetries, Duration.ofMillis(retryBackoffMs))
+                .filter(retryable)
+                .doBeforeRetry(signal -> log.warn("{}: Retrying after error (attempt {}): {}",
+                        operation, signal.totalRetries() + 1, signal.failure().getMessage()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    // only for the idempotent GETs, which can be repeated whatever happened to the first attempt
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    // Notebook POSTs write before they execute, so a repeated create fails and a repeated update appends its
+    // cells twice. They are only retried when the connection could not be opened and nothing was sent.
+    private static boolean wasNotSent(Throwable e) {
+        if (!(e instanceof WebClientRequestException)) {
+            return false;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ResponseStatus toResponseStatus(String message, Throwable e) {
+        log.error("{}: {}", message, e.getMessage());
+
+        if (e instanceof WebClientResponseException responseException) {
+            // surface the ML service's own error body when it sent one
+            ResponseStatus body = readErrorBody(responseException);
+            if (body != null && body.getStatus() != null) {
+                return body;
+            }
+            return failure(message, responseException.getStatusCode() + " " + responseException.getResponseBodyAsString());
+        }
+        if (e instanceof TimeoutException) {
+            return failure(message, "Timed out waiting for the ML service");
+        }
+        return failure(message, e.getMessage());
+    }
+
+    private ResponseStatus readErrorBody(WebClientResponseException e) {
+        try {
+            return e.getResponseBodyAs(ResponseStatus.class);
+        } catch (RuntimeException decodeError) {
+            return null;
+        }
+    }
+
+    private ResponseStatus failure(String message, String details) {
+        return ResponseStatus.builder()
+                .status("Failure")
+                .message(message)
+                .details(details)
+                .build();
+    }
+}
@@ -0,0 +1,164 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEvent;
+import com.ryanburnsworth.mlagent.mlagent.models.RunState;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks one background run: its lifecycle state, the event history and the SSE subscribers.
+ * Publishing and subscribing hold the same lock so a late subscriber never misses an event
+ * between replaying the history and being registered, and every subscriber sees the events in order.
+ * It is a ReentrantLock rather than a monitor because events are written to the SSE connections
+ * while it is held, and a blocking write inside synchronized would pin the virtual thread's carrier.
+ */
+class AgentRun {
+    private static final Logger log = LoggerFactory.getLogger(AgentRun.class);
+
+    private final AgentRunContext context;
+    private final Instant createdAt = Instant.now();
+    private final List<RunEvent> events = new ArrayList<>();
+    private final List<SseEmitter> emitters = new ArrayList<>();
+    private final CompletableFuture<RunState> finished = new CompletableFuture<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private RunState state = RunState.QUEUED;
+    private ResponseStatus result;
+    private Instant updatedAt = createdAt;
+
+    AgentRun(AgentRunContext context) {
+        this.context = context;
+    }
+
+    AgentRunContext getContext() {
+        return context;
+    }
+
+    void complete(RunState finalState, ResponseStatus result, RunEvent finalEvent) {
+        lock.lock();
+        try {
+            this.state = finalState;
+            this.result = result;
+            publish(finalEvent);
+
+            emitters.forEach(SseEmitter::complete);
+            emitters.clear();
+        } finally {
+            lock.unlock();
+        }
+        // outside the lock: fan-out callbacks call back into the ML service
+        finished.complete(finalState);
+    }
+
+    CompletableFuture<RunState> whenFinished() {
+        return finished;
+    }
+
+    void publish(RunEvent event) {
+        lock.lock();
+        try {
+            // the first event arrives once the executor has picked the run up
+            if (state == RunState.QUEUED) {
+                state = RunState.RUNNING;
+            }
+            events.add(event);
+            updatedAt = event.getTimestamp();
+
+            // drop subscribers whose connection has gone away
+            emitters.removeIf(emitter -> !send(emitter, event));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void subscribe(SseEmitter emitter) {
+        lock.lock();
+        try {
+            for (RunEvent event : events) {
+                if (!send(emitter, event)) {
+                    return;
+                }
+            }
+
+            if (state.isFinished()) {
+                emitter.complete();
+                return;
+            }
+
+            emitters.add(emitter);
+            emitter.onCompletion(() -> removeEmitter(emitter));
+            emitter.onTimeout(() -> removeEmitter(emitter));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    RunState getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isFinishedBefore(Instant cutoff) {
+        lock.lock();
+        try {
+            return state.isFinished() && updatedAt.isBefore(cutoff);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    RunStatus toStatus() {
+        lock.lock();
+        try {
+            return RunStatus.builder()
+                    .runId(context.getRunId())
+                    .notebookName(context.getNotebookName())
+                    .searchTerm(context.getSearchTerm())
+                    .state(state)
+                    .currentStep(context.getCurrentStep())
+                    .result(result)
+                    .promptStats(List.copyOf(context.getPromptStats()))
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeEmitter(SseEmitter emitter) {
+        lock.lock();
+        try {
+            emitters.remove(emitter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean send(SseEmitter emitter, RunEvent event) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(event.getType().name().toLowerCase())
+                    .data(event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping event subscriber for run {}: {}", context.getRunId(), e.getMessage());
+            return false;
+        }
+    }
+}
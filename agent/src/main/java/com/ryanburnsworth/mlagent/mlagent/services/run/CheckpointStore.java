@@ -0,0 +1,38 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.RunCheckpoint;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface CheckpointStore {
+    void save(RunCheckpoint checkpoint);
+
+    Optional<RunCheckpoint> load(String runId);
+
+    void delete(String runId);
+
+    // checkpoints not saved since the cutoff belong to runs that failed or died and were never resumed
+    void deleteOlderThan(Instant cutoff);
+
+    static CheckpointStore disabled() {
+        return new CheckpointStore() {
+            @Override
+            public void save(RunCheckpoint checkpoint) {
+            }
+
+            @Override
+            public Optional<RunCheckpoint> load(String runId) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void delete(String runId) {
+            }
+
+            @Override
+            public void deleteOlderThan(Instant cutoff) {
+            }
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutCandidate;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunState;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tracks one search term fanned out over several candidate datasets. Candidate runs are started
+ * at most {@code maxParallel} at a time and ranked by a notebook metric once all of them finished.
+ */
+class FanOutRun {
+    private final String fanOutId = UUID.randomUUID().toString();
+    private final String notebookName;
+    private final String searchTerm;
+    private final String rankMetric;
+    private final int maxParallel;
+    private final Instant createdAt = Instant.now();
+    private final List<Candidate> candidates = new ArrayList<>();
+
+    private RunState state = RunState.QUEUED;
+    private String message;
+    private String winnerRunId;
+    private Instant updatedAt = createdAt;
+    private int next;
+    private int running;
+    private int finished;
+
+    FanOutRun(String notebookName, String searchTerm, String rankMetric, int maxParallel) {
+        this.notebookName = notebookName;
+        this.searchTerm = searchTerm;
+        this.rankMetric = rankMetric;
+        this.maxParallel = Math.max(maxParallel, 1);
+    }
+
+    String getFanOutId() {
+        return fanOutId;
+    }
+
+    String getNotebookName() {
+        return notebookName;
+    }
+
+    String getSearchTerm() {
+        return searchTerm;
+    }
+
+    synchronized void addCandidates(List<AgentRunContext> contexts) {
+        contexts.forEach(context -> candidates.add(new Candidate(context)));
+        state = RunState.RUNNING;
+        updatedAt = Instant.now();
+    }
+
+    // the next candidate to launch, or null when all were launched or enough are already running
+    synchronized AgentRunContext claimNext() {
+        if (next >= candidates.size() || running >= maxParallel) {
+            return null;
+        }
+        running++;
+        return candidates.get(next++).context;
+    }
+
+    synchronized void launched(AgentRunContext context, AgentRun run) {
+        candidate(context).run = run;
+    }
+
+    synchronized void rejected(AgentRunContext context) {
+        candidate(context).rejected = true;
+    }
+
+    /**
+     * Puts a resumed run in place of the failed candidate it continues, so the fan-out waits for it and
+     * ranks it again. Returns false if the run is not one of this fan-out's candidates.
+     */
+    synchronized boolean resumed(AgentRun run) {
+        String runId = run.getContext().getRunId();
+        Candidate candidate = candidates.stream()
+                .filter(tracked -> tracked.context.getRunId().equals(runId))
+                .findFirst()
+                .orElse(null);
+        if (candidate == null) {
+            return false;
+        }
+        candidate.context = run.getContext();
+        candidate.run = run;
+        candidate.rejected = false;
+        candidate.score = null;
+        candidate.metrics = Map.of();
+        // the failed run was counted as finished; the resumed one reports again when it ends
+        running++;
+        finished--;
+        state = RunState.RUNNING;
+        message = null;
+        winnerRunId = null;
+        updatedAt = Instant.now();
+        return true;
+    }
+
+    // returns true once the last candidate has finished
+    synchronized boolean candidateFinished() {
+        running--;
+        finished++;
+        updatedAt = Instant.now();
+        return finished == candidates.size();
+    }
+
+    synchronized List<AgentRunContext> succeeded() {
+        return candidates.stream()
+                .filter(candidate -> candidate.state() == RunState.SUCCEEDED)
+                .map(candidate -> candidate.context)
+                .toList();
+    }
+
+    // Orders candidates by the ranking metric, best first; succeeded runs without it follow, failed runs come last
+    synchronized void rank(Map<String, Map<String, Double>> metricsByRunId) {
+        for (Candidate candidate : candidates) {
+            candidate.metrics = metricsByRunId.getOrDefault(candidate.context.getRunId(), Map.of());
+            candidate.score = candidate.metrics.get(rankMetric);
+        }
+        candidates.sort(Comparator
+                .comparing((Candidate candidate) -> candidate.state() != RunState.SUCCEEDED)
+                .thenComparing(candidate -> candidate.score, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        Candidate best = candidates.isEmpty() ? null : candidates.getFirst();
+        if (best != null && best.state() == RunState.SUCCEEDED) {
+            winnerRunId = best.context.getRunId();
+            state = RunState.SUCCEEDED;
+            message = best.score != null
+                    ? "Best " + rankMetric + " " + best.score + " on " + best.context.getDatasetMetadata().getDatasetName()
+                    : "No notebook reported " + rankMetric + "; picked the first successful run";
+        } else {
+            fail("Every candidate run failed");
+        }
+    }
+
+    synchronized void fail(String reason) {
+        state = RunState.FAILED;
+        message = reason;
+        updatedAt = Instant.now();
+    }
+
+    synchronized boolean isFinishedBefore(Instant cutoff) {
+        return state.isFinished() && updatedAt.isBefore(cutoff);
+    }
+
+    synchronized FanOutStatus toStatus() {
+        return FanOutStatus.builder()
+                .fanOutId(fanOutId)
+                .notebookName(notebookName)
+                .searchTerm(searchTerm)
+                .state(state)
+                .message(message)
+                .rankMetric(rankMetric)
+                .candidates(candidates.stream().map(Candidate::toStatus).toList())
+                .winnerRunId(winnerRunId)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
+    private Candidate candidate(AgentRunContext context) {
+        return candidates.stream().filter(candidate -> candidate.context == context).findFirst().orElseThrow();
+    }
+
+    private static final class Candidate {
+        private AgentRunContext context;
+        private AgentRun run;
+        private boolean rejected;
+        private Double score;
+        private Map<String, Double> metrics = Map.of();
+
+        private Candidate(AgentRunContext context) {
+            this.context = context;
+        }
+
+        private RunState state() {
+            if (rejected) {
+                // the saturated run executor refused it
+                return RunState.FAILED;
+            }
+            return run != null ? run.getState() : RunState.QUEUED;
+        }
+
+        private FanOutCandidate toStatus() {
+            return FanOutCandidate.builder()
+                    .runId(context.getRunId())
+                    .notebookName(context.getNotebookName())
+                    .datasetName(context.getDatasetMetadata().getDatasetName())
+                    .state(state())
+                    .score(score)
+                    .metrics(metrics)
+                    .build();
+        }
+    }
+}
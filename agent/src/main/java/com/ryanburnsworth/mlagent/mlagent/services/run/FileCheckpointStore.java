@@ -0,0 +1,98 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.RunCheckpoint;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the latest checkpoint of every run as {@code <runId>.json}, replaced atomically so a crash
+ * mid-write leaves the previous checkpoint intact. A checkpoint's age is the file's modification time,
+ * which every saved step refreshes.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private static final Logger log = LoggerFactory.getLogger(FileCheckpointStore.class);
+    // run ids arrive from request paths, so never let one escape the directory
+    private static final Pattern RUN_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private final Path directory;
+
+    public FileCheckpointStore(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void save(RunCheckpoint checkpoint) {
+        if (!isValid(checkpoint.getRunId())) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(directory, checkpoint.getRunId(), ".tmp");
+            Files.writeString(tmp, Util.toJson(checkpoint), StandardCharsets.UTF_8);
+            Files.move(tmp, file(checkpoint.getRunId()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write checkpoint for run {}: {}", checkpoint.getRunId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<RunCheckpoint> load(String runId) {
+        if (!isValid(runId) || !Files.exists(file(runId))) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Util.fromJson(Files.readString(file(runId), StandardCharsets.UTF_8), RunCheckpoint.class));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read checkpoint for run {}: {}", runId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(String runId) {
+        if (!isValid(runId)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file(runId));
+        } catch (IOException e) {
+            log.warn("Unable to delete checkpoint for run {}: {}", runId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteOlderThan(Instant cutoff) {
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path checkpoint : checkpoints) {
+                if (Files.getLastModifiedTime(checkpoint).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(checkpoint);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to delete expired checkpoints: {}", e.getMessage());
+        }
+    }
+
+    private Path file(String runId) {
+        return directory.resolve(runId + ".json");
+    }
+
+    private static boolean isValid(String runId) {
+        return runId != null && RUN_ID.matcher(runId).matches();
+    }
+}
@@ -0,0 +1,23 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Optional;
+
+public interface RunService {
+    RunStatus startRun(String notebookName, String searchTerm, boolean bypassLlmCache, String kernelPool,
+                       Integer sampleRows);
+
+    FanOutStatus startFanOut(String notebookName, String searchTerm, int candidates, boolean bypassLlmCache,
+                             String kernelPool, Integer sampleRows);
+
+    Optional<FanOutStatus> getFanOut(String fanOutId);
+
+    Optional<RunStatus> getRun(String runId);
+
+    Optional<RunStatus> resumeRun(String runId);
+
+    Optional<SseEmitter> subscribe(String runId);
+}
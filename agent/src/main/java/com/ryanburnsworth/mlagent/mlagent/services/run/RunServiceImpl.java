@@ -0,0 +1,301 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunCheckpoint;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEvent;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEventType;
+import com.ryanburnsworth.mlagent.mlagent.models.RunState;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.agent.AgentService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class RunServiceImpl implements RunService {
+    private static final Logger log = LoggerFactory.getLogger(RunServiceImpl.class);
+    private final AgentService agentService;
+    private final MLService mlService;
+    private final CheckpointStore checkpointStore;
+    private final AsyncTaskExecutor agentRunExecutor;
+    private final Map<String, AgentRun> runs = new ConcurrentHashMap<>();
+    private final Map<String, FanOutRun> fanOuts = new ConcurrentHashMap<>();
+    private final AtomicReference<Instant> lastCheckpointSweep = new AtomicReference<>(Instant.MIN);
+
+    @Value("${agent.run.events.timeout-ms:1800000}")
+    private long eventStreamTimeoutMs;
+
+    @Value("${agent.run.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${agent.checkpoint.retention-hours:168}")
+    private long checkpointRetentionHours = 168;
+
+    @Value("${agent.checkpoint.sweep-interval-minutes:60}")
+    private long checkpointSweepIntervalMinutes = 60;
+
+    @Value("${agent.fanout.max-candidates:5}")
+    private int maxFanOutCandidates = 5;
+
+    @Value("${agent.fanout.max-parallel:2}")
+    private int maxFanOutParallel = 2;
+
+    @Value("${agent.fanout.rank-metric:score}")
+    private String fanOutRankMetric = "score";
+
+    // sample size for runs that do not pick one; 0 validates every step on the full data
+    @Value("${agent.validation.sample-rows:0}")
+    private int defaultSampleRows = 0;
+
+    public RunServiceImpl(AgentService agentService, MLService mlService, CheckpointStore checkpointStore,
+                          @Qualifier("agentRunExecutor") AsyncTaskExecutor agentRunExecutor) {
+        this.agentService = agentService;
+        this.mlService = mlService;
+        this.checkpointStore = checkpointStore;
+        this.agentRunExecutor = agentRunExecutor;
+    }
+
+    @Override
+    public RunStatus startRun(String notebookName, String searchTerm, boolean bypassLlmCache, String kernelPool,
+                              Integer sampleRows) {
+        evictFinishedRuns();
+
+        AgentRunContext context = new AgentRunContext(notebookName, searchTerm);
+        context.setBypassLlmCache(bypassLlmCache);
+        context.setKernelPool(kernelPool);
+        context.setSampleRows(sampleRows(sampleRows));
+        RunStatus status = launchRun(context).toStatus();
+        log.info("startRun: Queued run {} for notebook {}", context.getRunId(), notebookName);
+        return status;
+    }
+
+    @Override
+    public Optional<RunStatus> resumeRun(String runId) {
+        Optional<RunCheckpoint> stored = checkpointStore.load(runId);
+
+        // checking the state and tracking the resumed run happen in one step, so two concurrent resumes
+        // of the same failed run cannot both launch it
+        AtomicReference<AgentRun> previous = new AtomicReference<>();
+        AgentRun run = runs.compute(runId, (id, current) -> {
+            if (current != null && current.getState() != RunState.FAILED) {
+                throw new IllegalStateException("Run " + runId + " is " + current.getState() + " and cannot be resumed");
+            }
+            previous.set(current);
+            // the stored checkpoint survives restarts; the in-memory one covers a disabled store
+            return stored.or(() -> Optional.ofNullable(current).map(tracked -> tracked.getContext().getLastCheckpoint()))
+                    .map(checkpoint -> new AgentRun(AgentRunContext.fromCheckpoint(checkpoint)))
+                    .orElse(current);
+        });
+        if (run == null || run == previous.get()) {
+            return Optional.empty();
+        }
+
+        submit(run, previous.get());
+        // a fan-out candidate is ranked again once its resumed run finishes
+        for (FanOutRun fanOut : fanOuts.values()) {
+            if (fanOut.resumed(run)) {
+                run.whenFinished().thenRun(() -> candidateFinished(fanOut));
+                break;
+            }
+        }
+        log.info("resumeRun: Queued run {} after step {}", runId, run.getContext().getLastCompletedStep());
+        return Optional.of(run.toStatus());
+    }
+
+    @Override
+    public FanOutStatus startFanOut(String notebookName, String searchTerm, int candidates, boolean bypassLlmCache,
+                                    String kernelPool, Integer sampleRows) {
+        evictFinishedRuns();
+
+        int count = Math.clamp(candidates, 1, Math.max(maxFanOutCandidates, 1));
+        FanOutRun fanOut = new FanOutRun(notebookName, searchTerm, fanOutRankMetric, maxFanOutParallel);
+        fanOuts.put(fanOut.getFanOutId(), fanOut);
+
+        // downloading every candidate dataset blocks, so it runs on the run executor like an orchestration
+        try {
+            agentRunExecutor.submitCompletable(() -> mlService.fetchDatasetCandidates(searchTerm, count))
+                    .whenComplete((datasets, error) -> launchCandidates(fanOut, datasets, error, bypassLlmCache, kernelPool,
+                            sampleRows(sampleRows)));
+        } catch (RuntimeException e) {
+            fanOuts.remove(fanOut.getFanOutId());
+            throw e;
+        }
+
+        log.info("startFanOut: Queued fan-out {} over {} candidate datasets for {}", fanOut.getFanOutId(), count, searchTerm);
+        return fanOut.toStatus();
+    }
+
+    @Override
+    public Optional<FanOutStatus> getFanOut(String fanOutId) {
+        return Optional.ofNullable(fanOuts.get(fanOutId)).map(FanOutRun::toStatus);
+    }
+
+    @Override
+    public Optional<RunStatus> getRun(String runId) {
+        return Optional.ofNullable(runs.get(runId)).map(AgentRun::toStatus);
+    }
+
+    @Override
+    public Optional<SseEmitter> subscribe(String runId) {
+        AgentRun run = runs.get(runId);
+        if (run == null) {
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = new SseEmitter(eventStreamTimeoutMs);
+        run.subscribe(emitter);
+        return Optional.of(emitter);
+    }
+
+    private void launchCandidates(FanOutRun fanOut, List<DatasetMetadata> datasets, Throwable error,
+                                  boolean bypassLlmCache, String kernelPool, int sampleRows) {
+        if (error != null || datasets == null || datasets.isEmpty()) {
+            log.error("Fan-out {} found no candidate datasets: {}", fanOut.getFanOutId(),
+                    error != null ? error.getMessage() : "empty result");
+            fanOut.fail("No candidate datasets could be downloaded");
+            return;
+        }
+
+        List<AgentRunContext> contexts = new ArrayList<>();
+        for (int i = 0; i < datasets.size(); i++) {
+            // every candidate gets its own notebook so the ML service keeps their kernels apart
+            AgentRunContext context = new AgentRunContext(fanOut.getNotebookName() + "-" + (i + 1), fanOut.getSearchTerm());
+            context.setDatasetMetadata(datasets.get(i));
+            context.setBypassLlmCache(bypassLlmCache);
+            context.setKernelPool(kernelPool);
+            context.setSampleRows(sampleRows);
+            contexts.add(context);
+        }
+        fanOut.addCandidates(contexts);
+        launchNextCandidates(fanOut);
+    }
+
+    private void launchNextCandidates(FanOutRun fanOut) {
+        for (AgentRunContext context = fanOut.claimNext(); context != null; context = fanOut.claimNext()) {
+            try {
+                AgentRun run = launchRun(context);
+                fanOut.launched(context, run);
+                run.whenFinished().thenRun(() -> candidateFinished(fanOut));
+            } catch (RuntimeException e) {
+                log.warn("Fan-out {} could not queue run {}: {}", fanOut.getFanOutId(), context.getRunId(), e.getMessage());
+                fanOut.rejected(context);
+                candidateFinished(fanOut);
+            }
+        }
+    }
+
+    private void candidateFinished(FanOutRun fanOut) {
+        if (!fanOut.candidateFinished()) {
+            launchNextCandidates(fanOut);
+            return;
+        }
+
+        Map<String, Map<String, Double>> metrics = new HashMap<>();
+        for (AgentRunContext context : fanOut.succeeded()) {
+            Map<String, Double> notebookMetrics = mlService.fetchNotebookMetrics(context.getNotebookName()).getMetrics();
+            metrics.put(context.getRunId(), notebookMetrics != null ? notebookMetrics : Map.of());
+        }
+        fanOut.rank(metrics);
+        log.info("Fan-out {} finished with winner {}", fanOut.getFanOutId(), fanOut.toStatus().getWinnerRunId());
+    }
+
+    private int sampleRows(Integer requested) {
+        return requested != null ? Math.max(requested, 0) : Math.max(defaultSampleRows, 0);
+    }
+
+    private AgentRun launchRun(AgentRunContext context) {
+        // persist the request itself so even a run that dies before its first step can be resumed
+        context.setLastCheckpoint(context.toCheckpoint());
+        AgentRun run = new AgentRun(context);
+        runs.put(context.getRunId(), run);
+        checkpointStore.save(context.getLastCheckpoint());
+        try {
+            submit(run, null);
+        } catch (RuntimeException e) {
+            checkpointStore.delete(context.getRunId());
+            throw e;
+        }
+        return run;
+    }
+
+    private void submit(AgentRun run, AgentRun previous) {
+        AgentRunContext context = run.getContext();
+        context.setEventListener(run::publish);
+        context.setCheckpointListener(checkpointStore::save);
+
+        try {
+            agentService.submitOrchestration(context).whenComplete((result, error) -> finishRun(run, result, error));
+        } catch (RuntimeException e) {
+            // executor saturated: nothing was queued so restore whatever was tracked before
+            if (previous != null) {
+                runs.replace(context.getRunId(), run, previous);
+            } else {
+                runs.remove(context.getRunId(), run);
+            }
+            throw e;
+        }
+    }
+
+    private void finishRun(AgentRun run, ResponseStatus result, Throwable error) {
+        if (error != null) {
+            log.error("Run {} failed: {}", run.getContext().getRunId(), error.getMessage());
+            result = ResponseStatus.builder()
+                    .status("Failure")
+                    .message("Run failed unexpectedly")
+                    .details(error.getMessage())
+                    .build();
+        }
+
+        RunState state = result != null && "success".equals(result.getStatus()) ? RunState.SUCCEEDED : RunState.FAILED;
+        RunEvent finalEvent = RunEvent.builder()
+                .runId(run.getContext().getRunId())
+                .type(RunEventType.RUN_COMPLETED)
+                .step(run.getContext().getCurrentStep())
+                .message(state.name())
+                .timestamp(Instant.now())
+                .build();
+        run.complete(state, result, finalEvent);
+
+        // only failed runs can be resumed, so a finished one no longer needs its checkpoint
+        if (state == RunState.SUCCEEDED) {
+            checkpointStore.delete(run.getContext().getRunId());
+        }
+    }
+
+    private void evictFinishedRuns() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        runs.values().removeIf(run -> run.isFinishedBefore(cutoff));
+        fanOuts.values().removeIf(fanOut -> fanOut.isFinishedBefore(cutoff));
+        sweepExpiredCheckpoints();
+    }
+
+    // Succeeded runs delete their checkpoint, failed ones keep it to be resumed until it expires. Listing
+    // the checkpoint directory is too slow for every /start, so only one caller per interval does it.
+    private void sweepExpiredCheckpoints() {
+        Instant now = Instant.now();
+        Instant last = lastCheckpointSweep.get();
+        if (last.plus(Duration.ofMinutes(checkpointSweepIntervalMinutes)).isAfter(now)
+                || !lastCheckpointSweep.compareAndSet(last, now)) {
+            return;
+        }
+        checkpointStore.deleteOlderThan(now.minus(Duration.ofHours(checkpointRetentionHours)));
+    }
+}
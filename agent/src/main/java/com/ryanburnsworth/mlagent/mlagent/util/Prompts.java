@@ -13,6 +13,10 @@ public class Prompts {
                     Description: {description}
                     Dataset files: {datasets}
             
+                    Schema profiled from the dataset files (dtype as pandas.read_csv reads it, share of missing values,
+                    approximate distinct values, and the range, mean and quartiles of numeric columns):
+                    {schema}
+            
                     1. Load the training and testing datasets from the Dataset files in the dataset metadata. 
                         If only one dataset, use only training. Use the exact filenames given in Dataset files.
                     2. Display the first few rows of the training set using head()
@@ -37,11 +41,14 @@ public class Prompts {
                       - Sample of the data
                       - Output must be in a valid ipynb format.
                       - Do not add additional text or wrap the code in ```markdown or json ```
+                    Use the column names and dtypes exactly as they appear in the schema; do not guess columns.
                     Store the loaded training dataset in a variable called 'df' for the next step.
                     Store the loaded validation dataset, if any, in a variable called 'test_df' for the next step.
                     GPU must be used automatically if available for any future ML tasks.
             """);
 
+    public static final String DATASET_SCHEMA_UNAVAILABLE = "Not available; inspect the files for their columns and dtypes.";
+
     public static final PromptTemplate DATA_PREPROCESSING_PROMPT = new PromptTemplate("""
                     You are generating one or more **Jupyter notebook cells** that will be **appended to an existing notebook.**
                     Do NOT generate a full `.ipynb` file. Only return valid **cell objects** as JSON.
@@ -53,6 +60,9 @@ public class Prompts {
                     ## Previous Agent Memory (use this to avoid repeating previous work):
                     {memory}
             
+                    ## Schema of the raw dataset files (use it to pick imputation, encoding and scaling per column):
+                    {schema}
+            
                     ## Preprocessing Steps to Implement:
                     1. Detect and handle missing values (drop or impute depending on percentage of nulls).
                     2. Encode categorical columns (use LabelEncoder for binary, OneHotEncoder or pandas.get_dummies for multi-category).
@@ -125,6 +135,15 @@ public class Prompts {
                 Return ONLY the JSON array of notebook cell objects as the final output. Do not return a bare list.
             """);
 
+    public static final String MODEL_TRAINING_BRANCH_HINT = """
+
+                ## Training Branch:
+                This notebook is one of several branches trained side by side, each with a different model family.
+                - Only train models from this family: %s.
+                - Hold out a validation split of `X_train` if `X_test` or `y_test` does not exist.
+                - As the last line of output, print `METRICS: ` followed by a JSON object of the validation metrics that includes a "score" key (higher is better, e.g. accuracy or R2), so the branches can be compared.
+            """;
+
     public static final PromptTemplate MODEL_EVALUATION_PROMPT = new PromptTemplate("""
                 You are generating one or more **Jupyter notebook cells** that will be **appended to an existing notebook.**
                 Do NOT generate a full `.ipynb` file. Only return valid **cell objects** as JSON.
@@ -147,6 +166,9 @@ public class Prompts {
                     - Precision-Recall Curve.
                 3. If the model has attribute `feature_importances_`, display a sorted bar chart of feature importance.
                 4. Include clear titles and axis labels.
+                5. End with a code cell that prints exactly one line starting with `METRICS: ` followed by a single-line JSON object of the evaluation metrics, e.g. `print("METRICS: " + json.dumps(metrics))`.
+                   - Include a `"score"` key where higher is better: accuracy for classification, R² for regression.
+                   - Add any other metrics you computed (precision, recall, f1, auc, rmse, ...) as plain numbers.
             
                 ## Output Format (Strict Requirement):
                 Return **only a JSON array** of notebook cells. Do NOT include any top-level "cells" key or notebook metadata. The root must be an array.
@@ -207,6 +229,44 @@ public class Prompts {
                 {agent_output}
             """);
 
+    public static final PromptTemplate ML_CELL_CRITIC_PROMPT = new PromptTemplate("""
+                You are an expert AI critic and code reviewer specializing in data science notebooks and machine learning pipelines.
+                You will evaluate a single notebook code cell generated by another AI agent.
+
+                ## Goals:
+                Evaluate whether the cell is suitable to move forward in a machine learning pipeline, focusing on:
+                    - Coding mistakes (syntax errors, undefined variables, wrong function calls, library misuse)
+                    - Logical mistakes (incorrect preprocessing, wrong model usage, poor train test split)
+                    - Failure to correctly identify or use the target variable
+                    - Missing imports or dependencies
+                    - Lack of reproducibility (hardcoded paths, missing variables)
+
+                Variables, imports and data defined in the preceding cells are available to this cell.
+                Only evaluate the cell itself; do not reject it for problems in the preceding cells.
+
+                ## Output Format (STRICT):
+
+                Respond with a JSON object:
+                    - "status": "approved" or "rejected"
+                    - "feedback":
+                        - If approved: give a brief confirmation like "Looks valid. Proceed."
+                        - If rejected: provide specific corrections for this cell. Do not rewrite the cell. Just critique it.
+
+                Example rejected response:
+                {{
+                  "status": "rejected",
+                  "feedback": "'label' column referenced but not created in this or an earlier cell. Extract y before splitting."
+                }}
+
+                ## Preceding Cells (context only):
+
+                {preceding_code}
+
+                ## Cell to Evaluate:
+
+                {cell}
+            """);
+
     public static final PromptTemplate CODE_FIXER_PROMPT = new PromptTemplate("""
                 You are an expert code refactoring agent specializing in fixing machine learning and data science code.
                 Your task is to receive code that failed review, read the critic's feedback, and fix the code accordingly.
@@ -232,7 +292,7 @@ public class Prompts {
                 Output ONLY the corrected notebook cells in the exact Jupyter cell format as provided.
                 The format must be a JSON array with cell objects containing: cell_type, metadata, source, outputs, and execution_count.
                 Example structure:
-                [{{cell_type=markdown, metadata={{}}, source=[...markdown lines...], outputs=[], execution_count=null}}, {{cell_type=code, metadata={{}}, source=[...code lines...], outputs=[], execution_count=null}}]
+                [{{"cell_type": "markdown", "metadata": {{}}, "source": [...markdown lines...], "outputs": [], "execution_count": null}}, {{"cell_type": "code", "metadata": {{}}, "source": [...code lines...], "outputs": [], "execution_count": null}}]
             
                 Important:
                 - Preserve the exact cell structure and formatting
@@ -251,6 +311,10 @@ public class Prompts {
                 ## Fixed Code:
             """);
 
+    // appended to the critic feedback of every parallel candidate after the first so candidates differ
+    public static final String CODE_FIXER_VARIANT_HINT =
+            "\nThis is alternative fix #%d. Address the feedback with a different approach than the most obvious fix.";
+
     public static final PromptTemplate ERROR_HANDLING_PROMPT = new PromptTemplate("""
                 There was an error in the code you provided. Fix the errors provided and output a valid output.
             
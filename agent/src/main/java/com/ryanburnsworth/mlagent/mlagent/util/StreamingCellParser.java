@@ -0,0 +1,103 @@
+package com.ryanburnsworth.mlagent.mlagent.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally parses a JSON array of notebook cells as it is streamed from the LLM. Chunks are fed to a
+ * non-blocking Jackson parser and every cell object is returned as soon as its closing brace arrives, so
+ * callers never hold more than the cell currently being generated.
+ * <p>
+ * Instances keep parser state and must be used for a single response only.
+ */
+public class StreamingCellParser {
+    private static final TypeReference<Map<String, Object>> CELL_TYPE = new TypeReference<>() {
+    };
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private int depth = 0;
+    private TokenBuffer cellBuffer;
+    private String pendingHighSurrogate = "";
+
+    public StreamingCellParser() {
+        try {
+            this.parser = Util.MAPPER.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    public List<Map<String, Object>> feed(String chunk) {
+        // a surrogate pair split across two chunks must be encoded as one code point
+        String text = pendingHighSurrogate + chunk;
+        pendingHighSurrogate = "";
+        if (!text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            pendingHighSurrogate = text.substring(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            return drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<Map<String, Object>> finish() {
+        feeder.endOfInput();
+        try {
+            List<Map<String, Object>> cells = drain();
+            if (depth != 0) {
+                throw new IOException("LLM response ended inside an unterminated JSON array");
+            }
+            return cells;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Map<String, Object>> drain() throws IOException {
+        List<Map<String, Object>> cells = new ArrayList<>();
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (depth == 0 && token != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of notebook cells but got " + token);
+            }
+
+            // a cell starts at depth 1, i.e. directly inside the root array
+            if (depth == 1 && token == JsonToken.START_OBJECT) {
+                cellBuffer = new TokenBuffer(Util.MAPPER, false);
+            }
+            if (cellBuffer != null) {
+                cellBuffer.copyCurrentEvent(parser);
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+                if (depth == 1 && cellBuffer != null) {
+                    cells.add(Util.MAPPER.readValue(cellBuffer.asParser(), CELL_TYPE));
+                    cellBuffer = null;
+                }
+            }
+        }
+        return cells;
+    }
+}
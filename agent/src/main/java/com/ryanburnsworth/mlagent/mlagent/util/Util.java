@@ -1,35 +1,72 @@
 package com.ryanburnsworth.mlagent.mlagent.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.CriticResult;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class Util {
-    public static Map<String, Object> getJsonFromContent(String value) {
+    // ObjectMapper, readers and writers are thread-safe once configured, so every call shares them.
+    // Jackson's default keeps its parser and generator buffers per thread, which a virtual thread never
+    // reuses, so they come from a small shared pool instead.
+    private static final int BUFFER_POOL_SIZE = 64;
+    static final ObjectMapper MAPPER = new ObjectMapper(JsonFactory.builder()
+            .recyclerPool(JsonRecyclerPools.newBoundedPool(BUFFER_POOL_SIZE))
+            .build());
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {
+    });
+    private static final ObjectReader LIST_READER = MAPPER.readerFor(new TypeReference<List<Map<String, Object>>>() {
+    });
+    private static final ObjectReader CRITIC_READER = MAPPER.readerFor(CriticResult.class);
+    private static final ObjectWriter WRITER = MAPPER.writer();
+
+    // quotes, keys and separators JSON adds around each memory
+    private static final int MEMORY_JSON_OVERHEAD_CHARS = 40;
 
-        ObjectMapper mapper = new ObjectMapper();
+    public static Map<String, Object> getJsonFromContent(String value) {
         try {
-            return mapper.readValue(value, Map.class);
+            return MAP_READER.readValue(value);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
 
     public static List<Map<String, Object>> getJsonFromListContent(String value) {
-        ObjectMapper mapper = new ObjectMapper();
+        try {
+            return LIST_READER.readValue(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static CriticResult getCriticResultFromContent(String value) throws JsonProcessingException {
+        return CRITIC_READER.readValue(value);
+    }
+
+    public static String toJson(Object value) {
+        try {
+            return WRITER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    public static <T> T fromJson(String value, Class<T> type) {
         try {
-            return mapper.readValue(
-                    value,
-                    new TypeReference<>() {
-                    }
-            );
+            return MAPPER.readValue(value, type);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
@@ -43,20 +80,40 @@ public class Util {
     }
 
     public static String formatAgentMemories(List<AgentMemory> memories) {
-        return memories.stream()
-                .map(m -> String.format(
-                        "{ \"userInput\": \"%s\", \"agentOutput\": \"%s\" }",
-                        escapeForJson(m.getUserInput()),
-                        escapeForJson(m.getAgentOutput())
-                ))
-                .collect(Collectors.joining(", ", "[", "]"));
-    }
-
-    private static String escapeForJson(String text) {
-        if (text == null) return "";
-        return text.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "");
+        // each call sizes its own buffer: runs execute on virtual threads, so a per-thread buffer would
+        // be allocated for every run anyway and then grown several times
+        StringWriter buffer = new StringWriter(estimateJsonLength(memories));
+
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer)) {
+            generator.writeStartArray();
+            for (AgentMemory memory : memories) {
+                generator.writeStartObject();
+                generator.writeStringField("userInput", nullToEmpty(memory.getUserInput()));
+                generator.writeStringField("agentOutput", nullToEmpty(memory.getAgentOutput()));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    // the raw text plus an eighth for escaping, which is mostly the quotes and newlines of generated code
+    private static int estimateJsonLength(List<AgentMemory> memories) {
+        long chars = 2;
+        for (AgentMemory memory : memories) {
+            chars += MEMORY_JSON_OVERHEAD_CHARS + length(memory.getUserInput()) + length(memory.getAgentOutput());
+        }
+        return (int) Math.min(chars + chars / 8, Integer.MAX_VALUE - 8);
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    private static String nullToEmpty(String text) {
+        return text == null ? "" : text;
     }
 }
@@ -0,0 +1,159 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.config.ExecutorConfig;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.dataset.DatasetProfiler;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmResponseCache;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmRouter;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmScheduler;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmServiceImpl;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.MemoryCompactor;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Compares the platform and virtual thread run executors with stubbed LLM and ML service latencies.
+ * It depends on wall-clock timing, so it is tagged "load" and only runs with {@code mvn -Pload test}.
+ */
+@Tag("load")
+class AgentPipelineLoadTest {
+    private static final int RUNS = 128;
+    private static final long LLM_LATENCY_MS = 20;
+    private static final long ML_SERVICE_LATENCY_MS = 30;
+
+    @Test
+    void virtualThreadsOutperformPlatformPoolUnderConcurrentRuns() {
+        ThreadPoolTaskExecutor platformExecutor = ExecutorConfig.platformRunExecutor(16, RUNS);
+        LoadResult platform = runLoad(platformExecutor);
+        platformExecutor.shutdown();
+
+        LoadResult virtual = runLoad(ExecutorConfig.virtualRunExecutor(10_000));
+
+        assertThat(virtual.throughput())
+                .as("virtual %.1f runs/s, platform %.1f runs/s", virtual.throughput(), platform.throughput())
+                .isGreaterThan(platform.throughput());
+        assertThat(virtual.p99Ms())
+                .as("virtual p99 %d ms, platform p99 %d ms", virtual.p99Ms(), platform.p99Ms())
+                .isLessThan(platform.p99Ms());
+    }
+
+    private LoadResult runLoad(AsyncTaskExecutor executor) {
+        AgentMetrics metrics = new AgentMetrics(new SimpleMeterRegistry(), Tracer.NOOP);
+        LlmScheduler scheduler = new LlmScheduler(metrics, 1_000_000, 1_000_000_000, 1500, 5, 1000, 60_000);
+        LlmRouter router = new LlmRouter(metrics, new MockEnvironment(), "", "", 120_000, 0.25, 20, 5, 300_000);
+        LlmServiceImpl llmService = new LlmServiceImpl(stubChatClientBuilder(), LlmResponseCache.disabled(), metrics,
+                scheduler, router);
+        AgentServiceImpl agentService = new AgentServiceImpl(llmService, new SlowMLService(), executor,
+                ExecutorConfig.criticCandidateExecutor(), new MemoryCompactor(8000, 2, 600), ErrorFixStore.disabled(), DatasetProfiler.disabled(),
+                metrics);
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<ResponseStatus>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            long submittedAt = System.nanoTime();
+            futures.add(agentService.submitOrchestration(new AgentRunContext("notebook-" + i, "titanic"))
+                    .whenComplete((status, error) -> latencies.add((System.nanoTime() - submittedAt) / 1_000_000)));
+        }
+        futures.forEach(future -> assertThat(future.join().getStatus()).isEqualTo("success"));
+        long elapsedNanos = System.nanoTime() - start;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+        return new LoadResult(RUNS / (elapsedNanos / 1e9), p99);
+    }
+
+    private ChatClient.Builder stubChatClientBuilder() {
+        ThreadLocal<String> lastPrompt = new ThreadLocal<>();
+
+        ChatClient.CallResponseSpec callSpec = mock(ChatClient.CallResponseSpec.class, withSettings().stubOnly());
+        when(callSpec.chatResponse()).thenAnswer(invocation -> {
+            Thread.sleep(LLM_LATENCY_MS);
+            String prompt = lastPrompt.get().strip();
+            String content;
+            if (prompt.startsWith("You are an expert AI critic")) {
+                content = StubLlmService.APPROVED_JSON;
+            } else {
+                content = prompt.startsWith("Create a Jupyter notebook cell")
+                        ? StubLlmService.NOTEBOOK_JSON
+                        : StubLlmService.cells("print(df.shape)");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(content))));
+        });
+
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class, withSettings().stubOnly());
+        when(requestSpec.options(any(ChatOptions.class))).thenReturn(requestSpec);
+        when(requestSpec.call()).thenReturn(callSpec);
+
+        ChatClient chatClient = mock(ChatClient.class, withSettings().stubOnly());
+        when(chatClient.prompt(anyString())).thenAnswer(invocation -> {
+            lastPrompt.set(invocation.getArgument(0));
+            return requestSpec;
+        });
+
+        ChatClient.Builder builder = mock(ChatClient.Builder.class, withSettings().stubOnly());
+        when(builder.build()).thenReturn(chatClient);
+        return builder;
+    }
+
+    private static class SlowMLService extends StubMLService {
+        @Override
+        public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            return execute();
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            return execute();
+        }
+
+        @Override
+        public ResponseStatus validateNotebook(String notebookName, String kernelPool) {
+            return execute();
+        }
+
+        private ResponseStatus execute() {
+            try {
+                Thread.sleep(ML_SERVICE_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return success();
+        }
+    }
+
+    private record LoadResult(double throughput, long p99Ms) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.config.ExecutorConfig;
+import com.ryanburnsworth.mlagent.mlagent.services.dataset.DatasetProfiler;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.memory.MemoryCompactor;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+
+/**
+ * Builds the agent service the way the pipeline tests run it: virtual thread runs, no known-fix store and
+ * no dataset profiling unless given.
+ */
+final class AgentServices {
+
+    private AgentServices() {
+    }
+
+    static AgentServiceImpl create(LlmService llm, MLService ml) {
+        return create(llm, ml, ErrorFixStore.disabled(), new SimpleMeterRegistry());
+    }
+
+    static AgentServiceImpl create(LlmService llm, MLService ml, ErrorFixStore errorFixStore, MeterRegistry registry) {
+        return new AgentServiceImpl(llm, ml, ExecutorConfig.virtualRunExecutor(16),
+                ExecutorConfig.criticCandidateExecutor(), new MemoryCompactor(8000, 2, 600), errorFixStore,
+                DatasetProfiler.disabled(), new AgentMetrics(registry, Tracer.NOOP));
+    }
+}
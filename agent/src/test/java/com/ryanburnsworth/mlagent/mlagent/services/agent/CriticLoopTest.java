@@ -0,0 +1,230 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEvent;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEventType;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService.cells;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the critic/fixer loop with a scripted LLM to check that it stays bounded.
+ */
+class CriticLoopTest {
+    private static final String THREE_CELLS_JSON = """
+            [{"cell_type": "code", "metadata": {}, "source": ["X = df.drop(columns=['Survived'])\\n"], "outputs": [], "execution_count": null},
+             {"cell_type": "markdown", "metadata": {}, "source": ["## Split\\n"], "outputs": [], "execution_count": null},
+             {"cell_type": "code", "metadata": {}, "source": ["y = df['Survived']\\n"], "outputs": [], "execution_count": null},
+             {"cell_type": "code", "metadata": {}, "source": ["bad_cell()\\n"], "outputs": [], "execution_count": null}]
+            """;
+
+    @Test
+    void stubbornCriticStopsAfterMaxRounds() {
+        ScriptedLlmService llm = new ScriptedLlmService(prompt -> false);
+        RecordingMLService ml = new RecordingMLService();
+        AgentServiceImpl agentService = AgentServices.create(llm, ml);
+        ReflectionTestUtils.setField(agentService, "criticMaxRounds", 3);
+
+        List<RunEvent> events = new CopyOnWriteArrayList<>();
+        AgentRunContext context = new AgentRunContext("critic-test", "titanic");
+        context.setEventListener(events::add);
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(context);
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        // four steps, each with three reviews and two fixes in between
+        assertThat(llm.criticCalls).hasValue(12);
+        assertThat(llm.fixerCalls).hasValue(8);
+        assertThat(events).filteredOn(event -> event.getType() == RunEventType.CRITIC_UNRESOLVED).hasSize(4);
+        assertThat(ml.payloads).hasSize(4);
+    }
+
+    @Test
+    void parallelCandidatesKeepTheApprovedFix() {
+        // only the third candidate's code satisfies the critic
+        ScriptedLlmService llm = new ScriptedLlmService(prompt -> prompt.contains("fixed_by_candidate_3"));
+        RecordingMLService ml = new RecordingMLService();
+        AgentServiceImpl agentService = AgentServices.create(llm, ml);
+        ReflectionTestUtils.setField(agentService, "criticParallelCandidates", 3);
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(new AgentRunContext("critic-test", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(ml.payloads).hasSize(4)
+                .allSatisfy(payload -> assertThat(Util.toJson(payload)).contains("fixed_by_candidate_3"));
+    }
+
+    @Test
+    void cellModeOnlySendsRejectedCellsToTheFixer() {
+        // the critic only objects to the cell under evaluation when it calls bad_cell()
+        ScriptedLlmService llm = new ScriptedLlmService(THREE_CELLS_JSON,
+                prompt -> !prompt.contains("## Cell to Evaluate:")
+                        || !prompt.substring(prompt.indexOf("## Cell to Evaluate:")).contains("bad_cell"));
+        RecordingMLService ml = new RecordingMLService();
+        AgentServiceImpl agentService = AgentServices.create(llm, ml);
+        ReflectionTestUtils.setField(agentService, "criticMode", "cell");
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(new AgentRunContext("critic-test", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        // one review for the notebook, then per updater step three code cells plus one re-review of the fix
+        assertThat(llm.criticCalls).hasValue(1 + 3 * 4);
+        assertThat(llm.fixerCalls).hasValue(3);
+        assertThat(ml.payloads.subList(1, 4)).allSatisfy(payload -> {
+            List<Map<String, Object>> cells = (List<Map<String, Object>>) payload;
+            assertThat(cells).hasSize(4);
+            assertThat(Util.toJson(cells.get(0))).contains("X = df.drop");
+            assertThat(cells.get(1).get("cell_type")).isEqualTo("markdown");
+            assertThat(Util.toJson(cells.get(2))).contains("y = df['Survived']");
+            assertThat(Util.toJson(cells.get(3))).contains("fixed_by_candidate_1").doesNotContain("bad_cell");
+        });
+    }
+
+    @Test
+    void cellModeStepIsRejectedIfAnyCellStaysRejected() {
+        // bad_cell is never fixed, and the approved cells only finish their reviews after it gave up
+        ScriptedLlmService llm = new ScriptedLlmService(THREE_CELLS_JSON, prompt -> {
+            if (!prompt.contains("## Cell to Evaluate:")) {
+                return true;
+            }
+            String cell = prompt.substring(prompt.indexOf("## Cell to Evaluate:"));
+            if (cell.contains("bad_cell") || cell.contains("fixed_by_candidate")) {
+                return false;
+            }
+            sleep(200);
+            return true;
+        });
+        AgentServiceImpl agentService = AgentServices.create(llm, new RecordingMLService());
+        ReflectionTestUtils.setField(agentService, "criticMode", "cell");
+        ReflectionTestUtils.setField(agentService, "criticMaxRounds", 2);
+        AgentRunContext context = new AgentRunContext("critic-test", "titanic");
+
+        agentService.machineLearningOrchestrator(context);
+
+        assertThat(context.getCriticResults()).containsKeys(AgentStep.DATA_PREPROCESSING, AgentStep.MODEL_TRAINING);
+        context.getCriticResults().forEach((step, verdict) -> {
+            if (step != AgentStep.DATA_LOADING) {
+                assertThat(verdict.getStatus()).as(step.name()).isEqualTo("rejected");
+                assertThat(verdict.getFeedback()).isEqualTo("Target variable not defined.");
+            }
+        });
+    }
+
+    @Test
+    void streamedCellsAreReviewedWhileTheLlmIsStillGenerating() {
+        CountDownLatch firstCellReviewed = new CountDownLatch(1);
+        List<Boolean> reviewedBeforeLastCell = new CopyOnWriteArrayList<>();
+        ScriptedLlmService llm = new ScriptedLlmService(THREE_CELLS_JSON, prompt -> {
+            if (prompt.contains("## Cell to Evaluate:")
+                    && prompt.substring(prompt.indexOf("## Cell to Evaluate:")).contains("X = df.drop")) {
+                firstCellReviewed.countDown();
+            }
+            return true;
+        }) {
+            // the last cell only arrives once the critic has seen the first one, or after the wait gives up
+            @Override
+            public Flux<String> stream(AgentRunContext context, LlmRole role, String prompt) {
+                String output = call(context, role, prompt);
+                int lastCell = output.indexOf("bad_cell");
+                return Flux.just(output.substring(0, lastCell)).concatWith(Mono.fromCallable(() -> {
+                    reviewedBeforeLastCell.add(firstCellReviewed.await(10, TimeUnit.SECONDS));
+                    return output.substring(lastCell);
+                }));
+            }
+        };
+        RecordingMLService ml = new RecordingMLService();
+        AgentServiceImpl agentService = AgentServices.create(llm, ml);
+        ReflectionTestUtils.setField(agentService, "criticMode", "cell");
+        ReflectionTestUtils.setField(agentService, "streamingEnabled", true);
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(new AgentRunContext("critic-test", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(reviewedBeforeLastCell).hasSize(3).first().isEqualTo(true);
+        assertThat(llm.criticCalls).hasValue(1 + 3 * 3);
+        assertThat(ml.payloads.subList(1, 4)).allSatisfy(payload -> assertThat((List<?>) payload).hasSize(4));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ScriptedLlmService extends StubLlmService {
+        private final String updaterOutput;
+        private final Predicate<String> approves;
+        private final AtomicInteger criticCalls = new AtomicInteger();
+        private final AtomicInteger fixerCalls = new AtomicInteger();
+
+        ScriptedLlmService(Predicate<String> approves) {
+            this(cells("print(df.shape)"), approves);
+        }
+
+        ScriptedLlmService(String updaterOutput, Predicate<String> approves) {
+            this.updaterOutput = updaterOutput;
+            this.approves = approves;
+        }
+
+        @Override
+        public String call(AgentRunContext context, LlmRole role, String prompt) {
+            return switch (role) {
+                case NOTEBOOK_UPDATER, ERROR_HANDLER -> updaterOutput;
+                case ML_CRITIC -> {
+                    criticCalls.incrementAndGet();
+                    yield approves.test(prompt) ? APPROVED_JSON : REJECTED_JSON;
+                }
+                case CODE_FIXER -> {
+                    fixerCalls.incrementAndGet();
+                    int candidate = prompt.contains("alternative fix #") ? candidateOf(prompt) : 1;
+                    yield cells("fixed_by_candidate_" + candidate);
+                }
+                default -> super.call(context, role, prompt);
+            };
+        }
+
+        private static int candidateOf(String prompt) {
+            String marker = "alternative fix #";
+            int start = prompt.indexOf(marker) + marker.length();
+            return Character.getNumericValue(prompt.charAt(start));
+        }
+    }
+
+    private static class RecordingMLService extends StubMLService {
+        private final List<Object> payloads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            payloads.add(notebookContent);
+            return success();
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            payloads.add(notebookContent);
+            return success();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEvent;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEventType;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the pipeline with and without a sample size and checks which executions the ML service is asked
+ * to run on the sample and which on the full dataset.
+ */
+class FullDataValidationTest {
+    @Test
+    void sampledRunValidatesStepsOnTheSampleAndTheNotebookOnceOnTheFullData() {
+        RecordingMLService ml = new RecordingMLService("success");
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        context.setSampleRows(500);
+        List<RunEvent> events = new CopyOnWriteArrayList<>();
+        context.setEventListener(events::add);
+
+        ResponseStatus status = AgentServices.create(new StubLlmService(), ml).machineLearningOrchestrator(context);
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(ml.executions).containsExactly("sample:500", "sample:500", "sample:500", "sample:500", "full");
+        assertThat(events).extracting(RunEvent::getType).contains(RunEventType.FULL_DATA_STARTED);
+    }
+
+    @Test
+    void notebookFailingOnTheFullDataFailsTheRunAfterItsSteps() {
+        RecordingMLService ml = new RecordingMLService("Failure");
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        context.setSampleRows(500);
+
+        ResponseStatus status = AgentServices.create(new StubLlmService(), ml).machineLearningOrchestrator(context);
+
+        assertThat(status.getStatus()).isEqualTo("Failure");
+        assertThat(status.getMessage()).isEqualTo("Error executing notebook on the full dataset.");
+        // every step stays checkpointed, so resuming the run only repeats the full-data execution
+        assertThat(context.getLastCheckpoint().getCompletedStep()).isEqualTo(AgentStep.MODEL_EVALUATION);
+        assertThat(context.getLastCheckpoint().getSampleRows()).isEqualTo(500);
+
+        RecordingMLService fullData = new RecordingMLService("Failure");
+        AgentServices.create(new StubLlmService(), fullData).machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+        assertThat(fullData.executions).containsOnly("full").hasSize(4);
+    }
+
+    // accepts every step and answers the full-data execution with the given status
+    private static class RecordingMLService extends StubMLService {
+        private final String fullDataStatus;
+        private final List<String> executions = new CopyOnWriteArrayList<>();
+
+        RecordingMLService(String fullDataStatus) {
+            this.fullDataStatus = fullDataStatus;
+        }
+
+        @Override
+        public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            return execute(sampleRows);
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                             String kernelPool, int sampleRows) {
+            return execute(sampleRows);
+        }
+
+        @Override
+        public ResponseStatus validateNotebook(String notebookName, String kernelPool) {
+            executions.add("full");
+            return "success".equals(fullDataStatus)
+                    ? success()
+                    : status(fullDataStatus, "Error executing notebook on the full dataset.", "");
+        }
+
+        private ResponseStatus execute(int sampleRows) {
+            executions.add(sampleRows > 0 ? "sample:" + sampleRows : "full");
+            return success();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.FileErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails preprocessing the same way in consecutive runs and checks that only the first run asks the
+ * error handler's LLM, while later runs re-run the notebook with the fix it produced.
+ */
+class KnownErrorFixTest {
+    private static final String KEY_ERROR = """
+            KeyError                                  Traceback (most recent call last)
+            Cell In[%d], line 1
+            ----> 1 df['Deck'].str[0]
+            File /opt/venv/lib/python3.11/site-packages/pandas/core/indexes/base.py:3805, in Index.get_loc(self, key)
+            KeyError: 'Deck'
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void repeatedFailureIsFixedWithoutTheLlm() {
+        FixingLlmService llm = new FixingLlmService("repaired_v1()");
+        FailingMLService ml = new FailingMLService(Set.of("repaired_v1()"));
+
+        ResponseStatus first = agentService(llm, ml, new FileErrorFixStore(directory))
+                .machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+        // a restarted agent finds the fix on disk
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        ResponseStatus second = agentService(llm, ml, new FileErrorFixStore(directory)).machineLearningOrchestrator(context);
+
+        assertThat(first.getStatus()).isEqualTo("success");
+        assertThat(second.getStatus()).isEqualTo("success");
+        assertThat(llm.errorHandlerCalls).hasValue(1);
+        assertThat(context.getAgentMemories()).filteredOn(memory -> memory.getStep() == AgentStep.DATA_PREPROCESSING)
+                .extracting(memory -> memory.getAgentOutput())
+                .anyMatch(output -> output.contains("repaired_v1()"));
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(lookups("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void fixThatNoLongerValidatesIsReplaced() {
+        ErrorFixStore store = new FileErrorFixStore(directory);
+        agentService(new FixingLlmService("repaired_v1()"), new FailingMLService(Set.of("repaired_v1()")), store)
+                .machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+
+        FixingLlmService llm = new FixingLlmService("repaired_v2()");
+        FailingMLService ml = new FailingMLService(Set.of("repaired_v2()"));
+        ResponseStatus status = agentService(llm, ml, store).machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(llm.errorHandlerCalls).hasValue(1);
+        assertThat(lookups("stale")).isEqualTo(1);
+
+        // the LLM's validated fix took the stale one's place
+        agentService(llm, ml, store).machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+        assertThat(llm.errorHandlerCalls).hasValue(1);
+        assertThat(lookups("hit")).isEqualTo(1);
+    }
+
+    private double lookups(String outcome) {
+        return registry.find("agent.error_fix.lookup").tag("outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private AgentServiceImpl agentService(LlmService llm, MLService ml, ErrorFixStore store) {
+        return AgentServices.create(llm, ml, store, registry);
+    }
+
+    private static class FixingLlmService extends StubLlmService {
+        private final String fix;
+        private final AtomicInteger errorHandlerCalls = new AtomicInteger();
+
+        FixingLlmService(String fix) {
+            this.fix = fix;
+        }
+
+        @Override
+        protected String code(AgentRunContext context, LlmRole role, String prompt) {
+            if (role == LlmRole.ERROR_HANDLER) {
+                errorHandlerCalls.incrementAndGet();
+                return fix;
+            }
+            boolean preprocessing = role == LlmRole.NOTEBOOK_UPDATER
+                    && context.getCurrentStep() == AgentStep.DATA_PREPROCESSING;
+            return preprocessing ? "df['Deck'].str[0]" : super.code(context, role, prompt);
+        }
+    }
+
+    // fails every preprocessing payload except the accepted fixes, with a traceback that differs per run
+    private static class FailingMLService extends StubMLService {
+        private final Set<String> acceptedFixes;
+        private final AtomicInteger executionCount = new AtomicInteger();
+
+        FailingMLService(Set<String> acceptedFixes) {
+            this.acceptedFixes = acceptedFixes;
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                             String kernelPool, int sampleRows) {
+            String cells = Util.toJson(notebookContent);
+            int count = executionCount.incrementAndGet();
+            if (cells.contains("print(df.shape)") || acceptedFixes.stream().anyMatch(cells::contains)) {
+                return success();
+            }
+            return status("Failure", "Error updating notebook.", KEY_ERROR.formatted(count));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Answers the preprocessing step with output that is not a cell list and checks that the error handler
+ * is asked to repair that output, not the previous step's.
+ */
+class MalformedUpdaterOutputTest {
+    private static final String MALFORMED = "Here are the preprocessing cells: [{\"cell_type\": \"code\"";
+
+    @Test
+    void errorHandlerSeesTheMalformedOutput() {
+        assertErrorHandlerSeesTheMalformedOutput(false);
+    }
+
+    @Test
+    void errorHandlerSeesTheMalformedStreamedOutput() {
+        assertErrorHandlerSeesTheMalformedOutput(true);
+    }
+
+    private static void assertErrorHandlerSeesTheMalformedOutput(boolean streaming) {
+        MalformedLlmService llm = new MalformedLlmService();
+        AgentServiceImpl agentService = AgentServices.create(llm, new StubMLService());
+        ReflectionTestUtils.setField(agentService, "streamingEnabled", streaming);
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(llm.errorHandlerPrompts).singleElement().asString().contains(MALFORMED);
+    }
+
+    private static class MalformedLlmService extends StubLlmService {
+        private final List<String> errorHandlerPrompts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String call(AgentRunContext context, LlmRole role, String prompt) {
+            if (role == LlmRole.ERROR_HANDLER) {
+                errorHandlerPrompts.add(prompt);
+            } else if (role == LlmRole.NOTEBOOK_UPDATER && context.getCurrentStep() == AgentStep.DATA_PREPROCESSING) {
+                return MALFORMED;
+            }
+            return super.call(context, role, prompt);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.fix.ErrorFixStore;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.LlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the pipeline with speculation on and checks that each updater step is generated once while the
+ * step before it is validated, unless the error handler had to repair that step.
+ */
+class SpeculationTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void nextStepIsGeneratedWhileTheCurrentOneIsValidated() {
+        ValidatingMLService ml = new ValidatingMLService(0);
+        StepLlmService llm = new StepLlmService(ml);
+
+        ResponseStatus status = agentService(llm, ml).machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        // one updater request per step, and every one of them was sent before the previous step was accepted
+        assertThat(llm.updaterCalls).containsOnlyKeys(
+                AgentStep.DATA_PREPROCESSING, AgentStep.MODEL_TRAINING, AgentStep.MODEL_EVALUATION);
+        assertThat(llm.updaterCalls.values()).allSatisfy(calls -> assertThat(calls).hasValue(1));
+        assertThat(llm.sentDuringValidation).hasValue(3);
+        assertThat(ml.payloads).extracting(Util::toJson).satisfiesExactly(
+                notebook -> assertThat(notebook).contains("import pandas"),
+                cells -> assertThat(cells).contains("step_DATA_PREPROCESSING()"),
+                cells -> assertThat(cells).contains("step_MODEL_TRAINING()"),
+                cells -> assertThat(cells).contains("step_MODEL_EVALUATION()"));
+        assertThat(speculations("used")).isEqualTo(3);
+    }
+
+    @Test
+    void repairedStepDiscardsTheSpeculativeOutput() {
+        // preprocessing fails once, so the error handler adds a turn the speculative prompt did not have
+        ValidatingMLService ml = new ValidatingMLService(1);
+        StepLlmService llm = new StepLlmService(ml);
+
+        ResponseStatus status = agentService(llm, ml).machineLearningOrchestrator(new AgentRunContext("titanic", "titanic"));
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(llm.updaterCalls.get(AgentStep.MODEL_TRAINING)).hasValue(2);
+        assertThat(llm.updaterCalls.get(AgentStep.MODEL_EVALUATION)).hasValue(1);
+        assertThat(speculations("discarded")).isEqualTo(1);
+        assertThat(speculations("used")).isEqualTo(2);
+    }
+
+    private double speculations(String outcome) {
+        return registry.find("agent.speculation").tag("outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private AgentServiceImpl agentService(LlmService llm, MLService ml) {
+        AgentServiceImpl agentService = AgentServices.create(llm, ml, ErrorFixStore.disabled(), registry);
+        ReflectionTestUtils.setField(agentService, "speculationEnabled", true);
+        return agentService;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class StepLlmService extends StubLlmService {
+        private final Map<AgentStep, AtomicInteger> updaterCalls = new ConcurrentHashMap<>();
+        private final AtomicInteger sentDuringValidation = new AtomicInteger();
+        private final ValidatingMLService ml;
+
+        StepLlmService(ValidatingMLService ml) {
+            this.ml = ml;
+        }
+
+        @Override
+        protected String code(AgentRunContext context, LlmRole role, String prompt) {
+            if (role != LlmRole.NOTEBOOK_UPDATER) {
+                return "repaired()";
+            }
+            updaterCalls.computeIfAbsent(context.getCurrentStep(), step -> new AtomicInteger()).incrementAndGet();
+            // a speculative request is answered only once the step before it is being validated
+            if (ml.awaitValidation()) {
+                sentDuringValidation.incrementAndGet();
+            }
+            return "step_" + context.getCurrentStep() + "()";
+        }
+    }
+
+    private static class ValidatingMLService extends StubMLService {
+        private final AtomicInteger preprocessingFailures;
+        private final AtomicBoolean validating = new AtomicBoolean();
+        private final List<Object> payloads = new CopyOnWriteArrayList<>();
+
+        ValidatingMLService(int preprocessingFailures) {
+            this.preprocessingFailures = new AtomicInteger(preprocessingFailures);
+        }
+
+        @Override
+        public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                             int sampleRows) {
+            return validate(notebookContent, false);
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                             String kernelPool, int sampleRows) {
+            boolean fails = Util.toJson(notebookContent).contains("step_DATA_PREPROCESSING")
+                    && preprocessingFailures.getAndDecrement() > 0;
+            return validate(notebookContent, fails);
+        }
+
+        boolean awaitValidation() {
+            for (int i = 0; i < 200 && !validating.get(); i++) {
+                sleep(5);
+            }
+            return validating.get();
+        }
+
+        // keeps the notebook "running" long enough for the speculative request to see it
+        private ResponseStatus validate(Object payload, boolean fails) {
+            validating.set(true);
+            sleep(150);
+            validating.set(false);
+            if (fails) {
+                return status("Failure", "NameError", "name 'df' is not defined");
+            }
+            payloads.add(payload);
+            return success();
+        }
+    }
+}
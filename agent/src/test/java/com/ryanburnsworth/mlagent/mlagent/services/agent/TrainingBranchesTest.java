@@ -0,0 +1,159 @@
+package com.ryanburnsworth.mlagent.mlagent.services.agent;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEvent;
+import com.ryanburnsworth.mlagent.mlagent.models.RunEventType;
+import com.ryanburnsworth.mlagent.mlagent.services.llm.StubLlmService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.MLService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import com.ryanburnsworth.mlagent.mlagent.util.Util;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Trains three model families on forked notebooks and checks that they overlap and that the best
+ * scoring branch is merged back before evaluation.
+ */
+class TrainingBranchesTest {
+    @Test
+    void mergesTheBestScoringBranch() {
+        // gradient boosting never executes, tree ensemble outscores linear
+        BranchingMLService ml = new BranchingMLService("titanic-gradient-boosting",
+                Map.of("titanic-linear", 0.81, "titanic-tree-ensemble", 0.88));
+        AgentServiceImpl agentService = agentService(ml);
+        ReflectionTestUtils.setField(agentService, "trainingBranches", "linear, tree-ensemble,gradient-boosting");
+
+        List<RunEvent> events = new CopyOnWriteArrayList<>();
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        context.setEventListener(events::add);
+
+        ResponseStatus status = agentService.machineLearningOrchestrator(context);
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(ml.maxConcurrentBranches).hasValueGreaterThanOrEqualTo(2);
+        assertThat(ml.forked).containsExactlyInAnyOrder(
+                "titanic-linear", "titanic-tree-ensemble", "titanic-gradient-boosting");
+        assertThat(ml.merged).containsExactly("titanic-tree-ensemble");
+        assertThat(ml.discarded).containsExactlyInAnyOrder("titanic-linear", "titanic-gradient-boosting");
+
+        // evaluation runs on the run's notebook after the merge, on top of the winning branch's cells
+        assertThat(ml.updates.getLast()).isEqualTo("titanic:evaluate()");
+        assertThat(Util.toJson(context.getNotebook())).contains("train_tree_ensemble()").doesNotContain("train_linear()");
+        assertThat(context.getAgentMemories()).extracting(memory -> memory.getAgentOutput())
+                .anyMatch(output -> output.contains("train_tree_ensemble()"))
+                .noneMatch(output -> output.contains("train_linear()"));
+        assertThat(context.getLastCompletedStep()).isEqualTo(AgentStep.MODEL_EVALUATION);
+        assertThat(events).filteredOn(event -> event.getType() == RunEventType.BRANCH_MERGED)
+                .singleElement()
+                .satisfies(event -> assertThat(event.getMessage()).startsWith("tree-ensemble"));
+        assertThat(events).filteredOn(event -> event.getType() == RunEventType.BRANCH_FAILED).hasSize(1);
+    }
+
+    @Test
+    void failsWhenNoBranchSucceeds() {
+        BranchingMLService ml = new BranchingMLService("titanic-linear", Map.of());
+        AgentServiceImpl agentService = agentService(ml);
+        ReflectionTestUtils.setField(agentService, "trainingBranches", "linear");
+
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        ResponseStatus status = agentService.machineLearningOrchestrator(context);
+
+        assertThat(status.getStatus()).isEqualTo("Failure");
+        assertThat(status.getMessage()).isEqualTo("No training branch succeeded");
+        assertThat(ml.merged).isEmpty();
+        assertThat(ml.discarded).containsExactly("titanic-linear");
+        // a resumed run starts over from training
+        assertThat(context.getLastCompletedStep()).isEqualTo(AgentStep.DATA_PREPROCESSING);
+    }
+
+    private AgentServiceImpl agentService(MLService ml) {
+        return AgentServices.create(new BranchAwareLlmService(), ml);
+    }
+
+    private static class BranchAwareLlmService extends StubLlmService {
+        // branches work on "titanic-<family>" notebooks and must have been told their family
+        @Override
+        protected String code(AgentRunContext context, LlmRole role, String prompt) {
+            if (context.getNotebookName().startsWith("titanic-")) {
+                String family = context.getNotebookName().substring("titanic-".length());
+                assertThat(prompt).contains("this family: " + family.replace('-', ' '));
+                return "train_" + family.replace('-', '_') + "()";
+            }
+            return context.getCurrentStep() == AgentStep.MODEL_EVALUATION ? "evaluate()" : "preprocess()";
+        }
+    }
+
+    private static class BranchingMLService extends StubMLService {
+        private final String failingNotebook;
+        private final Map<String, Double> scores;
+        private final List<String> updates = new CopyOnWriteArrayList<>();
+        private final List<String> forked = new CopyOnWriteArrayList<>();
+        private final List<String> merged = new CopyOnWriteArrayList<>();
+        private final List<String> discarded = new CopyOnWriteArrayList<>();
+        private final AtomicInteger runningBranches = new AtomicInteger();
+        private final AtomicInteger maxConcurrentBranches = new AtomicInteger();
+
+        BranchingMLService(String failingNotebook, Map<String, Double> scores) {
+            this.failingNotebook = failingNotebook;
+            this.scores = scores;
+        }
+
+        @Override
+        public NotebookMetrics fetchNotebookMetrics(String notebookName) {
+            if (!scores.containsKey(notebookName)) {
+                return NotebookMetrics.empty();
+            }
+            NotebookMetrics metrics = new NotebookMetrics();
+            metrics.setStatus("success");
+            metrics.setMetrics(Map.of("score", scores.get(notebookName)));
+            return metrics;
+        }
+
+        @Override
+        public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                             String kernelPool, int sampleRows) {
+            List<?> source = (List<?>) notebookContent.getFirst().get("source");
+            updates.add(notebookName + ":" + source.getFirst().toString().strip());
+            if (!notebookName.equals("titanic")) {
+                maxConcurrentBranches.accumulateAndGet(runningBranches.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    runningBranches.decrementAndGet();
+                }
+            }
+            return notebookName.equals(failingNotebook) ? status("Failure", "", "") : success();
+        }
+
+        @Override
+        public ResponseStatus forkNotebook(String notebookName, String branchName, String kernelPool) {
+            forked.add(branchName);
+            return success();
+        }
+
+        @Override
+        public ResponseStatus mergeNotebook(String notebookName, String branchName, String kernelPool) {
+            merged.add(branchName);
+            return success();
+        }
+
+        @Override
+        public ResponseStatus discardNotebook(String notebookName) {
+            discarded.add(notebookName);
+            return success();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ryanburnsworth.mlagent.mlagent.services.dataset;
+
+import com.ryanburnsworth.mlagent.mlagent.config.ExecutorConfig;
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CsvDatasetProfilerTest {
+    private final ThreadPoolTaskExecutor executor = ExecutorConfig.profilerExecutor(4);
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void datasetsDirectory() throws IOException {
+        Files.createDirectories(root.resolve("datasets/owner/titanic"));
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void profilesColumnsTheWayPandasReadsThem() throws IOException {
+        StringBuilder csv = new StringBuilder("\uFEFFId,Age,Name,Survived,Ticket\r\n");
+        for (int i = 1; i <= 1000; i++) {
+            String age = i % 10 == 0 ? "" : Integer.toString(i % 80);
+            String name = i % 100 == 0 ? "\"Smith, \"\"Jr\"\"\nthe second\"" : "name" + (i % 250);
+            String ticket = i == 500 ? "LINE" : Integer.toString(i);
+            csv.append(i).append(',').append(age).append(',').append(name).append(',')
+                    .append(i % 2 == 0 ? "True" : "False").append(',').append(ticket).append("\r\n");
+        }
+        Path file = Files.writeString(root.resolve("datasets/owner/titanic/train.csv"), csv);
+
+        FileProfile profile = profiler(1 << 20).profile(List.of(file)).getFirst();
+
+        assertThat(profile.rows()).isEqualTo(1000);
+        assertThat(profile.columnCount()).isEqualTo(5);
+        ColumnProfile id = profile.columns().get(0);
+        assertThat(id.name()).isEqualTo("Id");
+        assertThat(id.dtype()).isEqualTo("int64");
+        assertThat(id.distinct()).isCloseTo(1000, within(50L));
+        assertThat(id.numeric().min()).isEqualTo(1);
+        assertThat(id.numeric().max()).isEqualTo(1000);
+        assertThat(id.numeric().median()).isCloseTo(500, within(1.0));
+
+        ColumnProfile age = profile.columns().get(1);
+        assertThat(age.dtype()).isEqualTo("float64");
+        assertThat(age.nullRatio()).isEqualTo(0.1);
+
+        ColumnProfile name = profile.columns().get(2);
+        assertThat(name.dtype()).isEqualTo("object");
+        assertThat(name.distinct()).isCloseTo(251, within(15L));
+        assertThat(name.numeric()).isNull();
+
+        assertThat(profile.columns().get(3).dtype()).isEqualTo("bool");
+        ColumnProfile ticket = profile.columns().get(4);
+        assertThat(ticket.dtype()).isEqualTo("object (mostly numeric)");
+        assertThat(ticket.nonNumericExample()).isEqualTo("LINE");
+    }
+
+    @Test
+    void splitFileProfilesLikeAWholeOne() throws IOException {
+        StringBuilder csv = new StringBuilder("x;y;label\n");
+        for (int i = 0; i < 5000; i++) {
+            csv.append(i).append(';').append(i * 0.5).append(';').append(i % 3 == 0 ? "a" : "b").append('\n');
+        }
+        Path file = Files.writeString(root.resolve("split.csv"), csv);
+
+        FileProfile whole = profiler(1 << 30).profile(List.of(file)).getFirst();
+        FileProfile split = profiler(4096).profile(List.of(file)).getFirst();
+
+        assertThat(split.rows()).isEqualTo(whole.rows()).isEqualTo(5000);
+        for (int i = 0; i < 3; i++) {
+            ColumnProfile expected = whole.columns().get(i);
+            ColumnProfile actual = split.columns().get(i);
+            assertThat(actual.dtype()).isEqualTo(expected.dtype());
+            assertThat(actual.distinct()).isEqualTo(expected.distinct());
+        }
+        assertThat(split.columns().get(1).numeric().mean()).isCloseTo(whole.columns().get(1).numeric().mean(),
+                within(1e-9));
+        assertThat(split.columns().get(1).numeric().max()).isEqualTo(2499.5);
+    }
+
+    @Test
+    void describeResolvesKaggleServicePathsAndSkipsMissingFiles() throws IOException {
+        Files.writeString(root.resolve("datasets/owner/titanic/train.csv"), "a,b\n1,x\n2,y\n");
+        DatasetMetadata metadata = new DatasetMetadata();
+        metadata.setDatasets(List.of(".\\datasets\\owner\\titanic\\train.csv", ".\\datasets\\owner\\titanic\\test.csv"));
+
+        String schema = profiler(1 << 20).describe(metadata);
+
+        assertThat(schema).startsWith("train.csv: 2 rows, 2 columns")
+                .contains("- a: int64, ~2 distinct, range 1 to 2")
+                .contains("- b: object, ~2 distinct");
+        assertThat(DatasetProfiler.disabled().describe(metadata)).isEmpty();
+    }
+
+    private CsvDatasetProfiler profiler(long splitBytes) {
+        return new CsvDatasetProfiler(root, executor, 4, 60, 4096, splitBytes);
+    }
+}
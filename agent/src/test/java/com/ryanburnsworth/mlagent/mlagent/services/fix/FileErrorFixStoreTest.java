@@ -0,0 +1,74 @@
+package com.ryanburnsworth.mlagent.mlagent.services.fix;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.ErrorFix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileErrorFixStoreTest {
+    private static final String PAPERMILL_ERROR = """
+            ---------------------------------------------------------------------------
+            Exception encountered at "In [%d]":
+            ---------------------------------------------------------------------------
+            KeyError                                  Traceback (most recent call last)
+            Cell In[%d], line 2
+                  1 import pandas as pd
+            ----> 2 df['Cabin_Deck'] = df['Deck'].str[0]
+            File /opt/venv/lib/python3.11/site-packages/pandas/core/indexes/base.py:%d, in Index.get_loc(self, key)
+            KeyError: 'Deck'
+            """;
+    private static final String KERNEL_ERROR = """
+            \u001B[0;31mKeyError\u001B[0m                                  Traceback (most recent call last)
+            Cell \u001B[0;32mIn[7], line 2\u001B[0m
+            File \u001B[0;32m/usr/local/lib/python3.12/dist-packages/pandas/core/indexes/base.py:3812\u001B[0m, in \u001B[0;36mIndex.get_loc\u001B[0;34m(self, key)\u001B[0m
+            KeyError: 'Deck'
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sameFailureHasTheSameSignatureAcrossRuns() {
+        ErrorSignature first = ErrorSignature.of("Error updating notebook.", PAPERMILL_ERROR.formatted(3, 3, 3805));
+        ErrorSignature second = ErrorSignature.of("Error updating notebook.", PAPERMILL_ERROR.formatted(5, 5, 3812));
+        ErrorSignature kernel = ErrorSignature.of("Error executing notebook cells.", KERNEL_ERROR);
+
+        assertThat(first.exceptionType()).isEqualTo("KeyError");
+        assertThat(first.message()).isEqualTo("'Deck'");
+        assertThat(first.frame()).isEqualTo("pandas/core/indexes/base.py in Index.get_loc");
+        assertThat(second).isEqualTo(first);
+        assertThat(kernel).isEqualTo(first);
+        assertThat(first.key(AgentStep.DATA_PREPROCESSING)).isNotEqualTo(first.key(AgentStep.MODEL_TRAINING));
+
+        ErrorSignature otherColumn = ErrorSignature.of("", PAPERMILL_ERROR.formatted(3, 3, 3805).replace("'Deck'", "'Fare'"));
+        assertThat(otherColumn.key(AgentStep.DATA_PREPROCESSING)).isNotEqualTo(first.key(AgentStep.DATA_PREPROCESSING));
+    }
+
+    @Test
+    void fixesAreIndexedAgainWhenTheStoreReopens() {
+        ErrorSignature signature = ErrorSignature.of("", "FileNotFoundError: [Errno 2] No such file or directory: "
+                + "'.\\\\datasets\\\\titanic\\\\train.csv'");
+        String key = signature.key(AgentStep.DATA_LOADING);
+        new FileErrorFixStore(directory).save(ErrorFix.builder()
+                .key(key)
+                .step(AgentStep.DATA_LOADING)
+                .exceptionType(signature.exceptionType())
+                .message(signature.message())
+                .frame(signature.frame())
+                .content("[{\"cell_type\": \"code\"}]")
+                .build());
+
+        FileErrorFixStore reopened = new FileErrorFixStore(directory);
+        assertThat(reopened.find(key)).hasValueSatisfying(fix -> {
+            assertThat(fix.getExceptionType()).isEqualTo("FileNotFoundError");
+            assertThat(fix.getMessage()).isEqualTo("[Errno <n>] No such file or directory: '.\\\\datasets\\\\titanic\\\\train.csv'");
+        });
+
+        reopened.delete(key);
+        assertThat(new FileErrorFixStore(directory).find(key)).isEmpty();
+    }
+}
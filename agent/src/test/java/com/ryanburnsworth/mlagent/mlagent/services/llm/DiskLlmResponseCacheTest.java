@@ -0,0 +1,74 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskLlmResponseCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void responseSurvivesARestart() {
+        new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10).put("a", "response a");
+
+        assertThat(new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10).get("a")).contains("response a");
+    }
+
+    @Test
+    void expiredEntryIsAMissAndDeleted() throws IOException {
+        DiskLlmResponseCache cache = new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10);
+        cache.put("a", "response a");
+        age(directory.resolve("a"), Duration.ofMinutes(10));
+
+        assertThat(cache.get("a")).isEmpty();
+        assertThat(directory.resolve("a")).doesNotExist();
+    }
+
+    @Test
+    void writePastTheLimitDeletesExpiredThenOldestEntries() throws IOException {
+        DiskLlmResponseCache cache = new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 2);
+        cache.put("expired", "response");
+        cache.put("older", "response");
+        age(directory.resolve("expired"), Duration.ofMinutes(10));
+        age(directory.resolve("older"), Duration.ofMinutes(2));
+        cache.put("newer", "response");
+        age(directory.resolve("newer"), Duration.ofMinutes(1));
+
+        // only the expired file goes, which leaves the directory at the limit
+        assertThat(files()).containsExactlyInAnyOrder("older", "newer");
+
+        cache.put("newest", "response");
+        assertThat(files()).containsExactlyInAnyOrder("newer", "newest");
+    }
+
+    @Test
+    void startupDeletesExpiredEntries() throws IOException {
+        new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10).put("a", "response a");
+        age(directory.resolve("a"), Duration.ofMinutes(10));
+
+        new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10);
+
+        assertThat(files()).isEmpty();
+    }
+
+    private static void age(Path file, Duration age) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+    }
+
+    private String[] files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryLlmResponseCacheTest {
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        InMemoryLlmResponseCache cache = new InMemoryLlmResponseCache(2, Duration.ofMinutes(5));
+        cache.put("a", "response a");
+        cache.put("b", "response b");
+
+        // reading a makes b the least recently used
+        assertThat(cache.get("a")).contains("response a");
+        cache.put("c", "response c");
+
+        assertThat(cache.get("b")).isEmpty();
+        assertThat(cache.get("a")).contains("response a");
+        assertThat(cache.get("c")).contains("response c");
+    }
+
+    @Test
+    void expiredEntryIsAMiss() throws InterruptedException {
+        InMemoryLlmResponseCache cache = new InMemoryLlmResponseCache(10, Duration.ofMillis(50));
+        cache.put("a", "response a");
+        assertThat(cache.get("a")).contains("response a");
+
+        Thread.sleep(100);
+        assertThat(cache.get("a")).isEmpty();
+    }
+}
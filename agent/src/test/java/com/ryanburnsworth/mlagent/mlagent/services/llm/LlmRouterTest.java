@@ -0,0 +1,116 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmRouterTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgentMetrics metrics = new AgentMetrics(registry, Tracer.NOOP);
+
+    @Test
+    void rolesUseTheirOwnModelAndTheDefaultsOtherwise() {
+        LlmRouter router = router(new MockEnvironment()
+                .withProperty("agent.llm.roles.ml-critic.model", "gpt-4o-mini")
+                .withProperty("agent.llm.roles.ml-critic.temperature", "0"), 100);
+
+        LlmRoute critic = router.route(LlmRole.ML_CRITIC);
+        assertThat(critic.lane()).isEqualTo("gpt-4o-mini");
+        assertThat(critic.options().getModel()).isEqualTo("gpt-4o-mini");
+        assertThat(critic.options().getTemperature()).isEqualTo(0.0);
+
+        LlmRoute updater = router.route(LlmRole.NOTEBOOK_UPDATER);
+        assertThat(updater.lane()).isEqualTo("gpt-5-chat-latest");
+        assertThat(updater.options().getTemperature()).isEqualTo(1.0);
+    }
+
+    @Test
+    void slowRoleMovesToItsFallbackUntilTheCooldownEnds() throws InterruptedException {
+        LlmRouter router = router(new MockEnvironment()
+                .withProperty("agent.llm.roles.ml-critic.fallback.model", "gpt-4o-mini")
+                .withProperty("agent.llm.roles.ml-critic.max-p95-ms", "1000")
+                .withProperty("agent.llm.roles.notebook-updater.fallback.model", "gpt-4o-mini"), 200);
+
+        for (int i = 0; i < 3; i++) {
+            router.record(router.route(LlmRole.ML_CRITIC), millis(200), true);
+        }
+        assertThat(router.route(LlmRole.ML_CRITIC).fallback()).isFalse();
+
+        router.record(router.route(LlmRole.ML_CRITIC), millis(5000), true);
+        LlmRoute fallback = router.route(LlmRole.ML_CRITIC);
+        assertThat(fallback.fallback()).isTrue();
+        assertThat(fallback.lane()).isEqualTo("gpt-4o-mini");
+        assertThat(router.route(LlmRole.NOTEBOOK_UPDATER).fallback()).isFalse();
+        assertThat(registry.counter("llm.routing.fallback", "role", "mlCriticAgent", "model", "gpt-5-chat-latest",
+                "fallback", "gpt-4o-mini").count()).isEqualTo(1);
+
+        // slow fallback requests are not held against the primary model
+        router.record(fallback, millis(5000), true);
+        Thread.sleep(250);
+        assertThat(router.route(LlmRole.ML_CRITIC).fallback()).isFalse();
+    }
+
+    @Test
+    void failingRoleMovesToItsFallbackOnlyIfItHasOne() {
+        LlmRouter router = router(new MockEnvironment()
+                .withProperty("agent.llm.roles.ml-critic.fallback.model", "gpt-4o-mini"), 60_000);
+
+        for (boolean success : new boolean[]{true, true, false, false}) {
+            router.record(router.route(LlmRole.ML_CRITIC), millis(100), success);
+            router.record(router.route(LlmRole.CODE_FIXER), millis(100), success);
+        }
+
+        assertThat(router.route(LlmRole.ML_CRITIC).fallback()).isTrue();
+        assertThat(router.route(LlmRole.CODE_FIXER).fallback()).isFalse();
+    }
+
+    @Test
+    void rateLimitWaitIsNotHeldAgainstThePrimaryModel() {
+        LlmRouter router = router(new MockEnvironment()
+                .withProperty("agent.llm.roles.ml-critic.fallback.model", "gpt-4o-mini")
+                .withProperty("agent.llm.roles.ml-critic.max-p95-ms", "100"), 60_000);
+        // every request waits longer for its permit than the role's p95 limit, the provider answers at once
+        LlmScheduler scheduler = new LlmScheduler(metrics, 500, 200_000, 1500, 5, 1000, 60_000) {
+            @Override
+            public ChatResponse call(String model, LlmRole role, int promptTokens, Supplier<ChatResponse> request) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return request.get();
+            }
+        };
+        ChatClient.Builder chatClient = ChatClient.builder(prompt ->
+                new ChatResponse(List.of(new Generation(new AssistantMessage("ok")))));
+        LlmServiceImpl llm = new LlmServiceImpl(chatClient, LlmResponseCache.disabled(), metrics, scheduler, router);
+
+        for (int i = 0; i < 4; i++) {
+            llm.call(new AgentRunContext("router-test", "titanic"), LlmRole.ML_CRITIC, "prompt " + i);
+        }
+
+        assertThat(router.route(LlmRole.ML_CRITIC).fallback()).isFalse();
+    }
+
+    private LlmRouter router(MockEnvironment environment, long cooldownMs) {
+        return new LlmRouter(metrics, environment, "gpt-5-chat-latest", "1", 120_000, 0.25, 10, 4, cooldownMs);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
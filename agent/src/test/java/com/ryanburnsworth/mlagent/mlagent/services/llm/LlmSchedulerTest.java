@@ -0,0 +1,79 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmSchedulerTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgentMetrics metrics = new AgentMetrics(registry, Tracer.NOOP);
+
+    @Test
+    void retriesRateLimitedCallsWithBackoff() {
+        LlmScheduler scheduler = new LlmScheduler(metrics, 1000, 1_000_000, 0, 5, 1, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        ChatResponse response = scheduler.call("gpt", LlmRole.ML_CRITIC, 10, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new NonTransientAiException("429 - Rate limit reached for requests");
+            }
+            return response("ok");
+        });
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+        assertThat(registry.counter("llm.scheduler.rate_limited", "model", "gpt").count()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRetryOtherClientErrors() {
+        LlmScheduler scheduler = new LlmScheduler(metrics, 1000, 1_000_000, 0, 5, 1, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> scheduler.call("gpt", LlmRole.ML_CRITIC, 10, () -> {
+            attempts.incrementAndGet();
+            throw new NonTransientAiException("400 - Invalid request");
+        })).isInstanceOf(NonTransientAiException.class);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void servesHigherPriorityRolesFirstWhenCapacityIsExhausted() throws InterruptedException {
+        // 6000 tokens/min refills 100 tokens every second
+        LlmScheduler scheduler = new LlmScheduler(metrics, 1000, 6000, 0, 1, 1, 10);
+        scheduler.call("gpt", LlmRole.NOTEBOOK_CREATOR, 6000, () -> response("drain"));
+
+        List<LlmRole> served = new CopyOnWriteArrayList<>();
+        Thread creator = Thread.ofVirtual().start(() -> scheduler.call("gpt", LlmRole.NOTEBOOK_CREATOR, 100,
+                () -> record(served, LlmRole.NOTEBOOK_CREATOR)));
+        Thread.sleep(200);
+        Thread errorHandler = Thread.ofVirtual().start(() -> scheduler.call("gpt", LlmRole.ERROR_HANDLER, 100,
+                () -> record(served, LlmRole.ERROR_HANDLER)));
+
+        creator.join();
+        errorHandler.join();
+        assertThat(served).containsExactly(LlmRole.ERROR_HANDLER, LlmRole.NOTEBOOK_CREATOR);
+    }
+
+    private static ChatResponse record(List<LlmRole> served, LlmRole role) {
+        served.add(role);
+        return response(role.name());
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
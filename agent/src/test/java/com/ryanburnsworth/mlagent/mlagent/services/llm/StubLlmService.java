@@ -0,0 +1,49 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.LlmRole;
+import reactor.core.publisher.Flux;
+
+/**
+ * LLM that answers every role with a valid output: a one-cell notebook for the creator, the critic's
+ * approval, and a single code cell for the updater, error handler and fixer. Tests extend it and
+ * override {@link #call} for the roles they check, or {@link #code} to change the generated cell.
+ */
+public class StubLlmService implements LlmService {
+    public static final String NOTEBOOK_JSON = """
+            {"cells": [{"cell_type": "code", "metadata": {}, "source": ["import pandas as pd\\n"], "outputs": [], "execution_count": null}],
+             "metadata": {}, "nbformat": 4, "nbformat_minor": 5}
+            """;
+    public static final String APPROVED_JSON = """
+            {"status": "approved", "feedback": "Looks valid. Proceed."}
+            """;
+    public static final String REJECTED_JSON = """
+            {"status": "rejected", "feedback": "Target variable not defined."}
+            """;
+    private static final String CELLS_JSON = """
+            [{"cell_type": "code", "metadata": {}, "source": ["%s\\n"], "outputs": [], "execution_count": null}]
+            """;
+
+    // a JSON cell list holding one code cell with the given single-line source
+    public static String cells(String code) {
+        return CELLS_JSON.formatted(code);
+    }
+
+    @Override
+    public String call(AgentRunContext context, LlmRole role, String prompt) {
+        return switch (role) {
+            case NOTEBOOK_CREATOR -> NOTEBOOK_JSON;
+            case ML_CRITIC -> APPROVED_JSON;
+            case NOTEBOOK_UPDATER, ERROR_HANDLER, CODE_FIXER -> cells(code(context, role, prompt));
+        };
+    }
+
+    @Override
+    public Flux<String> stream(AgentRunContext context, LlmRole role, String prompt) {
+        return Flux.just(call(context, role, prompt));
+    }
+
+    protected String code(AgentRunContext context, LlmRole role, String prompt) {
+        return "print(df.shape)";
+    }
+}
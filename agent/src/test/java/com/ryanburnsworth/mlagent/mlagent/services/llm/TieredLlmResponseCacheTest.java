@@ -0,0 +1,51 @@
+package com.ryanburnsworth.mlagent.mlagent.services.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredLlmResponseCacheTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void diskHitIsPromotedIntoMemory() {
+        DiskLlmResponseCache disk = new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10);
+        disk.put("a", "response a");
+        InMemoryLlmResponseCache memory = new InMemoryLlmResponseCache(10, Duration.ofMinutes(5));
+        TieredLlmResponseCache cache = new TieredLlmResponseCache(memory, disk, registry);
+
+        assertThat(memory.get("a")).isEmpty();
+        assertThat(cache.get("a")).contains("response a");
+        assertThat(memory.get("a")).contains("response a");
+        assertThat(cache.get("a")).contains("response a");
+
+        assertThat(requests("hit", "disk")).isEqualTo(1);
+        assertThat(requests("hit", "memory")).isEqualTo(1);
+    }
+
+    @Test
+    void entryEvictedFromMemoryIsServedFromDisk() {
+        TieredLlmResponseCache cache = new TieredLlmResponseCache(new InMemoryLlmResponseCache(1, Duration.ofMinutes(5)),
+                new DiskLlmResponseCache(directory, Duration.ofMinutes(5), 10), registry);
+        cache.put("a", "response a");
+        cache.put("b", "response b");
+
+        assertThat(cache.get("a")).contains("response a");
+        assertThat(cache.get("c")).isEmpty();
+
+        assertThat(requests("hit", "disk")).isEqualTo(1);
+        assertThat(requests("miss", "none")).isEqualTo(1);
+    }
+
+    private double requests(String result, String tier) {
+        return registry.counter("llm.cache.requests", "result", result, "tier", tier).count();
+    }
+}
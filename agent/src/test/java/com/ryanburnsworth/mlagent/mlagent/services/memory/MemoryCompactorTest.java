@@ -0,0 +1,87 @@
+package com.ryanburnsworth.mlagent.mlagent.services.memory;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoryCompactorTest {
+
+    @Test
+    void memoryWithinTheBudgetIsKeptVerbatim() {
+        List<AgentMemory> memories = turns(3, 400, 400);
+
+        CompactedMemory compacted = new MemoryCompactor(8000, 2, 600).compact(memories);
+
+        assertThat(compacted.memories()).isEqualTo(memories);
+        assertThat(compacted.droppedTurns()).isZero();
+        assertThat(compacted.estimatedTokens()).isEqualTo(600);
+    }
+
+    @Test
+    void longHistoryStaysWithinTheBudgetAndKeepsTheNewestTurns() {
+        List<AgentMemory> memories = turns(20, 4000, 2000);
+
+        CompactedMemory compacted = new MemoryCompactor(2000, 2, 600).compact(memories);
+
+        assertThat(compacted.estimatedTokens()).isLessThanOrEqualTo(2000);
+        assertThat(compacted.droppedTurns()).isPositive();
+        // the turns that are left are the newest ones, in order
+        List<AgentMemory> kept = compacted.memories();
+        assertThat(kept).extracting(turn -> turn.getAgentOutput().lines().findFirst().orElseThrow())
+                .isEqualTo(IntStream.range(memories.size() - kept.size(), memories.size())
+                        .mapToObj(i -> "# output " + i)
+                        .toList());
+        // the recent turns keep their generated code whole
+        assertThat(kept.subList(kept.size() - 2, kept.size())).extracting(AgentMemory::getAgentOutput)
+                .containsExactly(memories.get(18).getAgentOutput(), memories.get(19).getAgentOutput());
+    }
+
+    @Test
+    void oversizedRecentTurnsAreTruncatedToTheBudget() {
+        List<AgentMemory> memories = turns(2, 400, 40_000);
+
+        CompactedMemory compacted = new MemoryCompactor(1000, 2, 600).compact(memories);
+
+        assertThat(compacted.estimatedTokens()).isLessThanOrEqualTo(1000);
+        assertThat(compacted.memories()).hasSize(2).allSatisfy(turn ->
+                assertThat(turn.getAgentOutput()).startsWith("# output").endsWith("...[truncated]"));
+    }
+
+    @Test
+    void budgetHoldsForEveryHistoryLength() {
+        MemoryCompactor compactor = new MemoryCompactor(3000, 2, 600);
+
+        for (int size = 0; size <= 30; size++) {
+            CompactedMemory compacted = compactor.compact(turns(size, 3000, 1500));
+
+            assertThat(compacted.estimatedTokens()).as("%d turns", size).isLessThanOrEqualTo(3000);
+            if (size > 0) {
+                assertThat(compacted.memories().getLast().getAgentOutput()).as("%d turns", size)
+                        .isEqualTo(turn(size - 1, 3000, 1500).getAgentOutput());
+            }
+        }
+    }
+
+    // turns whose step cycles through the pipeline and whose text identifies the turn
+    private static List<AgentMemory> turns(int count, int promptChars, int outputChars) {
+        return IntStream.range(0, count).mapToObj(i -> turn(i, promptChars, outputChars)).toList();
+    }
+
+    private static AgentMemory turn(int index, int promptChars, int outputChars) {
+        AgentStep[] steps = AgentStep.values();
+        return AgentMemory.builder()
+                .step(steps[index % steps.length])
+                .userInput(fill("# prompt " + index + "\n", promptChars))
+                .agentOutput(fill("# output " + index + "\n", outputChars))
+                .build();
+    }
+
+    private static String fill(String head, int chars) {
+        return (head + "x".repeat(Math.max(0, chars - head.length()))).substring(0, chars);
+    }
+}
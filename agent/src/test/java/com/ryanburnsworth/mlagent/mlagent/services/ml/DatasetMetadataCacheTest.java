@@ -0,0 +1,130 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatasetMetadataCacheTest {
+    private final CountingLoader loader = new CountingLoader(Duration.ZERO);
+
+    @Test
+    void loaderGetsTheTermAsWrittenWhileTheKeyIsNormalized() {
+        DatasetMetadataCache cache = new DatasetMetadataCache(Duration.ofMinutes(5), 10);
+
+        cache.get("  Titanic   Survival ", loader).block();
+        cache.get("titanic survival", loader).block();
+
+        assertThat(loader.terms).containsOnlyKeys("  Titanic   Survival ");
+        assertThat(loader.loads()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredEntryIsLoadedAgain() throws InterruptedException {
+        DatasetMetadataCache cache = new DatasetMetadataCache(Duration.ofMillis(50), 10);
+
+        cache.get("titanic", loader).block();
+        cache.get("titanic", loader).block();
+        assertThat(loader.loads()).isEqualTo(1);
+
+        Thread.sleep(100);
+        cache.get("titanic", loader).block();
+        assertThat(loader.loads()).isEqualTo(2);
+    }
+
+    @Test
+    void oldestEntryIsEvictedFirst() throws InterruptedException {
+        DatasetMetadataCache cache = new DatasetMetadataCache(Duration.ofMinutes(5), 2);
+
+        for (String term : List.of("titanic", "iris", "housing")) {
+            cache.get(term, loader).block();
+            // distinct creation times so the order is unambiguous
+            Thread.sleep(5);
+        }
+        cache.get("iris", loader).block();
+        cache.get("housing", loader).block();
+        assertThat(loader.loads()).isEqualTo(3);
+
+        cache.get("titanic", loader).block();
+        assertThat(loader.terms.get("titanic")).hasValue(2);
+    }
+
+    @Test
+    void concurrentCallersShareOneDownload() throws Exception {
+        CountingLoader slowLoader = new CountingLoader(Duration.ofMillis(200));
+        DatasetMetadataCache cache = new DatasetMetadataCache(Duration.ofMinutes(5), 10);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<DatasetMetadata>> results = IntStream.range(0, 16)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await(10, TimeUnit.SECONDS);
+                        return cache.get(i % 2 == 0 ? "Titanic" : "titanic ", slowLoader).block();
+                    }))
+                    .toList();
+            start.countDown();
+
+            for (Future<DatasetMetadata> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS).getTitle()).isEqualTo("Titanic");
+            }
+        }
+        assertThat(slowLoader.loads()).isEqualTo(1);
+    }
+
+    @Test
+    void failedDownloadIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        Function<String, Mono<DatasetMetadata>> failingOnce = term -> Mono.defer(() -> attempts.incrementAndGet() == 1
+                ? Mono.error(new IllegalStateException("download failed"))
+                : Mono.just(metadata(term)));
+        DatasetMetadataCache cache = new DatasetMetadataCache(Duration.ofMinutes(5), 10);
+
+        Mono<DatasetMetadata> first = cache.get("titanic", failingOnce);
+        assertThat(first.onErrorResume(e -> Mono.empty()).block()).isNull();
+        assertThat(cache.get("titanic", failingOnce).block()).isNotNull();
+        assertThat(attempts).hasValue(2);
+    }
+
+    private static DatasetMetadata metadata(String term) {
+        DatasetMetadata metadata = new DatasetMetadata();
+        metadata.setTitle("Titanic");
+        metadata.setDatasetName("owner/" + term.trim());
+        return metadata;
+    }
+
+    // counts the downloads it starts per term, each of which takes the given delay
+    private static class CountingLoader implements Function<String, Mono<DatasetMetadata>> {
+        private final Duration delay;
+        private final Map<String, AtomicInteger> terms = new ConcurrentHashMap<>();
+
+        CountingLoader(Duration delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public Mono<DatasetMetadata> apply(String term) {
+            return Mono.fromCallable(() -> {
+                terms.computeIfAbsent(term, t -> new AtomicInteger()).incrementAndGet();
+                return metadata(term);
+            }).delaySubscription(delay);
+        }
+
+        int loads() {
+            return terms.values().stream().mapToInt(AtomicInteger::get).sum();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.metrics.AgentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveMLServiceImplTest {
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void notebookUpdateIsNotRepeatedOnceItMayHaveReachedTheService() {
+        ReactiveMLServiceImpl service = service(request ->
+                Mono.error(requestError(request, new IOException("Connection reset by peer"))));
+
+        ResponseStatus status = service.updateNotebook("titanic", List.of(Map.of()), null, 0).block();
+
+        assertThat(status.getStatus()).isEqualTo("Failure");
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void notebookUpdateIsRepeatedWhenTheConnectionWasRefused() {
+        ReactiveMLServiceImpl service = service(request -> requests.get() < 2
+                ? Mono.error(requestError(request, new ConnectException("Connection refused")))
+                : Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .body("{\"status\": \"success\", \"message\": \"\", \"details\": \"\"}")
+                        .build()));
+
+        ResponseStatus status = service.updateNotebook("titanic", List.of(Map.of()), null, 0).block();
+
+        assertThat(status.getStatus()).isEqualTo("success");
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    void bodilessServerErrorOnCreateIsNotRepeated() {
+        ReactiveMLServiceImpl service = service(request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header(HttpHeaders.CONTENT_TYPE, "text/plain")
+                .body("Internal Server Error")
+                .build()));
+
+        ResponseStatus status = service.createNotebook("titanic", Map.of(), null, 0).block();
+
+        assertThat(status.getStatus()).isEqualTo("Failure");
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void notebookFailureBodyIsTimedAsAFailure() {
+        ReactiveMLServiceImpl service = service(request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body("{\"status\": \"Failure\", \"message\": \"Error updating notebook.\", \"details\": \"KeyError\"}")
+                .build()));
+
+        ResponseStatus status = service.updateNotebook("titanic", List.of(Map.of()), null, 0).block();
+
+        assertThat(status.getStatus()).isEqualTo("Failure");
+        assertThat(registry.find("mlservice.request.duration").tag("endpoint", "notebook/update").timer())
+                .isNotNull()
+                .satisfies(timer -> assertThat(timer.getId().getTag("outcome")).isEqualTo(AgentMetrics.FAILURE));
+    }
+
+    private ReactiveMLServiceImpl service(Function<ClientRequest, Mono<ClientResponse>> exchange) {
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://ml-service")
+                .exchangeFunction(request -> {
+                    requests.incrementAndGet();
+                    return exchange.apply(request);
+                })
+                .build();
+        ReactiveMLServiceImpl service = new ReactiveMLServiceImpl(webClient,
+                new AgentMetrics(registry, Tracer.NOOP), 60, 256);
+        ReflectionTestUtils.setField(service, "notebookTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(service, "maxRetries", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 1L);
+        return service;
+    }
+
+    private static WebClientRequestException requestError(ClientRequest request, Throwable cause) {
+        return new WebClientRequestException(cause, request.method(), request.url(), request.headers());
+    }
+}
@@ -0,0 +1,83 @@
+package com.ryanburnsworth.mlagent.mlagent.services.ml;
+
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookExecution;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ML service that finds the Titanic dataset and accepts every notebook request. Tests extend it and
+ * override only the calls they check. Cell executions go through {@link #updateNotebook} unless
+ * overridden.
+ */
+public class StubMLService implements MLService {
+
+    @Override
+    public DatasetMetadata fetchDatasetMetadata(String searchTerm) {
+        DatasetMetadata metadata = new DatasetMetadata();
+        metadata.setTitle("Titanic");
+        metadata.setSubtitle("Survival");
+        metadata.setDescription("Passenger survival data");
+        metadata.setDatasets(List.of("./datasets/titanic/train.csv"));
+        return metadata;
+    }
+
+    @Override
+    public List<DatasetMetadata> fetchDatasetCandidates(String searchTerm, int count) {
+        return List.of(fetchDatasetMetadata(searchTerm));
+    }
+
+    @Override
+    public ResponseStatus createNotebook(String notebookName, Map<String, Object> notebookContent, String kernelPool,
+                                         int sampleRows) {
+        return success();
+    }
+
+    @Override
+    public ResponseStatus updateNotebook(String notebookName, List<Map<String, Object>> notebookContent,
+                                         String kernelPool, int sampleRows) {
+        return success();
+    }
+
+    @Override
+    public ResponseStatus validateNotebook(String notebookName, String kernelPool) {
+        return success();
+    }
+
+    @Override
+    public NotebookMetrics fetchNotebookMetrics(String notebookName) {
+        return NotebookMetrics.empty();
+    }
+
+    @Override
+    public NotebookExecution executeCells(String notebookName, List<Map<String, Object>> cells, String kernelPool,
+                                          int sampleRows) {
+        return NotebookExecution.from(updateNotebook(notebookName, cells, kernelPool, sampleRows));
+    }
+
+    @Override
+    public ResponseStatus forkNotebook(String notebookName, String branchName, String kernelPool) {
+        return success();
+    }
+
+    @Override
+    public ResponseStatus mergeNotebook(String notebookName, String branchName, String kernelPool) {
+        return success();
+    }
+
+    @Override
+    public ResponseStatus discardNotebook(String notebookName) {
+        return success();
+    }
+
+    public static ResponseStatus success() {
+        return status("success", "", "");
+    }
+
+    public static ResponseStatus status(String status, String message, String details) {
+        return ResponseStatus.builder().status(status).message(message).details(details).build();
+    }
+}
@@ -0,0 +1,186 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.config.ExecutorConfig;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutCandidate;
+import com.ryanburnsworth.mlagent.mlagent.models.FanOutStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.NotebookMetrics;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunCheckpoint;
+import com.ryanburnsworth.mlagent.mlagent.models.RunState;
+import com.ryanburnsworth.mlagent.mlagent.services.agent.AgentService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fans one search term out over scripted candidate datasets and checks the bounded parallelism
+ * and the final ranking.
+ */
+class FanOutTest {
+    private final AsyncTaskExecutor executor = ExecutorConfig.virtualRunExecutor(100);
+
+    @Test
+    void ranksCandidatesByNotebookScore() throws InterruptedException {
+        // candidate 2 fails, candidate 4 never prints metrics
+        ConcurrencyTrackingAgentService agentService = new ConcurrencyTrackingAgentService("fanout-2");
+        ScoredMLService mlService = new ScoredMLService(Map.of(
+                "fanout-1", Map.of("score", 0.71),
+                "fanout-3", Map.of("score", 0.93, "f1", 0.9)));
+        RunServiceImpl runService = new RunServiceImpl(agentService, mlService, CheckpointStore.disabled(), executor);
+        ReflectionTestUtils.setField(runService, "retentionMinutes", 60L);
+
+        FanOutStatus started = runService.startFanOut("fanout", "titanic", 4, false, null, null);
+        FanOutStatus finished = awaitFinished(runService, started.getFanOutId());
+
+        assertThat(finished.getState()).isEqualTo(RunState.SUCCEEDED);
+        assertThat(finished.getCandidates()).extracting(FanOutCandidate::getNotebookName)
+                .containsExactly("fanout-3", "fanout-1", "fanout-4", "fanout-2");
+        assertThat(finished.getCandidates()).extracting(FanOutCandidate::getState)
+                .containsExactly(RunState.SUCCEEDED, RunState.SUCCEEDED, RunState.SUCCEEDED, RunState.FAILED);
+        assertThat(finished.getWinnerRunId()).isEqualTo(finished.getCandidates().getFirst().getRunId());
+        assertThat(agentService.maxConcurrent).hasValueLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void failsWhenNoCandidateSucceeds() throws InterruptedException {
+        ConcurrencyTrackingAgentService agentService = new ConcurrencyTrackingAgentService("fanout-1", "fanout-2");
+        RunServiceImpl runService = new RunServiceImpl(agentService, new ScoredMLService(Map.of()),
+                CheckpointStore.disabled(), executor);
+        ReflectionTestUtils.setField(runService, "retentionMinutes", 60L);
+
+        FanOutStatus finished = awaitFinished(runService, runService.startFanOut("fanout", "titanic", 2, false, null, null).getFanOutId());
+
+        assertThat(finished.getState()).isEqualTo(RunState.FAILED);
+        assertThat(finished.getWinnerRunId()).isNull();
+    }
+
+    @Test
+    void failedCandidateKeepsItsOwnDatasetForResume(@TempDir Path directory) throws InterruptedException {
+        FileCheckpointStore store = new FileCheckpointStore(directory);
+        RunServiceImpl runService = new RunServiceImpl(new ConcurrencyTrackingAgentService("fanout-2"),
+                new ScoredMLService(Map.of()), store, executor);
+        ReflectionTestUtils.setField(runService, "retentionMinutes", 60L);
+
+        FanOutStatus finished = awaitFinished(runService, runService.startFanOut("fanout", "titanic", 2, false, null, null).getFanOutId());
+
+        FanOutCandidate failed = finished.getCandidates().stream()
+                .filter(candidate -> candidate.getState() == RunState.FAILED)
+                .findFirst()
+                .orElseThrow();
+        // resuming must not search for "titanic" again and pick up the first candidate's dataset
+        assertThat(store.load(failed.getRunId())).map(RunCheckpoint::getDatasetMetadata)
+                .map(DatasetMetadata::getDatasetName)
+                .contains("owner/titanic-2");
+    }
+
+    @Test
+    void resumedCandidateIsRankedAgain(@TempDir Path directory) throws InterruptedException {
+        // fanout-1 fails its first attempt only, and scores best once it succeeds
+        AtomicInteger attempts = new AtomicInteger();
+        ConcurrencyTrackingAgentService agentService = new ConcurrencyTrackingAgentService() {
+            @Override
+            public ResponseStatus machineLearningOrchestrator(AgentRunContext context) {
+                ResponseStatus status = super.machineLearningOrchestrator(context);
+                boolean firstAttempt = context.getNotebookName().equals("fanout-1") && attempts.getAndIncrement() == 0;
+                return firstAttempt ? ResponseStatus.builder().status("Failure").message("").details("").build() : status;
+            }
+        };
+        RunServiceImpl runService = new RunServiceImpl(agentService, new ScoredMLService(Map.of(
+                "fanout-1", Map.of("score", 0.9),
+                "fanout-2", Map.of("score", 0.5))), new FileCheckpointStore(directory), executor);
+        ReflectionTestUtils.setField(runService, "retentionMinutes", 60L);
+
+        String fanOutId = runService.startFanOut("fanout", "titanic", 2, false, null, null).getFanOutId();
+        FanOutStatus first = awaitFinished(runService, fanOutId);
+        String failedRunId = first.getCandidates().getLast().getRunId();
+        assertThat(first.getCandidates()).extracting(FanOutCandidate::getNotebookName).containsExactly("fanout-2", "fanout-1");
+
+        runService.resumeRun(failedRunId).orElseThrow();
+        assertThat(runService.getFanOut(fanOutId).orElseThrow().getState()).isEqualTo(RunState.RUNNING);
+        FanOutStatus resumed = awaitFinished(runService, fanOutId);
+
+        assertThat(resumed.getState()).isEqualTo(RunState.SUCCEEDED);
+        assertThat(resumed.getWinnerRunId()).isEqualTo(failedRunId);
+        assertThat(resumed.getCandidates()).extracting(FanOutCandidate::getState)
+                .containsExactly(RunState.SUCCEEDED, RunState.SUCCEEDED);
+    }
+
+    private static FanOutStatus awaitFinished(RunServiceImpl runService, String fanOutId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            FanOutStatus status = runService.getFanOut(fanOutId).orElseThrow();
+            if (status.getState().isFinished()) {
+                return status;
+            }
+            Thread.sleep(25);
+        }
+        throw new AssertionError("fan-out did not finish");
+    }
+
+    private class ConcurrencyTrackingAgentService implements AgentService {
+        private final List<String> failingNotebooks;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        ConcurrencyTrackingAgentService(String... failingNotebooks) {
+            this.failingNotebooks = List.of(failingNotebooks);
+        }
+
+        @Override
+        public ResponseStatus machineLearningOrchestrator(AgentRunContext context) {
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            String status = failingNotebooks.contains(context.getNotebookName()) ? "Failure" : "success";
+            return ResponseStatus.builder().status(status).message("").details("").build();
+        }
+
+        @Override
+        public CompletableFuture<ResponseStatus> submitOrchestration(AgentRunContext context) {
+            return executor.submitCompletable(() -> machineLearningOrchestrator(context));
+        }
+    }
+
+    private static class ScoredMLService extends StubMLService {
+        private final Map<String, Map<String, Double>> metricsByNotebook;
+
+        ScoredMLService(Map<String, Map<String, Double>> metricsByNotebook) {
+            this.metricsByNotebook = metricsByNotebook;
+        }
+
+        @Override
+        public List<DatasetMetadata> fetchDatasetCandidates(String searchTerm, int count) {
+            return IntStream.rangeClosed(1, count).mapToObj(i -> {
+                DatasetMetadata metadata = new DatasetMetadata();
+                metadata.setDatasetName("owner/" + searchTerm + "-" + i);
+                metadata.setDatasets(List.of("./datasets/" + searchTerm + "-" + i + "/train.csv"));
+                return metadata;
+            }).toList();
+        }
+
+        @Override
+        public NotebookMetrics fetchNotebookMetrics(String notebookName) {
+            NotebookMetrics metrics = new NotebookMetrics();
+            metrics.setStatus("success");
+            metrics.setMetrics(metricsByNotebook.getOrDefault(notebookName, Map.of()));
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.models.AgentMemory;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentStep;
+import com.ryanburnsworth.mlagent.mlagent.models.CriticResult;
+import com.ryanburnsworth.mlagent.mlagent.models.DatasetMetadata;
+import com.ryanburnsworth.mlagent.mlagent.models.RunCheckpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileCheckpointStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumedContextSkipsCompletedSteps() {
+        FileCheckpointStore store = new FileCheckpointStore(directory);
+        AgentRunContext context = new AgentRunContext("titanic", "titanic");
+        context.setCheckpointListener(store::save);
+
+        DatasetMetadata metadata = new DatasetMetadata();
+        metadata.setDatasetName("owner/titanic");
+        metadata.setDatasets(List.of("./datasets/owner/titanic/train.csv", "./datasets/owner/titanic/test.csv"));
+        context.setDatasetMetadata(metadata);
+        context.confirmNotebookAction(Map.of("notebook_content", Map.of("cells", List.of(Map.of("source", "import pandas")))));
+        context.getAgentMemories().add(AgentMemory.builder()
+                .step(AgentStep.DATA_LOADING)
+                .userInput("load titanic")
+                .agentOutput("df = pd.read_csv('train.csv')")
+                .build());
+        CriticResult verdict = new CriticResult();
+        verdict.setStatus("approved");
+        verdict.setFeedback("looks good");
+        context.getCriticResults().put(AgentStep.DATA_LOADING, verdict);
+        context.completeStep(AgentStep.DATA_LOADING);
+
+        RunCheckpoint checkpoint = store.load(context.getRunId()).orElseThrow();
+        AgentRunContext resumed = AgentRunContext.fromCheckpoint(checkpoint);
+
+        assertThat(resumed.getRunId()).isEqualTo(context.getRunId());
+        assertThat(resumed.isStepCompleted(AgentStep.DATA_LOADING)).isTrue();
+        assertThat(resumed.isStepCompleted(AgentStep.DATA_PREPROCESSING)).isFalse();
+        assertThat(resumed.getAgentMemories()).singleElement()
+                .satisfies(memory -> assertThat(memory.getAgentOutput()).contains("read_csv"));
+        assertThat(resumed.getCriticResults().get(AgentStep.DATA_LOADING).getFeedback()).isEqualTo("looks good");
+        assertThat((List<?>) resumed.getNotebook().get("cells")).hasSize(1);
+        assertThat(resumed.getDatasetMetadata().getDatasetName()).isEqualTo("owner/titanic");
+        assertThat(resumed.getDatasetMetadata().getDatasetFiles()).hasSize(2);
+    }
+
+    @Test
+    void ignoresRunIdsThatEscapeTheDirectory() {
+        FileCheckpointStore store = new FileCheckpointStore(directory);
+
+        store.save(RunCheckpoint.builder().runId("../outside").build());
+
+        assertThat(store.load("../outside")).isEmpty();
+        assertThat(directory.getParent().resolve("outside.json")).doesNotExist();
+    }
+
+    @Test
+    void deleteForgetsTheCheckpoint() {
+        FileCheckpointStore store = new FileCheckpointStore(directory);
+        store.save(RunCheckpoint.builder().runId("run-1").completedStep(AgentStep.MODEL_TRAINING).build());
+
+        assertThat(store.load("run-1")).map(RunCheckpoint::getCompletedStep).contains(AgentStep.MODEL_TRAINING);
+        store.delete("run-1");
+        assertThat(store.load("run-1")).isEmpty();
+    }
+
+    @Test
+    void deleteOlderThanExpiresCheckpointsNotSavedSinceTheCutoff() throws IOException {
+        FileCheckpointStore store = new FileCheckpointStore(directory);
+        store.save(RunCheckpoint.builder().runId("failed-long-ago").build());
+        store.save(RunCheckpoint.builder().runId("failed-recently").build());
+        Files.setLastModifiedTime(directory.resolve("failed-long-ago.json"),
+                FileTime.from(Instant.now().minus(Duration.ofDays(8))));
+
+        store.deleteOlderThan(Instant.now().minus(Duration.ofDays(7)));
+
+        assertThat(store.load("failed-long-ago")).isEmpty();
+        assertThat(store.load("failed-recently")).isPresent();
+    }
+}
@@ -0,0 +1,125 @@
+package com.ryanburnsworth.mlagent.mlagent.services.run;
+
+import com.ryanburnsworth.mlagent.mlagent.config.ExecutorConfig;
+import com.ryanburnsworth.mlagent.mlagent.models.AgentRunContext;
+import com.ryanburnsworth.mlagent.mlagent.models.ResponseStatus;
+import com.ryanburnsworth.mlagent.mlagent.models.RunState;
+import com.ryanburnsworth.mlagent.mlagent.models.RunStatus;
+import com.ryanburnsworth.mlagent.mlagent.services.agent.AgentService;
+import com.ryanburnsworth.mlagent.mlagent.services.ml.StubMLService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunServiceImplTest {
+    private final AsyncTaskExecutor executor = ExecutorConfig.virtualRunExecutor(100);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentResumesLaunchAFailedRunOnce() throws InterruptedException {
+        BlockingAgentService agentService = new BlockingAgentService();
+        RunServiceImpl runService = new RunServiceImpl(agentService, new StubMLService(),
+                new FileCheckpointStore(directory), executor);
+        String runId = runService.startRun("titanic", "titanic", false, null, null).getRunId();
+        awaitState(runService, runId, RunState.FAILED);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Optional<RunStatus>>> resumes = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            resumes.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return runService.resumeRun(runId);
+            }, executor));
+        }
+        start.countDown();
+
+        // the losers see the resumed run as queued and are turned away
+        long launched = resumes.stream()
+                .map(resume -> resume.handle((status, error) -> status != null && status.isPresent()).join())
+                .filter(Boolean::booleanValue)
+                .count();
+        assertThat(launched).isEqualTo(1);
+        assertThat(agentService.submitted).hasValue(2);
+        agentService.release.countDown();
+        awaitState(runService, runId, RunState.SUCCEEDED);
+    }
+
+    @Test
+    void expiredCheckpointsAreSweptOncePerInterval() {
+        AtomicInteger sweeps = new AtomicInteger();
+        FileCheckpointStore store = new FileCheckpointStore(directory) {
+            @Override
+            public void deleteOlderThan(Instant cutoff) {
+                sweeps.incrementAndGet();
+                super.deleteOlderThan(cutoff);
+            }
+        };
+        BlockingAgentService agentService = new BlockingAgentService();
+        RunServiceImpl runService = new RunServiceImpl(agentService, new StubMLService(), store, executor);
+
+        for (int i = 0; i < 5; i++) {
+            runService.startRun("titanic", "titanic", false, null, null);
+        }
+        assertThat(sweeps).hasValue(1);
+
+        ReflectionTestUtils.setField(runService, "checkpointSweepIntervalMinutes", 0L);
+        runService.startRun("titanic", "titanic", false, null, null);
+        assertThat(sweeps).hasValue(2);
+        agentService.release.countDown();
+    }
+
+    private static void awaitState(RunServiceImpl runService, String runId, RunState state) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            if (runService.getRun(runId).orElseThrow().getState() == state) {
+                return;
+            }
+            Thread.sleep(25);
+        }
+        throw new AssertionError("run did not reach " + state);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // fails the first run, then holds every resumed run until released
+    private class BlockingAgentService implements AgentService {
+        private final AtomicInteger submitted = new AtomicInteger();
+        private final AtomicInteger orchestrated = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public ResponseStatus machineLearningOrchestrator(AgentRunContext context) {
+            boolean first = orchestrated.getAndIncrement() == 0;
+            if (!first) {
+                await(release);
+            }
+            return ResponseStatus.builder().status(first ? "Failure" : "success").message("").details("").build();
+        }
+
+        @Override
+        public CompletableFuture<ResponseStatus> submitOrchestration(AgentRunContext context) {
+            submitted.incrementAndGet();
+            return executor.submitCompletable(() -> machineLearningOrchestrator(context));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ryanburnsworth.mlagent.mlagent.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingCellParserTest {
+    private static final String CELLS_JSON = """
+            [{"cell_type": "code", "metadata": {"tags": ["split"]}, "source": ["print(\\"a \\\\\\"quoted\\\\\\" word\\")\\n", "df = df[df['Age'] > 0]\\n"], "outputs": [], "execution_count": null},
+             {"cell_type": "markdown", "metadata": {}, "source": ["## Résumé 📊 with a \\"title\\"\\n"]}]
+            """;
+
+    @Test
+    void cellsSplitAtEveryCharacterMatchTheWholeResponse() {
+        List<Map<String, Object>> expected = Util.getJsonFromListContent(CELLS_JSON);
+
+        StreamingCellParser parser = new StreamingCellParser();
+        List<Map<String, Object>> cells = new ArrayList<>();
+        CELLS_JSON.codePoints().forEach(codePoint -> cells.addAll(parser.feed(Character.toString(codePoint))));
+        cells.addAll(parser.finish());
+
+        assertThat(cells).isEqualTo(expected);
+    }
+
+    @Test
+    void escapedQuotesSplitAcrossChunksStayInTheSource() {
+        StreamingCellParser parser = new StreamingCellParser();
+        // the first chunk ends on the backslash escaping the closing quote of "a \"quoted\""
+        int split = CELLS_JSON.indexOf("\\\\\\\"quoted") + 1;
+        List<Map<String, Object>> cells = new ArrayList<>(parser.feed(CELLS_JSON.substring(0, split)));
+        assertThat(cells).isEmpty();
+
+        cells.addAll(parser.feed(CELLS_JSON.substring(split)));
+        cells.addAll(parser.finish());
+
+        assertThat(cells).hasSize(2);
+        assertThat((List<?>) cells.get(0).get("source")).first().isEqualTo("print(\"a \\\"quoted\\\" word\")\n");
+        assertThat((List<?>) cells.get(1).get("source")).first().isEqualTo("## Résumé 📊 with a \"title\"\n");
+    }
+
+    @Test
+    void surrogatePairSplitAcrossChunksIsDecodedOnce() {
+        StreamingCellParser parser = new StreamingCellParser();
+        String json = "[{\"source\": [\"📊\"]}]";
+        int split = json.indexOf("📊") + 1;
+
+        List<Map<String, Object>> cells = new ArrayList<>(parser.feed(json.substring(0, split)));
+        cells.addAll(parser.feed(json.substring(split)));
+        cells.addAll(parser.finish());
+
+        assertThat(cells).singleElement().satisfies(cell -> assertThat(cell.get("source")).isEqualTo(List.of("📊")));
+    }
+
+    @Test
+    void cellIsReturnedAsSoonAsItCloses() {
+        StreamingCellParser parser = new StreamingCellParser();
+        int firstCellEnd = CELLS_JSON.indexOf("},\n") + 1;
+
+        assertThat(parser.feed(CELLS_JSON.substring(0, firstCellEnd - 1))).isEmpty();
+        assertThat(parser.feed(CELLS_JSON.substring(firstCellEnd - 1, firstCellEnd))).hasSize(1);
+    }
+
+    @Test
+    void responseThatIsNotAnArrayIsRejected() {
+        StreamingCellParser parser = new StreamingCellParser();
+
+        assertThatThrownBy(() -> parser.feed("{\"cells\": []}")).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void unterminatedArrayIsRejectedAtTheEnd() {
+        StreamingCellParser parser = new StreamingCellParser();
+        parser.feed("[{\"cell_type\": \"code\"}");
+
+        assertThatThrownBy(parser::finish).isInstanceOf(UncheckedIOException.class);
+    }
+}
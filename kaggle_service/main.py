@@ -1,16 +1,22 @@
-from typing import Any, Dict, List
-from fastapi import FastAPI, Request
+from typing import Any, Dict, List, Optional
+from fastapi import FastAPI, Header, Request
 from fastapi.exceptions import RequestValidationError
 from fastapi.responses import JSONResponse
 from services.dataset_service import DatasetService
-from services.notebook_service import NotebookService
+from services.kernel_session import kernel_sessions
+from services.notebook_service import KERNEL_SESSIONS_ENABLED, NotebookService
 from pydantic import BaseModel
+from tracing import setup_tracing
 
 app = FastAPI()
+setup_tracing(app)
 
 class CreateNotebookRequest(BaseModel):
     notebook_content: dict
 
+class BranchRequest(BaseModel):
+    branch: str
+
 """
     Download a dataset from Kaggle by providing a search term.
 """
@@ -32,13 +38,38 @@ def download_dataset(search_term: str):
         )
 
 
+"""
+    Download the top candidate datasets for a search term, for runs that compare several datasets.
+"""
+@app.get("/dataset/candidates/{search_term}")
+def download_candidates(search_term: str, count: int = 3):
+    dataset_service = DatasetService()
+
+    try:
+        candidates = dataset_service.download_candidates(search_term, count)
+        if not candidates:
+            raise Exception("No candidate datasets could be downloaded.")
+        return candidates
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error downloading candidate datasets.", 
+                "details": str(e)
+            }
+        )
+
+
 """
     Create a notebook and test it.
 """
 @app.post("/notebook/create/{notebook_name}")
-def create_notebook(notebook_name: str, request: CreateNotebookRequest):
+def create_notebook(notebook_name: str, request: CreateNotebookRequest,
+                    x_kernel_pool: Optional[str] = Header(default=None),
+                    x_sample_rows: Optional[int] = Header(default=None)):
     try:
-        notebook_service = NotebookService("ryanburnsworth", notebook_name)
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool, x_sample_rows)
         notebook_service.create_update_test_notebook(content=request.notebook_content, isCreate=True)
 
     except Exception as e:
@@ -65,9 +96,11 @@ def create_notebook(notebook_name: str, request: CreateNotebookRequest):
     Append to an existing notebook and test it.
 """
 @app.post("/notebook/update/{notebook_name}")
-def update_notebook(notebook_name: str,  cell_contents: List[Dict[str, Any]]):
+def update_notebook(notebook_name: str,  cell_contents: List[Dict[str, Any]],
+                    x_kernel_pool: Optional[str] = Header(default=None),
+                    x_sample_rows: Optional[int] = Header(default=None)):
     try:
-        notebook_service = NotebookService("ryanburnsworth", notebook_name)
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool, x_sample_rows)
         notebook_service.create_update_test_notebook(content=cell_contents, isCreate=False)
 
     except Exception as e:
@@ -90,6 +123,198 @@ def update_notebook(notebook_name: str,  cell_contents: List[Dict[str, Any]]):
     )
 
 
+"""
+    Append cells to an existing notebook and run only those cells against the notebook's live
+    kernel, returning the outputs and error of each one.
+"""
+@app.post("/notebook/execute/{notebook_name}")
+def execute_cells(notebook_name: str, cell_contents: List[Dict[str, Any]],
+                  x_kernel_pool: Optional[str] = Header(default=None),
+                  x_sample_rows: Optional[int] = Header(default=None)):
+    try:
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool, x_sample_rows)
+        result = notebook_service.execute_cells(content=cell_contents, isCreate=False)
+
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error executing notebook cells.", 
+                "details": str(e),
+                "cells": []
+            }
+        )
+
+    if result["status"] != "success":
+        result["message"] = "Error executing notebook cells."
+        return JSONResponse(status_code = 500, content = result)
+
+    return JSONResponse(status_code = 200, content = result)
+
+
+"""
+    Execute the whole notebook once on the full dataset, after its steps were validated on a sample.
+"""
+@app.post("/notebook/validate/{notebook_name}")
+def validate_notebook(notebook_name: str, x_kernel_pool: Optional[str] = Header(default=None)):
+    try:
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool)
+        result = notebook_service.execute_full_data()
+        if result["status"] != "success":
+            raise Exception(str(result["details"]))
+
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error executing notebook on the full dataset.", 
+                "details": str(e)
+            }
+        )
+
+    return JSONResponse(
+        status_code = 200,
+        content = {
+            "status": "success", 
+            "message": "", 
+            "details": ""
+        }
+    )
+
+
+"""
+    Evaluation metrics the notebook printed, used to rank notebooks built from different datasets.
+"""
+@app.get("/notebook/metrics/{notebook_name}")
+def notebook_metrics(notebook_name: str):
+    notebook_service = NotebookService("ryanburnsworth", notebook_name)
+    metrics = notebook_service.read_metrics()
+    if metrics is None:
+        return JSONResponse(
+            status_code = 404,
+            content = {
+                "status": "error", 
+                "message": "No metrics found in notebook.", 
+                "details": "",
+                "metrics": {}
+            }
+        )
+
+    return JSONResponse(
+        status_code = 200,
+        content = {
+            "status": "success", 
+            "message": "", 
+            "details": "",
+            "metrics": metrics
+        }
+    )
+
+
+"""
+    Copy a notebook into a branch notebook, so several training branches can be executed side by side.
+"""
+@app.post("/notebook/fork/{notebook_name}")
+def fork_notebook(notebook_name: str, request: BranchRequest,
+                  x_kernel_pool: Optional[str] = Header(default=None)):
+    try:
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool)
+        notebook_service.fork_notebook(request.branch)
+
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error forking notebook.", 
+                "details": str(e)
+            }
+        )
+
+    return JSONResponse(
+        status_code = 200,
+        content = {
+            "status": "success", 
+            "message": "", 
+            "details": ""
+        }
+    )
+
+
+"""
+    Replace a notebook with the branch that won, handing the branch's kernel over to the notebook.
+"""
+@app.post("/notebook/merge/{notebook_name}")
+def merge_branch(notebook_name: str, request: BranchRequest,
+                 x_kernel_pool: Optional[str] = Header(default=None)):
+    try:
+        notebook_service = NotebookService("ryanburnsworth", notebook_name, x_kernel_pool)
+        notebook_service.merge_branch(request.branch)
+
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error merging notebook branch.", 
+                "details": str(e)
+            }
+        )
+
+    return JSONResponse(
+        status_code = 200,
+        content = {
+            "status": "success", 
+            "message": "", 
+            "details": ""
+        }
+    )
+
+
+"""
+    Delete a notebook and shut down its kernel, used for branches that lost.
+"""
+@app.post("/notebook/discard/{notebook_name}")
+def discard_notebook(notebook_name: str):
+    try:
+        notebook_service = NotebookService("ryanburnsworth", notebook_name)
+        notebook_service.discard_notebook()
+
+    except Exception as e:
+        return JSONResponse(
+            status_code = 500,
+            content = {
+                "status": "error", 
+                "message": "Error discarding notebook.", 
+                "details": str(e)
+            }
+        )
+
+    return JSONResponse(
+        status_code = 200,
+        content = {
+            "status": "success", 
+            "message": "", 
+            "details": ""
+        }
+    )
+
+
+"""
+    Warm the kernel pools in the background as soon as the service starts.
+"""
+@app.on_event("startup")
+def start_kernel_pools():
+    if KERNEL_SESSIONS_ENABLED:
+        kernel_sessions.start()
+
+
+@app.on_event("shutdown")
+def shutdown_kernels():
+    kernel_sessions.shutdown_all()
+
 
 @app.exception_handler(RequestValidationError)
 async def exception_handler(request: Request, exc: RequestValidationError):
@@ -1,4 +1,5 @@
 import json
+from concurrent.futures import ThreadPoolExecutor
 from pathlib import Path
 import subprocess
 
@@ -16,62 +17,104 @@ class DatasetService:
     
     """
     def download_dataset(self, search_term):
+        try:
+            dataset_name = self.search_datasets(search_term, 1)[0]
+            return self.download_dataset_by_name(dataset_name)
+        except subprocess.CalledProcessError as e:
+            print("An error occurred while downloading the dataset:", e)
+            return e
+
+
+    """
+    
+    Download the top count hottest datasets for the search term in parallel. Candidates that fail
+    to download or contain no CSV files are skipped.
+    
+    """
+    def download_candidates(self, search_term, count):
+        dataset_names = self.search_datasets(search_term, count)
+
+        with ThreadPoolExecutor(max_workers=max(len(dataset_names), 1)) as executor:
+            records = list(executor.map(self.try_download_dataset, dataset_names))
+
+        candidates = [record for record in records if isinstance(record, dict)]
+        print(f"Downloaded {len(candidates)} of {len(dataset_names)} candidate datasets")
+        return candidates
+
+
+    def try_download_dataset(self, dataset_name):
+        try:
+            return self.download_dataset_by_name(dataset_name)
+        except Exception as e:
+            print(f"Skipping candidate dataset {dataset_name}:", e)
+            return None
+
+
+    """
+    
+    Get the names of the hottest datasets on Kaggle matching the search term
+    
+    """
+    def search_datasets(self, search_term, count):
         cmd = [
             "kaggle", "datasets", "list",
             "--search", f"{search_term}",
             "--sort-by", "hottest"
         ]
 
-        try:
-            print("Searching for datasets using term:", search_term)
+        print("Searching for datasets using term:", search_term)
 
-            result = subprocess.run(cmd, capture_output=True, text=True, check=True)
-            output = result.stdout
+        result = subprocess.run(cmd, capture_output=True, text=True, check=True)
+        output = result.stdout
 
-            if (output.lower == "no datasets found"):
-                print("No datasets found.")
-                raise Exception("No datasets found.")
+        if (output.lower == "no datasets found"):
+            print("No datasets found.")
+            raise Exception("No datasets found.")
 
-            lines = output.strip().split("\n")
+        lines = output.strip().split("\n")
 
-            data_lines = lines[2:]
+        data_lines = [line for line in lines[2:] if line.strip()]
 
-            first_line = data_lines[0]
+        dataset_names = [line.split()[0] for line in data_lines[:count]]
 
-            dataset_name = first_line.split()[0]
+        print("Datasets found named:", dataset_names)
 
-            print("Dataset found named:", dataset_name)
+        return dataset_names
 
-            download_path = Path(self.workdir) / dataset_name
-            Path(download_path).mkdir(parents=True, exist_ok=True)
 
-            print("Downloading dataset to:", download_path)
+    """
+    
+    Download a dataset by its Kaggle reference and describe it
+    
+    """
+    def download_dataset_by_name(self, dataset_name):
+        download_path = Path(self.workdir) / dataset_name
+        Path(download_path).mkdir(parents=True, exist_ok=True)
 
-            subprocess.run(
-                ["kaggle", "datasets", "download", dataset_name, "-p", download_path, "--unzip"],
-                check=True
-            )
+        print("Downloading dataset to:", download_path)
 
-            print(f"Dataset downloaded to {download_path}")
+        subprocess.run(
+            ["kaggle", "datasets", "download", dataset_name, "-p", download_path, "--unzip"],
+            check=True
+        )
 
-            datasets_paths = self.list_datasets(Path(download_path))
-            if datasets_paths is None:
-                print("No datasets found after download.")
-                raise Exception("No datasets found after download.")
+        print(f"Dataset downloaded to {download_path}")
 
-            # get the dataset names without the .csv extension
-            datasets = [p.stem for p in datasets_paths]
+        datasets_paths = self.list_datasets(Path(download_path))
+        if datasets_paths is None:
+            print("No datasets found after download.")
+            raise Exception("No datasets found after download.")
 
-            print(f"Datasets downloaded: {datasets} ")
+        # get the dataset names without the .csv extension
+        datasets = [p.stem for p in datasets_paths]
 
-            dataset_details = self.get_dataset_details(dataset_name, datasets)
-            if dataset_details is None:
-                print("Failed to get dataset details.")
-                raise Exception("Failed to get dataset details.")
-            return dataset_details
-        except subprocess.CalledProcessError as e:
-            print("An error occurred while downloading the dataset:", e)
-            return e
+        print(f"Datasets downloaded: {datasets} ")
+
+        dataset_details = self.get_dataset_details(dataset_name, datasets, download_path)
+        if dataset_details is None:
+            print("Failed to get dataset details.")
+            raise Exception("Failed to get dataset details.")
+        return dataset_details
 
 
     """
@@ -79,12 +122,12 @@ class DatasetService:
     Get detailed information about the dataset including title, description, datasets, headers, and top 25 rows
     
     """
-    def get_dataset_details(self, dataset_name, datasets):
+    def get_dataset_details(self, dataset_name, datasets, download_path=Path(".")):
         print("Getting dataset details...")
 
         try:
             # extract the dataset details
-            data = self.get_dataset_manifest(dataset_name)
+            data = self.get_dataset_manifest(dataset_name, download_path)
             if data is None:
                 print("No manifest data found.")
                 raise Exception("No manifest data found.")
@@ -118,17 +161,17 @@ class DatasetService:
     Get the dataset manifest as a dictionary
     
     """
-    def get_dataset_manifest(self, dataset_name):
+    def get_dataset_manifest(self, dataset_name, download_path=Path(".")):
         print("Getting dataset manifest...")
 
         try:
-            # downloads the datasets metadata
+            # downloads the datasets metadata next to the data, so parallel downloads never share the file
             subprocess.run(
-                ["kaggle", "datasets", "metadata", dataset_name],
+                ["kaggle", "datasets", "metadata", dataset_name, "-p", download_path],
                 check=True
             )
 
-            with open("./dataset-metadata.json", "r", encoding="utf-8") as f:
+            with open(Path(download_path) / "dataset-metadata.json", "r", encoding="utf-8") as f:
                 raw = f.read().strip()
 
             # Decode twice (since the file has JSON stored as a string)
@@ -0,0 +1,344 @@
+import os
+import re
+import threading
+from collections import OrderedDict, deque
+from jupyter_client.manager import KernelManager
+
+KERNEL_NAME = os.getenv("KERNEL_NAME", "python3")
+KERNEL_STARTUP_TIMEOUT = int(os.getenv("KERNEL_STARTUP_TIMEOUT_SECONDS", "60"))
+CELL_TIMEOUT = int(os.getenv("KERNEL_CELL_TIMEOUT_SECONDS", "1800"))
+MAX_SESSIONS = int(os.getenv("KERNEL_MAX_SESSIONS", "8"))
+POOL_SIZE = int(os.getenv("KERNEL_POOL_SIZE", "2"))
+POOL_PRELOAD = os.getenv("KERNEL_POOL_PRELOAD", "pandas,numpy,sklearn,matplotlib.pyplot")
+# extra pools a run can ask for by name, e.g. "deep=torch,pandas;light=pandas"
+EXTRA_POOLS = os.getenv("KERNEL_POOLS", "")
+HEALTH_INTERVAL = int(os.getenv("KERNEL_POOL_HEALTH_INTERVAL_SECONDS", "30"))
+RECYCLE_AFTER = int(os.getenv("KERNEL_RECYCLE_AFTER", "20"))
+DEFAULT_POOL = "default"
+
+ANSI_ESCAPE = re.compile(r"\x1b\[[0-9;]*m")
+
+
+"""
+
+    A live kernel for one notebook. It remembers how many notebook cells it has executed, so
+    appended cells run against the state the earlier cells left behind instead of from scratch.
+    It also remembers the sample size its dataset reads were made with, since that state is only
+    valid for cells run on the same sample.
+
+"""
+class KernelSession:
+    def __init__(self, preload=()):
+        self.notebook_name = None
+        self.executed_cells = 0
+        # rows pandas.read_csv samples the dataset files down to in this kernel, 0 reads them in full
+        self.sample_rows = 0
+        self.executions = 0
+        self.lock = threading.Lock()
+        self.kernel_manager = KernelManager(kernel_name=KERNEL_NAME)
+        self.kernel_manager.start_kernel()
+        self.client = self.kernel_manager.client()
+        self.client.start_channels()
+        self.client.wait_for_ready(timeout=KERNEL_STARTUP_TIMEOUT)
+        if preload:
+            self.warm_up(preload)
+        print(f"Started kernel with {len(preload)} preloaded modules")
+
+
+    """
+
+    Import the given modules so the notebook's own imports are cache hits, without leaving any
+    names behind in the notebook's namespace
+
+    """
+    def warm_up(self, modules):
+        self.client.execute_interactive(
+            "import importlib\n"
+            f"for _module in {list(modules)!r}:\n"
+            "    try:\n"
+            "        importlib.import_module(_module)\n"
+            "    except ImportError:\n"
+            "        pass\n"
+            "del importlib, _module\n",
+            timeout=KERNEL_STARTUP_TIMEOUT, output_hook=lambda msg: None, allow_stdin=False
+        )
+
+
+    def is_alive(self):
+        try:
+            return self.kernel_manager.is_alive()
+        except Exception:
+            return False
+
+
+    """
+
+    Execute one cell and collect its outputs the way they are stored in an .ipynb file
+
+    """
+    def run_cell(self, source):
+        outputs = []
+
+        def collect(msg):
+            msg_type = msg["msg_type"]
+            content = msg["content"]
+            if msg_type == "stream":
+                outputs.append({"output_type": "stream", "name": content["name"], "text": content["text"]})
+            elif msg_type in ("display_data", "execute_result"):
+                output = {"output_type": msg_type, "data": content["data"], "metadata": content.get("metadata", {})}
+                if msg_type == "execute_result":
+                    output["execution_count"] = content["execution_count"]
+                outputs.append(output)
+            elif msg_type == "error":
+                outputs.append({
+                    "output_type": "error",
+                    "ename": content["ename"],
+                    "evalue": content["evalue"],
+                    "traceback": content["traceback"],
+                })
+
+        reply = self.client.execute_interactive(
+            source, timeout=CELL_TIMEOUT, output_hook=collect, allow_stdin=False, stop_on_error=True
+        )
+        return reply["content"], outputs
+
+
+    def shutdown(self):
+        try:
+            self.client.stop_channels()
+            self.kernel_manager.shutdown_kernel(now=True)
+            print(f"Shut down kernel for notebook {self.notebook_name}")
+        except Exception as e:
+            print("An error occurred while shutting down the kernel:", e)
+
+
+"""
+
+    Idle kernels started ahead of time with the pool's modules already imported. A background
+    thread replaces kernels that died while idle and tops the pool back up after each hand-out.
+
+"""
+class KernelPool:
+    def __init__(self, name, preload, size=POOL_SIZE, session_factory=KernelSession):
+        self.name = name
+        self.preload = tuple(preload)
+        self.size = size
+        self.session_factory = session_factory
+        self.idle = deque()
+        self.lock = threading.Lock()
+        self.wake = threading.Event()
+        self.stopped = threading.Event()
+        self.thread = None
+
+
+    def start(self):
+        if self.size > 0 and self.thread is None:
+            self.thread = threading.Thread(target=self.maintain, name=f"kernel-pool-{self.name}", daemon=True)
+            self.thread.start()
+
+
+    """
+
+    Hand out a warm kernel, or start one on the caller's thread when the pool has run dry
+
+    """
+    def acquire(self):
+        session = None
+        dead = []
+        with self.lock:
+            while self.idle and session is None:
+                candidate = self.idle.popleft()
+                if candidate.is_alive():
+                    session = candidate
+                else:
+                    dead.append(candidate)
+        self.wake.set()
+        for candidate in dead:
+            candidate.shutdown()
+
+        if session is None:
+            print(f"Kernel pool {self.name} is empty, starting a kernel on demand")
+            session = self.session_factory(self.preload)
+        return session
+
+
+    def maintain(self):
+        while not self.stopped.is_set():
+            with self.lock:
+                dead = [session for session in self.idle if not session.is_alive()]
+                for session in dead:
+                    self.idle.remove(session)
+                missing = self.size - len(self.idle)
+            for session in dead:
+                print(f"Replacing dead kernel in pool {self.name}")
+                session.shutdown()
+
+            for _ in range(missing):
+                if self.stopped.is_set():
+                    break
+                try:
+                    session = self.session_factory(self.preload)
+                except Exception as e:
+                    print(f"An error occurred while warming a kernel for pool {self.name}:", e)
+                    break
+                with self.lock:
+                    self.idle.append(session)
+
+            self.wake.wait(HEALTH_INTERVAL)
+            self.wake.clear()
+
+
+    def shutdown(self):
+        self.stopped.set()
+        self.wake.set()
+        with self.lock:
+            sessions = list(self.idle)
+            self.idle.clear()
+        for session in sessions:
+            session.shutdown()
+
+
+"""
+
+    Keeps the most recently used kernels alive. An evicted notebook simply gets a fresh kernel
+    that replays its saved cells on the next execution.
+
+"""
+class KernelSessionManager:
+    def __init__(self, pools=None, max_sessions=MAX_SESSIONS, recycle_after=RECYCLE_AFTER):
+        self.pools = pools if pools is not None else configured_pools()
+        self.max_sessions = max_sessions
+        self.recycle_after = recycle_after
+        self.sessions = OrderedDict()
+        self.lock = threading.Lock()
+
+
+    def start(self):
+        for pool in self.pools.values():
+            pool.start()
+
+
+    """
+
+    Return the notebook's kernel, binding a kernel from the hinted pool (or the default one) the
+    first time the notebook is executed
+
+    """
+    def get(self, notebook_name, pool_hint=None):
+        evicted = []
+        with self.lock:
+            session = self.sessions.get(notebook_name)
+        if session is None:
+            # warm kernels are handed out instantly; a cold start must not block other notebooks
+            session = self.pool(pool_hint).acquire()
+            session.notebook_name = notebook_name
+
+        with self.lock:
+            current = self.sessions.get(notebook_name)
+            if current is not None and current is not session:
+                evicted.append(session)
+                session = current
+            self.sessions[notebook_name] = session
+            self.sessions.move_to_end(notebook_name)
+
+            while len(self.sessions) > self.max_sessions:
+                _, oldest = self.sessions.popitem(last=False)
+                evicted.append(oldest)
+
+        for oldest in evicted:
+            oldest.shutdown()
+        return session
+
+
+    def pool(self, pool_hint):
+        pool = self.pools.get(pool_hint or DEFAULT_POOL)
+        if pool is None:
+            print(f"Unknown kernel pool {pool_hint}, using {DEFAULT_POOL}")
+            pool = self.pools[DEFAULT_POOL]
+        return pool
+
+
+    """
+
+    Count an execution against the notebook's kernel and retire the kernel once it has served
+    recycle_after of them. Its replacement comes from the pool and replays the saved cells, which
+    bounds how much memory a long-lived kernel can leak.
+
+    """
+    def release(self, notebook_name, session):
+        session.executions += 1
+        if self.recycle_after > 0 and session.executions >= self.recycle_after:
+            print(f"Recycling kernel of notebook {notebook_name} after {session.executions} executions")
+            self.discard(notebook_name)
+
+
+    """
+
+    Hand a notebook's kernel over to another notebook name, shutting down the kernel that name had.
+    Without a kernel to hand over, the target keeps its own, which replays any cells it has not run.
+
+    """
+    def transfer(self, notebook_name, target_name):
+        with self.lock:
+            session = self.sessions.pop(notebook_name, None)
+            replaced = self.sessions.pop(target_name, None) if session is not None else None
+            if session is not None:
+                session.notebook_name = target_name
+                self.sessions[target_name] = session
+        if replaced is not None:
+            replaced.shutdown()
+
+
+    def discard(self, notebook_name):
+        with self.lock:
+            session = self.sessions.pop(notebook_name, None)
+        if session is not None:
+            session.shutdown()
+
+
+    def shutdown_all(self):
+        with self.lock:
+            sessions = list(self.sessions.values())
+            self.sessions.clear()
+        for session in sessions:
+            session.shutdown()
+        for pool in self.pools.values():
+            pool.shutdown()
+
+
+def parse_modules(modules):
+    return [module.strip() for module in modules.split(",") if module.strip()]
+
+
+def configured_pools():
+    pools = {DEFAULT_POOL: KernelPool(DEFAULT_POOL, parse_modules(POOL_PRELOAD))}
+    for entry in EXTRA_POOLS.split(";"):
+        if "=" in entry:
+            name, modules = entry.split("=", 1)
+            pools[name.strip()] = KernelPool(name.strip(), parse_modules(modules))
+    return pools
+
+
+"""
+
+    Render a kernel error the way papermill reported it, without the terminal colour codes
+
+"""
+def format_error(ename, evalue, traceback_lines):
+    lines = [ANSI_ESCAPE.sub("", line) for line in traceback_lines or []]
+    lines.append(f"{ename}: {evalue}")
+    return "\n".join(lines)
+
+
+def cell_source(cell):
+    source = cell.get("source", "")
+    return "".join(source) if isinstance(source, list) else source
+
+
+def output_text(output):
+    if output["output_type"] == "stream":
+        return output["text"]
+    return output.get("data", {}).get("text/plain", "")
+
+
+kernel_sessions = KernelSessionManager()
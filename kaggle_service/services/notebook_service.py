@@ -1,3 +1,4 @@
+import os
 import shutil
 import time
 import json
@@ -5,12 +6,21 @@ import subprocess
 import traceback
 import papermill as pm
 from pathlib import Path
+from services.kernel_session import kernel_sessions, cell_source, format_error, output_text
+from services.sampling import sampling_setup_source
+from tracing import span
+
+KERNEL_SESSIONS_ENABLED = os.getenv("KERNEL_SESSIONS_ENABLED", "true").lower() == "true"
+METRICS_PREFIX = "METRICS:"
 
 class NotebookService:
 
-    def __init__(self, username, notebook_name):
+    def __init__(self, username, notebook_name, kernel_pool=None, sample_rows=None):
         self.USERNAME = username
         self.NOTEBOOK_NAME = notebook_name
+        self.KERNEL_POOL = kernel_pool
+        # validate against a stratified sample of this many rows per dataset file, 0 uses the full data
+        self.SAMPLE_ROWS = max(int(sample_rows or 0), 0)
         self.NOTEBOOK_FILE = f"{self.NOTEBOOK_NAME}.ipynb"
         self.WORKDIR = Path(f"./kaggle_notebook_{self.NOTEBOOK_NAME}")
         self.METADATA_PATH = self.WORKDIR / "kernel-metadata.json"
@@ -22,24 +32,175 @@ class NotebookService:
     
     """
     def create_update_test_notebook(self, content, isCreate):
+        result = self.execute_cells(content, isCreate)
+        if result["status"] != "success":
+            raise Exception(str(result["details"]))
+
+
+    """
+    
+    Create or append to the notebook and execute only the new cells, returning the outcome of each.
+    Without kernel sessions the whole notebook is re-run with papermill instead.
+    
+    """
+    def execute_cells(self, content, isCreate):
         if isCreate:
+            # a new notebook never inherits the kernel state of an earlier one with the same name
+            kernel_sessions.discard(self.NOTEBOOK_NAME)
+            first_new_cell = 0
+
             # create the notebook
             is_create_successful, tb_str = self.create_notebook(content)
             if isinstance(is_create_successful, Exception):
-                raise Exception(str(tb_str))
+                return self.execution_result("error", tb_str)
         else:
             # back up the current notebook before appending new data
             self.backup_notebook()
+            first_new_cell = len(self.read_notebook(self.NOTEBOOK_NAME)["cells"])
 
             # append to the notebook
             is_update_complete, tb_str = self.append_cells_to_notebook(content)
             if isinstance(is_update_complete, Exception):
-                raise Exception(str(tb_str))
+                return self.execution_result("error", tb_str)
+
+        if not KERNEL_SESSIONS_ENABLED:
+            # test the whole notebook
+            ex, tb_str = self.test_notebook()
+            if isinstance(ex, Exception):
+                return self.execution_result("error", tb_str)
+            return self.execution_result("success")
+
+        return self.run_new_cells(first_new_cell)
+
+
+    """
+    
+    Run the cells from first_new_cell on against the notebook's live kernel. A fresh kernel, after a
+    revert or a restart, first replays the saved cells before them. A failing cell reverts the
+    notebook, unless revert is off, and discards the kernel, since its state now includes the
+    rejected cells.
+    
+    """
+    def run_new_cells(self, first_new_cell, revert=True):
+        notebook = self.read_notebook(self.NOTEBOOK_NAME)
+        cells = notebook["cells"]
+
+        session = kernel_sessions.get(self.NOTEBOOK_NAME, self.KERNEL_POOL)
+        if session.executed_cells > first_new_cell or (
+                session.executed_cells > 0 and session.sample_rows != self.SAMPLE_ROWS):
+            # the kernel has run cells the saved notebook no longer has, or ran them on other data
+            kernel_sessions.discard(self.NOTEBOOK_NAME)
+            session = kernel_sessions.get(self.NOTEBOOK_NAME, self.KERNEL_POOL)
+
+        results = []
+        error = None
+        with session.lock, span("kernel.execute_cells", notebook=self.NOTEBOOK_NAME,
+                                cells=len(cells) - first_new_cell, replayed=max(first_new_cell - session.executed_cells, 0)):
+            print(f"Executing cells {first_new_cell}-{len(cells) - 1} of notebook {self.NOTEBOOK_NAME}")
+
+            if session.sample_rows != self.SAMPLE_ROWS:
+                error = self.set_sample_rows(session)
+            pending = range(session.executed_cells, len(cells)) if error is None else range(0)
+            for index in pending:
+                cell = cells[index]
+                if cell.get("cell_type") != "code":
+                    session.executed_cells = index + 1
+                    continue
+
+                try:
+                    reply, outputs = session.run_cell(cell_source(cell))
+                except Exception as e:
+                    # timed out or the kernel died, either way its state can no longer be trusted
+                    print("An error occurred while executing the notebook:", e)
+                    reply = {"status": "error", "ename": type(e).__name__, "evalue": str(e),
+                             "traceback": traceback.format_exc().splitlines()}
+                    outputs = []
+
+                if index >= first_new_cell:
+                    cell["outputs"] = outputs
+                    cell["execution_count"] = reply.get("execution_count")
+                    results.append(self.cell_result(index, reply, outputs))
+
+                if reply["status"] != "ok":
+                    error = format_error(reply.get("ename"), reply.get("evalue"), reply.get("traceback"))
+                    if index < first_new_cell:
+                        error = f"Replaying saved cell {index} failed:\n{error}"
+                    break
+                session.executed_cells = index + 1
+
+        if error is not None:
+            if revert:
+                self.revert_notebook()
+            kernel_sessions.discard(self.NOTEBOOK_NAME)
+            return self.execution_result("error", error, results)
+
+        self.write_to_notebook(notebook, self.WORKDIR / self.NOTEBOOK_FILE)
+        kernel_sessions.release(self.NOTEBOOK_NAME, session)
+        print(f"Executed {len(results)} new cells of notebook {self.NOTEBOOK_NAME}")
+        return self.execution_result("success", cells=results)
 
-        # test the notebook
-        ex, tb_str = self.test_notebook()
-        if isinstance(ex, Exception):
-            raise Exception(str(tb_str))
+
+    """
+
+    Switch the kernel's dataset reads to this run's sample size before it runs any notebook cell.
+    Returns the error if the kernel could not be switched.
+
+    """
+    def set_sample_rows(self, session):
+        print(f"Sampling dataset reads of notebook {self.NOTEBOOK_NAME} to {self.SAMPLE_ROWS} rows")
+        try:
+            reply, _ = session.run_cell(sampling_setup_source(self.SAMPLE_ROWS))
+        except Exception as e:
+            return f"Setting up dataset sampling failed: {e}"
+        if reply["status"] != "ok":
+            return "Setting up dataset sampling failed:\n" + format_error(
+                reply.get("ename"), reply.get("evalue"), reply.get("traceback"))
+        session.sample_rows = self.SAMPLE_ROWS
+        return None
+
+
+    """
+
+    Execute the whole notebook once on the full dataset, on a fresh kernel since the current one
+    holds state computed from a sample. The outputs, and with them the metrics, are replaced by the
+    full-data ones. A failure leaves the notebook as it is.
+
+    """
+    def execute_full_data(self):
+        if self.read_notebook(self.NOTEBOOK_NAME) is None:
+            raise Exception(f"Notebook {self.NOTEBOOK_NAME} does not exist.")
+
+        with span("notebook.execute_full_data", notebook=self.NOTEBOOK_NAME):
+            if not KERNEL_SESSIONS_ENABLED:
+                ex, tb_str = self.test_notebook(revert=False)
+                if isinstance(ex, Exception):
+                    return self.execution_result("error", tb_str)
+                return self.execution_result("success")
+
+            kernel_sessions.discard(self.NOTEBOOK_NAME)
+            return self.run_new_cells(0, revert=False)
+
+
+    def cell_result(self, index, reply, outputs):
+        failed = reply["status"] != "ok"
+        return {
+            "index": index,
+            "status": reply["status"],
+            "execution_count": reply.get("execution_count"),
+            "outputs": [output_text(output) for output in outputs if output["output_type"] != "error"],
+            "ename": reply.get("ename") if failed else None,
+            "evalue": reply.get("evalue") if failed else None,
+            "traceback": format_error(reply.get("ename"), reply.get("evalue"), reply.get("traceback")) if failed else None,
+        }
+
+
+    def execution_result(self, status, details="", cells=None):
+        return {
+            "status": status,
+            "message": "",
+            "details": details or "",
+            "cells": cells or [],
+        }
 
 
     """
@@ -95,10 +256,11 @@ class NotebookService:
 
     """
     
-    Test the notebook execution using papermill
+    Test the notebook execution using papermill. With a sample size, a copy of the notebook that
+    first switches its dataset reads to the sample is executed instead.
 
     """
-    def test_notebook(self):
+    def test_notebook(self, revert=True):
         print("Testing notebook execution...")
         
         #notebook_path, _ = self.backup_notebook()
@@ -106,20 +268,38 @@ class NotebookService:
         notebook_output_path = self.WORKDIR / f"{self.NOTEBOOK_NAME}-output.ipynb"
 
         try:
+            if self.SAMPLE_ROWS > 0:
+                notebook_path = self.write_sampled_notebook()
+
             print("Executing notebook with papermill...")
 
-            pm.execute_notebook(notebook_path, notebook_output_path)
+            with span("papermill.execute_notebook", notebook=self.NOTEBOOK_NAME):
+                pm.execute_notebook(notebook_path, notebook_output_path)
 
             print(f"Executed notebook and saved output to {notebook_output_path}")
         except Exception as e:
             print("An error occurred while executing the notebook:", e)
             tb_str = traceback.format_exc()
-            self.revert_notebook()
+            if revert:
+                self.revert_notebook()
             return e, tb_str
 
         return None, None
 
 
+    def write_sampled_notebook(self):
+        notebook = self.read_notebook(self.NOTEBOOK_NAME)
+        setup_cell = {"cell_type": "code", "execution_count": None, "metadata": {}, "outputs": [],
+                      "source": sampling_setup_source(self.SAMPLE_ROWS)}
+        notebook["cells"] = [setup_cell] + notebook["cells"]
+
+        sampled_path = self.WORKDIR / f"{self.NOTEBOOK_NAME}-sampled.ipynb"
+        is_write_complete = self.write_to_notebook(notebook, sampled_path)
+        if isinstance(is_write_complete, Exception):
+            raise is_write_complete
+        return sampled_path
+
+
     """
     
     Push the notebook to Kaggle and monitor its status
@@ -165,6 +345,100 @@ class NotebookService:
             return e
 
 
+    """
+
+    Find the evaluation metrics the notebook printed as a "METRICS: {...}" line. The executed
+    notebook's outputs are searched, and the last line wins.
+
+    """
+    def read_metrics(self):
+        notebook = self.read_notebook(self.NOTEBOOK_NAME)
+        output_notebook = self.read_notebook(f"{self.NOTEBOOK_NAME}-output")
+        if notebook is None:
+            return None
+
+        metrics = None
+        # papermill keeps outputs in a separate file, kernel sessions in the notebook itself
+        for source in (output_notebook, notebook):
+            if source is None:
+                continue
+            for cell in source.get("cells", []):
+                for output in cell.get("outputs", []):
+                    text = output.get("text", "")
+                    text = "".join(text) if isinstance(text, list) else text
+                    for line in text.splitlines():
+                        if line.startswith(METRICS_PREFIX):
+                            try:
+                                metrics = json.loads(line[len(METRICS_PREFIX):])
+                            except ValueError as e:
+                                print("Ignoring unreadable metrics line:", e)
+            if metrics is not None:
+                break
+
+        return metrics
+
+
+    """
+
+    Copy the notebook to a branch notebook that a training branch can append to without touching
+    this one. The branch gets its own kernel, which replays the copied cells on its first execution.
+
+    """
+    def fork_notebook(self, branch_name):
+        notebook = self.read_notebook(self.NOTEBOOK_NAME)
+        if notebook is None:
+            raise Exception(f"Notebook {self.NOTEBOOK_NAME} does not exist.")
+
+        # a branch left behind by an earlier attempt starts over
+        branch = NotebookService(self.USERNAME, branch_name, self.KERNEL_POOL)
+        branch.discard_notebook()
+        branch.WORKDIR.mkdir(exist_ok=True)
+
+        is_write_complete = branch.write_to_notebook(notebook, branch.WORKDIR / branch.NOTEBOOK_FILE)
+        if isinstance(is_write_complete, Exception):
+            raise is_write_complete
+
+        print(f"Forked notebook {self.NOTEBOOK_NAME} into {branch_name}")
+        return branch
+
+
+    """
+
+    Replace the notebook with a branch forked from it. The branch's kernel already ran every cell of
+    the branch, so it takes over the notebook instead of replaying them.
+
+    """
+    def merge_branch(self, branch_name):
+        branch = NotebookService(self.USERNAME, branch_name, self.KERNEL_POOL)
+        notebook = branch.read_notebook(branch_name)
+        if notebook is None:
+            raise Exception(f"Branch notebook {branch_name} does not exist.")
+
+        is_write_complete = self.write_to_notebook(notebook, self.WORKDIR / self.NOTEBOOK_FILE)
+        if isinstance(is_write_complete, Exception):
+            raise is_write_complete
+
+        # papermill keeps the executed notebook, and with it the metrics, in a separate file
+        branch_output = branch.WORKDIR / f"{branch_name}-output.ipynb"
+        if branch_output.exists():
+            shutil.copy(branch_output, self.WORKDIR / f"{self.NOTEBOOK_NAME}-output.ipynb")
+
+        kernel_sessions.transfer(branch_name, self.NOTEBOOK_NAME)
+        shutil.rmtree(branch.WORKDIR, ignore_errors=True)
+        print(f"Merged branch {branch_name} into notebook {self.NOTEBOOK_NAME}")
+
+
+    """
+
+    Delete the notebook and shut down its kernel
+
+    """
+    def discard_notebook(self):
+        kernel_sessions.discard(self.NOTEBOOK_NAME)
+        shutil.rmtree(self.WORKDIR, ignore_errors=True)
+        print(f"Discarded notebook {self.NOTEBOOK_NAME}")
+
+
     """
 
     Read an existing notebook file and load its content 
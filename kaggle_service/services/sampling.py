@@ -0,0 +1,99 @@
+import functools
+import os
+from pathlib import Path
+
+SAMPLE_SEED = int(os.getenv("SAMPLE_SEED", "42"))
+SAMPLE_MAX_STRATA = int(os.getenv("SAMPLE_MAX_STRATA", "50"))
+# column names Kaggle datasets commonly give their target, checked before the last column
+TARGET_NAMES = ("target", "label", "labels", "class", "y", "outcome", "survived")
+SERVICE_ROOT = str(Path(__file__).resolve().parent.parent)
+
+
+"""
+
+    The column to stratify a sample on: a column named like a target, otherwise the last column, as
+    long as it has few enough distinct values to be a class label
+
+"""
+def stratify_column(frame, rows, max_strata=SAMPLE_MAX_STRATA):
+    if not frame.columns.is_unique:
+        return None
+    candidates = [column for column in frame.columns if str(column).strip().lower() in TARGET_NAMES]
+    if len(frame.columns) > 0:
+        candidates.append(frame.columns[-1])
+
+    for column in candidates:
+        strata = frame[column].nunique(dropna=False)
+        if 1 < strata <= min(max_strata, max(rows // 2, 2)):
+            return column
+    return None
+
+
+"""
+
+    Draw about rows rows from the frame, in their original order. Each class of the stratify column
+    keeps its share of the rows and at least one of them, so every label the full data has is still
+    seen. The same frame and seed always give the same sample.
+
+"""
+def stratified_sample(frame, rows, seed=SAMPLE_SEED, max_strata=SAMPLE_MAX_STRATA):
+    if rows <= 0 or len(frame) <= rows:
+        return frame
+
+    import numpy
+
+    rng = numpy.random.default_rng(seed)
+    column = stratify_column(frame, rows, max_strata)
+    if column is None:
+        positions = rng.choice(len(frame), size=rows, replace=False)
+        return frame.iloc[numpy.sort(positions)]
+
+    groups = frame.groupby(column, dropna=False, sort=False).indices
+    picked = []
+    # groups are visited in a fixed order so the random draws do not depend on the dict order
+    for key in sorted(groups, key=repr):
+        positions = groups[key]
+        share = min(len(positions), max(1, round(rows * len(positions) / len(frame))))
+        picked.append(rng.choice(positions, size=share, replace=False))
+    return frame.iloc[numpy.sort(numpy.concatenate(picked))]
+
+
+"""
+
+    Make pandas.read_csv return a stratified sample of every file larger than rows, or restore the
+    original read_csv when rows is 0. Calls that ask for nrows or chunks are left alone.
+
+"""
+def install_read_csv_sampling(rows, seed=SAMPLE_SEED):
+    import pandas
+
+    original = getattr(pandas.read_csv, "__wrapped__", pandas.read_csv)
+    if rows <= 0:
+        pandas.read_csv = original
+        return
+
+    @functools.wraps(original)
+    def read_csv(*args, **kwargs):
+        frame = original(*args, **kwargs)
+        if isinstance(frame, pandas.DataFrame) and kwargs.get("nrows") is None:
+            return stratified_sample(frame, rows, seed)
+        return frame
+
+    pandas.read_csv = read_csv
+
+
+"""
+
+    Source of the cell that switches a kernel to sampled reads, without leaving any names behind in
+    the notebook's namespace
+
+"""
+def sampling_setup_source(rows, seed=SAMPLE_SEED):
+    return (
+        "import sys as _sys\n"
+        f"if {SERVICE_ROOT!r} not in _sys.path:\n"
+        f"    _sys.path.append({SERVICE_ROOT!r})\n"
+        "from services.sampling import install_read_csv_sampling as _install\n"
+        f"_install({int(rows)}, {int(seed)})\n"
+        "del _sys, _install\n"
+    )
@@ -99,3 +99,19 @@ def test_list_datasets_no_csv(dataset_service, tmp_path):
     """
     result = dataset_service.list_datasets(tmp_path)
     assert result is None
+
+def test_download_candidates_skips_failed_datasets(dataset_service):
+    """
+    Test download_candidates keeps every candidate that downloaded and skips the rest.
+    """
+    def download(dataset_name):
+        if dataset_name == "owner/broken":
+            raise Exception("No datasets found after download.")
+        return {"dataset_name": dataset_name}
+
+    with patch.object(DatasetService, "search_datasets", return_value=["owner/first", "owner/broken", "owner/third"]), \
+         patch.object(DatasetService, "download_dataset_by_name", side_effect=download):
+
+        result = dataset_service.download_candidates("ufo", 3)
+
+        assert [record["dataset_name"] for record in result] == ["owner/first", "owner/third"]
@@ -0,0 +1,176 @@
+import json
+import threading
+import pytest
+from unittest.mock import patch
+from services import notebook_service as notebook_module
+from services.kernel_session import KernelPool, KernelSessionManager
+from services.notebook_service import NotebookService
+from services.sampling import sampling_setup_source
+
+
+class FakeSession:
+    def __init__(self, preload=()):
+        self.notebook_name = None
+        self.preload = preload
+        self.executed_cells = 0
+        self.sample_rows = 0
+        self.executions = 0
+        self.lock = threading.Lock()
+        self.sources = []
+        self.closed = False
+        self.alive = True
+
+    def is_alive(self):
+        return self.alive
+
+    def run_cell(self, source):
+        self.sources.append(source)
+        if "raise" in source:
+            return {"status": "error", "ename": "ValueError", "evalue": "bad", "traceback": ["\x1b[31mValueError\x1b[0m"]}, []
+        return {"status": "ok", "execution_count": len(self.sources)}, [{"output_type": "stream", "name": "stdout", "text": source}]
+
+    def shutdown(self):
+        self.closed = True
+
+
+def fake_pools(size=0):
+    return {"default": KernelPool("default", ["pandas"], size=size, session_factory=FakeSession)}
+
+
+@pytest.fixture
+def sessions():
+    manager = KernelSessionManager(fake_pools(), max_sessions=2, recycle_after=0)
+    with patch.object(notebook_module, "kernel_sessions", manager), \
+            patch.object(notebook_module, "KERNEL_SESSIONS_ENABLED", True):
+        yield manager
+
+
+def code(source):
+    return {"cell_type": "code", "source": source, "metadata": {}, "outputs": []}
+
+
+def test_update_runs_only_appended_cells(sessions):
+    service = NotebookService("user", "incremental_notebook")
+    (service.WORKDIR / service.NOTEBOOK_FILE).unlink(missing_ok=True)
+
+    assert service.execute_cells({"cells": [code("load()")]}, isCreate=True)["status"] == "success"
+    result = service.execute_cells([code("train()")], isCreate=False)
+
+    assert result["status"] == "success"
+    assert [cell["index"] for cell in result["cells"]] == [1]
+    assert sessions.get("incremental_notebook").sources == ["load()", "train()"]
+
+    saved = json.loads((service.WORKDIR / service.NOTEBOOK_FILE).read_text())
+    assert saved["cells"][1]["outputs"][0]["text"] == "train()"
+
+
+def test_failed_cell_reverts_and_discards_kernel(sessions):
+    service = NotebookService("user", "failing_notebook")
+    (service.WORKDIR / service.NOTEBOOK_FILE).unlink(missing_ok=True)
+    service.execute_cells({"cells": [code("load()")]}, isCreate=True)
+    kernel = sessions.get("failing_notebook")
+
+    result = service.execute_cells([code("raise ValueError('bad')")], isCreate=False)
+
+    assert result["status"] == "error"
+    assert result["cells"][0]["ename"] == "ValueError"
+    assert "\x1b" not in result["details"]
+    assert kernel.closed
+    assert len(json.loads((service.WORKDIR / service.NOTEBOOK_FILE).read_text())["cells"]) == 1
+
+    # the fresh kernel replays the saved cell before running the new one
+    service.execute_cells([code("train()")], isCreate=False)
+    assert sessions.get("failing_notebook").sources == ["load()", "train()"]
+
+
+def test_sampled_execution_switches_the_kernel_to_the_sample_first(sessions):
+    service = NotebookService("user", "sampled_notebook", sample_rows=500)
+    (service.WORKDIR / service.NOTEBOOK_FILE).unlink(missing_ok=True)
+
+    service.execute_cells({"cells": [code("load()")]}, isCreate=True)
+    kernel = sessions.get("sampled_notebook")
+    assert kernel.sources == [sampling_setup_source(500), "load()"]
+    assert kernel.sample_rows == 500
+
+    # cells run on another sample size start over on a fresh kernel
+    NotebookService("user", "sampled_notebook").execute_cells([code("train()")], isCreate=False)
+    assert kernel.closed
+    assert sessions.get("sampled_notebook").sources == ["load()", "train()"]
+
+
+def test_full_data_execution_reruns_every_cell_and_keeps_the_notebook(sessions):
+    service = NotebookService("user", "validated_notebook", sample_rows=500)
+    (service.WORKDIR / service.NOTEBOOK_FILE).unlink(missing_ok=True)
+    service.execute_cells({"cells": [code("load()")]}, isCreate=True)
+    service.execute_cells([code("train()")], isCreate=False)
+    sampled_kernel = sessions.get("validated_notebook")
+
+    full = NotebookService("user", "validated_notebook")
+    result = full.execute_full_data()
+
+    assert result["status"] == "success"
+    assert [cell["index"] for cell in result["cells"]] == [0, 1]
+    assert sampled_kernel.closed
+    assert sessions.get("validated_notebook").sources == ["load()", "train()"]
+
+    # a notebook that fails on the full data is reported, not reverted
+    notebook_path = full.WORKDIR / full.NOTEBOOK_FILE
+    notebook_path.write_text(json.dumps({"cells": [code("load()"), code("raise MemoryError()")]}))
+    result = full.execute_full_data()
+
+    assert result["status"] == "error"
+    assert len(json.loads(notebook_path.read_text())["cells"]) == 2
+
+
+def test_least_recently_used_kernel_is_evicted():
+    manager = KernelSessionManager(fake_pools(), max_sessions=1, recycle_after=0)
+    first = manager.get("a")
+    manager.get("b")
+
+    assert first.closed
+    assert list(manager.sessions) == ["b"]
+
+
+def test_pool_hands_out_live_warm_kernels():
+    pool = KernelPool("default", ["pandas"], size=2, session_factory=FakeSession)
+    dead, warm = FakeSession(("pandas",)), FakeSession(("pandas",))
+    dead.alive = False
+    pool.idle.extend([dead, warm])
+
+    assert pool.acquire() is warm
+    # an empty pool still serves the caller, with the same preloaded modules
+    assert pool.acquire().preload == ("pandas",)
+
+
+def test_kernel_is_recycled_after_configured_executions():
+    manager = KernelSessionManager(fake_pools(), recycle_after=2)
+    kernel = manager.get("recycled", "unknown-pool")
+
+    manager.release("recycled", kernel)
+    assert manager.get("recycled") is kernel
+    manager.release("recycled", kernel)
+
+    assert kernel.closed
+    assert manager.get("recycled") is not kernel
+
+
+def test_merged_branch_takes_over_the_notebook_and_its_kernel(sessions):
+    service = NotebookService("user", "branched_notebook")
+    (service.WORKDIR / service.NOTEBOOK_FILE).unlink(missing_ok=True)
+    service.execute_cells({"cells": [code("load()")]}, isCreate=True)
+    trunk_kernel = sessions.get("branched_notebook")
+
+    branch = service.fork_notebook("branched_notebook-trees")
+    branch.execute_cells([code("train_trees()")], isCreate=False)
+    branch_kernel = sessions.get("branched_notebook-trees")
+    service.merge_branch("branched_notebook-trees")
+
+    saved = json.loads((service.WORKDIR / service.NOTEBOOK_FILE).read_text())
+    assert [cell["source"] for cell in saved["cells"]] == ["load()", "train_trees()"]
+    assert trunk_kernel.closed
+    assert sessions.get("branched_notebook") is branch_kernel
+    assert not branch.WORKDIR.exists()
+
+    # the next step runs on the branch kernel without replaying anything
+    service.execute_cells([code("evaluate()")], isCreate=False)
+    assert branch_kernel.sources == ["load()", "train_trees()", "evaluate()"]
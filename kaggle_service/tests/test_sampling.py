@@ -0,0 +1,54 @@
+import pytest
+from services.sampling import install_read_csv_sampling, stratified_sample, stratify_column
+
+pd = pytest.importorskip("pandas")
+
+
+def titanic(rows=1000):
+    return pd.DataFrame({
+        "PassengerId": range(rows),
+        "Fare": [i * 0.5 for i in range(rows)],
+        "Survived": [1 if i % 10 < 3 else 0 for i in range(rows)],
+    })
+
+
+def test_sample_keeps_class_shares_and_is_deterministic():
+    frame = titanic()
+
+    sample = stratified_sample(frame, 100, seed=7)
+
+    assert stratify_column(frame, 100) == "Survived"
+    assert len(sample) == 100
+    assert sample["Survived"].value_counts().to_dict() == {0: 70, 1: 30}
+    assert sample.index.is_monotonic_increasing
+    assert sample.equals(stratified_sample(frame, 100, seed=7))
+    assert not sample.equals(stratified_sample(frame, 100, seed=8))
+
+
+def test_rare_class_survives_the_sample():
+    frame = pd.DataFrame({"x": range(1000), "label": ["rare" if i == 500 else "common" for i in range(1000)]})
+
+    sample = stratified_sample(frame, 50)
+
+    assert "rare" in set(sample["label"])
+
+
+def test_small_or_unsampled_frames_are_returned_as_they_are():
+    frame = titanic(50)
+
+    assert stratified_sample(frame, 100) is frame
+    assert stratified_sample(frame, 0) is frame
+
+
+def test_read_csv_is_sampled_until_sampling_is_turned_off(tmp_path):
+    path = tmp_path / "train.csv"
+    titanic().to_csv(path, index=False)
+
+    try:
+        install_read_csv_sampling(100)
+        assert len(pd.read_csv(path)) == 100
+        assert len(pd.read_csv(path, nrows=500)) == 500
+    finally:
+        install_read_csv_sampling(0)
+
+    assert len(pd.read_csv(path)) == 1000
@@ -0,0 +1,49 @@
+import os
+from contextlib import contextmanager
+
+try:
+    from opentelemetry import trace
+    from opentelemetry.exporter.otlp.proto.http.trace_exporter import OTLPSpanExporter
+    from opentelemetry.instrumentation.fastapi import FastAPIInstrumentor
+    from opentelemetry.sdk.resources import Resource
+    from opentelemetry.sdk.trace import TracerProvider
+    from opentelemetry.sdk.trace.export import BatchSpanProcessor
+    OTEL_AVAILABLE = True
+except ImportError:
+    OTEL_AVAILABLE = False
+
+
+"""
+
+    Export spans to an OTLP collector when the OpenTelemetry packages are installed and
+    OTEL_EXPORTER_OTLP_ENDPOINT is set. Incoming requests continue the agent's trace
+    through the traceparent header. Without either, tracing stays a no-op.
+
+"""
+def setup_tracing(app):
+    if not OTEL_AVAILABLE or not os.getenv("OTEL_EXPORTER_OTLP_ENDPOINT"):
+        return False
+
+    resource = Resource.create({"service.name": os.getenv("OTEL_SERVICE_NAME", "kaggle_service")})
+    provider = TracerProvider(resource=resource)
+    provider.add_span_processor(BatchSpanProcessor(OTLPSpanExporter()))
+    trace.set_tracer_provider(provider)
+
+    FastAPIInstrumentor.instrument_app(app)
+    print("Exporting traces to", os.getenv("OTEL_EXPORTER_OTLP_ENDPOINT"))
+    return True
+
+
+"""
+
+    Record a child span of the current request, or do nothing when tracing is unavailable.
+
+"""
+@contextmanager
+def span(name, **attributes):
+    if not OTEL_AVAILABLE:
+        yield None
+        return
+
+    with trace.get_tracer("kaggle_service").start_as_current_span(name, attributes=attributes) as current:
+        yield current